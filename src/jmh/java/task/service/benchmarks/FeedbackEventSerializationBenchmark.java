@@ -0,0 +1,36 @@
+package task.service.benchmarks;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import task.service.models.messages.FeedbackEvent;
+import task.service.producers.FeedbackEncoder;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+public class FeedbackEventSerializationBenchmark
+{
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final FeedbackEvent event = new FeedbackEvent("feedback-completed", "0b8c4f1e-6d2a-4b7e-9a3c-5e1f7d9b2c48",
+            Payloads.USER_UID, "task", "Yes! You completed your task! Your total is 42", 1718000000456L);
+
+    private final FeedbackEncoder encoder = new FeedbackEncoder("feedback-completed", "task");
+    private final FeedbackEncoder.Text text = FeedbackEncoder.text("Yes! You completed your task! Your total is ", "");
+
+    @Benchmark
+    public String writeValueAsString() throws JsonProcessingException
+    {
+        return objectMapper.writeValueAsString(event);
+    }
+
+    @Benchmark
+    public byte[] encode()
+    {
+        // the whole record the producer sends, with a fresh feedback id
+        return encoder.encode(Payloads.USER_UID, text, 42, 1718000000456L);
+    }
+}
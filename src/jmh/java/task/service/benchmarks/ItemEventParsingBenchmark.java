@@ -0,0 +1,35 @@
+package task.service.benchmarks;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import task.service.consumers.ItemEventDeserializer;
+import task.service.models.messages.ItemEvent;
+
+import java.io.IOException;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+public class ItemEventParsingBenchmark
+{
+    private final ItemEventDeserializer deserializer = new ItemEventDeserializer();
+    private final ObjectMapper objectMapper = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    @Benchmark
+    public ItemEvent streamingDeserializer()
+    {
+        return deserializer.deserialize("item-updated", Payloads.ITEM_UPDATED);
+    }
+
+    // baseline: data binding, as the consumers parsed records before the dedicated deserializer
+    @Benchmark
+    public ItemEvent objectMapper() throws IOException
+    {
+        return objectMapper.readValue(Payloads.ITEM_UPDATED, ItemEvent.class);
+    }
+}
@@ -0,0 +1,30 @@
+package task.service.benchmarks;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Item events shaped like the ones task-service publishes, including the content fields this service ignores.
+ */
+public final class Payloads
+{
+    public static final String USER_UID = "5f1d7c9e-8a7b-4c1e-9f3a-2b6d8e4c1a70";
+    public static final String ITEM_UID = "c2e8a4f1-3b9d-4e7a-8c6f-1d5b9a7e3f24";
+
+    public static final byte[] ITEM_CREATED = bytes("item-created", true, false);
+    public static final byte[] ITEM_UPDATED = bytes("item-updated", true, true);
+
+    private Payloads()
+    {
+    }
+
+    private static byte[] bytes(final String event, final boolean priority, final boolean completed)
+    {
+        var json = "{\"event\":\"" + event + "\",\"itemUid\":\"" + ITEM_UID + "\",\"userUid\":\"" + USER_UID
+                + "\",\"type\":\"task\",\"content\":{\"title\":\"Prepare quarterly planning notes\","
+                + "\"description\":\"Collect input from the team, summarize open risks and draft the agenda for "
+                + "Thursday\",\"priority\":" + priority + ",\"completed\":" + completed
+                + ",\"tags\":[\"work\",\"planning\"],\"time\":1718000000123},\"time\":1718000000000}";
+
+        return json.getBytes(StandardCharsets.UTF_8);
+    }
+}
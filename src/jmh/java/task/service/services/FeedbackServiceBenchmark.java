@@ -0,0 +1,69 @@
+package task.service.services;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import task.service.benchmarks.Payloads;
+import task.service.consumers.ItemEventDeserializer;
+import task.service.models.TaskStatus;
+import task.service.models.messages.FeedbackEvent;
+import task.service.models.messages.ItemEvent;
+import task.service.rules.DecisionTable;
+import task.service.rules.FeedbackRules;
+
+// lives in the services package to wire the package-private rules
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+public class FeedbackServiceBenchmark
+{
+    private final FeedbackService feedbackService = newFeedbackService();
+    private final ItemEvent created = new ItemEventDeserializer().deserialize("item-created", Payloads.ITEM_CREATED);
+    private final ItemEvent updated = new ItemEventDeserializer().deserialize("item-updated", Payloads.ITEM_UPDATED);
+    private final TaskStatus stored = feedbackService.createStatus(created);
+
+    private static FeedbackService newFeedbackService()
+    {
+        var feedbackService = new FeedbackService();
+        feedbackService.rules = new FeedbackRules();
+        return feedbackService;
+    }
+
+    @Benchmark
+    public TaskStatus createStatus()
+    {
+        return feedbackService.createStatus(created);
+    }
+
+    @Benchmark
+    public TaskStatus updateStatus()
+    {
+        // applying the same update again leaves the stored status as is
+        return feedbackService.updateStatus(updated, stored);
+    }
+
+    @Benchmark
+    public FeedbackEvent buildCompletedEvent()
+    {
+        return feedbackService.buildEvent(DecisionTable.COMPLETED, Payloads.USER_UID, "item-updated", true, 7, 42);
+    }
+
+    @Benchmark
+    public FeedbackEvent buildPriorityEvent()
+    {
+        return feedbackService.buildEvent(DecisionTable.PRIORITY, Payloads.USER_UID, "item-updated", true, 7, 42);
+    }
+
+    @Benchmark
+    public byte[] encodeCompletedEvent()
+    {
+        return feedbackService.encodeEvent(DecisionTable.COMPLETED, Payloads.USER_UID, "item-updated", true, 7, 42);
+    }
+
+    @Benchmark
+    public byte[] encodePriorityEvent()
+    {
+        return feedbackService.encodeEvent(DecisionTable.PRIORITY, Payloads.USER_UID, "item-updated", true, 7, 42);
+    }
+}
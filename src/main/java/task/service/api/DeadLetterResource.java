@@ -0,0 +1,45 @@
+package task.service.api;
+
+import jakarta.inject.Inject;
+import jakarta.ws.rs.BadRequestException;
+import jakarta.ws.rs.DefaultValue;
+import jakarta.ws.rs.NotFoundException;
+import jakarta.ws.rs.POST;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.PathParam;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.QueryParam;
+import jakarta.ws.rs.core.MediaType;
+import task.service.consumers.DeadLetterReplay;
+
+/**
+ * Sends the dead letters of an item topic back to it, e.g. once the failure that put them there is fixed.
+ */
+@Path("/dead-letters")
+@Produces(MediaType.APPLICATION_JSON)
+public class DeadLetterResource
+{
+    @Inject
+    DeadLetterReplay replay;
+
+    @POST
+    @Path("/{topic}/replay")
+    public ReplayResult replay(@PathParam("topic") final String topic,
+            @QueryParam("max") @DefaultValue("1000") final int max)
+    {
+        if (!DeadLetterReplay.TOPICS.contains(topic))
+        {
+            throw new NotFoundException("Not an item topic: " + topic);
+        }
+        if (max < 1)
+        {
+            throw new BadRequestException("max must be positive");
+        }
+
+        return new ReplayResult(topic, replay.replay(topic, max));
+    }
+
+    public record ReplayResult(String topic, int replayed)
+    {
+    }
+}
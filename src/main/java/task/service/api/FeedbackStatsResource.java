@@ -0,0 +1,74 @@
+package task.service.api;
+
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.Uni;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.BadRequestException;
+import jakarta.ws.rs.Consumes;
+import jakarta.ws.rs.GET;
+import jakarta.ws.rs.POST;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.PathParam;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.core.CacheControl;
+import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.EntityTag;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Request;
+import jakarta.ws.rs.core.Response;
+import task.service.models.UserFeedbackCounters;
+import task.service.services.FeedbackStatsService;
+
+import java.util.List;
+
+/**
+ * Users' open priority and completed counts, served from the counters this service keeps rather than from Mongo. Both
+ * methods return Mutiny types, so they run on the event loop. The single user lookup carries an ETag of the counts
+ * and answers a matching {@code If-None-Match} with 304; the batch lookup streams its JSON array as the counters come.
+ */
+@Path("/users")
+@Produces(MediaType.APPLICATION_JSON)
+public class FeedbackStatsResource
+{
+    static final int MAX_BATCH = 10_000;
+
+    @Inject
+    FeedbackStatsService stats;
+
+    @GET
+    @Path("/{userUid}/feedback-stats")
+    public Uni<Response> stats(@PathParam("userUid") final String userUid, @Context final Request request)
+    {
+        return stats.stats(userUid).map(counters -> {
+            var tag = etag(counters);
+            var notModified = request.evaluatePreconditions(tag);
+            var response = notModified != null ? notModified : Response.ok(counters);
+            return response.tag(tag).cacheControl(revalidate()).build();
+        });
+    }
+
+    @POST
+    @Path("/feedback-stats")
+    @Consumes(MediaType.APPLICATION_JSON)
+    public Multi<UserFeedbackCounters> stats(final List<String> userUids)
+    {
+        if (userUids == null || userUids.isEmpty() || userUids.size() > MAX_BATCH)
+        {
+            throw new BadRequestException("Expected between 1 and " + MAX_BATCH + " user ids");
+        }
+        return stats.stats(userUids.stream().distinct().toList());
+    }
+
+    static EntityTag etag(final UserFeedbackCounters counters)
+    {
+        return new EntityTag(counters.getPriorityCount() + "-" + counters.getCompletedCount());
+    }
+
+    // the counts change with every event, so clients ask again, cheaply with the ETag
+    private static CacheControl revalidate()
+    {
+        var cacheControl = new CacheControl();
+        cacheControl.setNoCache(true);
+        return cacheControl;
+    }
+}
@@ -0,0 +1,194 @@
+package task.service.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import io.quarkus.scheduler.Scheduled;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.utils.Utils;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import task.service.models.TaskStatus;
+import task.service.models.UserFeedbackCounters;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * In-process copy of the item statuses and user counters of the users this instance consumes, filled on demand,
+ * written through after Mongo accepted a change, and bounded with Caffeine's W-TinyLFU eviction.
+ *
+ * <p>
+ * An item entry is a hint, not the truth: the created, updated and deleted topics are assigned independently, so
+ * another instance may change a cached item at any time, as may tiering and restores from the archive. Callers only
+ * write against a cached state where Mongo confirms the item is still in it, and never change a cached status in place.
+ *
+ * <p>
+ * Counters are what the last increment or count of the user returned, and are only replaced by counters of a later
+ * version, so results landing out of order never roll them back. They serve reads, e.g. the stats API, and lag behind
+ * by the changes other instances made since. Entries of revoked partitions are dropped, as this instance no longer sees
+ * their users' events.
+ */
+@ApplicationScoped
+public final class TaskStateCache
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(TaskStateCache.class);
+
+    @ConfigProperty(name = "feedback.cache.enabled")
+    boolean enabled;
+
+    @ConfigProperty(name = "feedback.cache.max-items")
+    long maxItems;
+
+    @ConfigProperty(name = "feedback.cache.max-users")
+    long maxUsers;
+
+    @Inject
+    MeterRegistry registry;
+
+    private Cache<String, TaskStatus> items;
+    private Cache<String, UserFeedbackCounters> counters;
+    private final ConcurrentHashMap<String, Integer> partitionCounts = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    void init()
+    {
+        items = Caffeine.newBuilder().maximumSize(enabled ? maxItems : 0).recordStats().build();
+        counters = Caffeine.newBuilder().maximumSize(enabled ? maxUsers : 0).recordStats().build();
+
+        // hit ratio, evictions and size, read from the stats Caffeine already records
+        CaffeineCacheMetrics.monitor(registry, items, "task-items");
+        CaffeineCacheMetrics.monitor(registry, counters, "user-counters");
+    }
+
+    public TaskStatus item(final String uid)
+    {
+        return enabled ? items.getIfPresent(uid) : null;
+    }
+
+    public void putItem(final TaskStatus status)
+    {
+        if (enabled)
+        {
+            items.put(status.getUid(), status);
+        }
+    }
+
+    public void invalidateItem(final String uid)
+    {
+        items.invalidate(uid);
+    }
+
+    public UserFeedbackCounters counters(final String userUid)
+    {
+        return enabled ? counters.getIfPresent(userUid) : null;
+    }
+
+    /**
+     * Takes counters Mongo returned, unless counters of a later version are cached already.
+     */
+    public void putCounters(final UserFeedbackCounters userCounters)
+    {
+        if (enabled)
+        {
+            counters.asMap().merge(userCounters.getUserUid(), userCounters,
+                    (cached, returned) -> returned.getVersion() >= cached.getVersion() ? returned : cached);
+        }
+    }
+
+    /**
+     * Adds counters read outside the event flow, without overwriting those the processors put meanwhile.
+     */
+    public void warmCounters(final UserFeedbackCounters userCounters)
+    {
+        if (enabled)
+        {
+            counters.asMap().putIfAbsent(userCounters.getUserUid(), userCounters);
+        }
+    }
+
+    public void invalidateCounters(final String userUid)
+    {
+        counters.invalidate(userUid);
+    }
+
+    public void invalidateAllCounters()
+    {
+        counters.invalidateAll();
+    }
+
+    public CacheStats counterStats()
+    {
+        return counters.stats();
+    }
+
+    public CacheStats itemStats()
+    {
+        return items.stats();
+    }
+
+    public boolean isEnabled()
+    {
+        return enabled;
+    }
+
+    /**
+     * Whether the user's events go to one of the given partitions, with the same murmur2 hashing Kafka uses for keyed
+     * records.
+     */
+    public boolean ownedBy(final String userUid, final Set<TopicPartition> partitions)
+    {
+        for (var partition : partitions)
+        {
+            var count = partitionCounts.get(partition.topic());
+            if (count != null && partitionOf(userUid, count) == partition.partition())
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    void partitionCount(final String topic, final int count)
+    {
+        partitionCounts.put(topic, count);
+    }
+
+    void dropPartitions(final Collection<TopicPartition> revoked)
+    {
+        var partitions = Set.copyOf(revoked);
+        var itemsBefore = items.estimatedSize();
+        var usersBefore = counters.estimatedSize();
+
+        // tombstones do not tell their user, and go with any revoke
+        items.asMap().values().removeIf(status -> status.isDeleted() || ownedBy(status.getUserUid(), partitions));
+        counters.asMap().keySet().removeIf(userUid -> ownedBy(userUid, partitions));
+
+        LOGGER.info("Dropped {} items and {} users of revoked partitions {}", itemsBefore - items.estimatedSize(),
+                usersBefore - counters.estimatedSize(),
+                partitions.stream().map(TopicPartition::toString).collect(Collectors.joining(",")));
+    }
+
+    @Scheduled(every = "{feedback.cache.stats-interval}", skipExecutionIf = Scheduled.ApplicationNotRunning.class)
+    void logStats()
+    {
+        if (enabled)
+        {
+            LOGGER.info("Item cache {}, counters cache {}", items.stats(), counters.stats());
+        }
+    }
+
+    static int partitionOf(final String userUid, final int partitionCount)
+    {
+        return Utils.toPositive(Utils.murmur2(userUid.getBytes(StandardCharsets.UTF_8))) % partitionCount;
+    }
+}
@@ -0,0 +1,121 @@
+package task.service.cache;
+
+import io.smallrye.common.annotation.Identifier;
+import io.smallrye.mutiny.infrastructure.Infrastructure;
+import io.smallrye.reactive.messaging.kafka.KafkaConsumerRebalanceListener;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.common.TopicPartition;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import task.service.consumers.AdaptiveConcurrency;
+import task.service.consumers.RedeliveryFilter;
+import task.service.repos.UserFeedbackCountersRepository;
+import task.service.services.FeedbackCoalescer;
+import task.service.services.FeedbackSuppressor;
+
+import java.util.Collection;
+import java.util.Set;
+
+/**
+ * Keeps {@link TaskStateCache} in line with the partitions this instance owns. For users whose partitions are revoked
+ * it also sends their coalesced feedback and forgets what {@link FeedbackSuppressor} remembers of them, and it hands
+ * the processed offsets of moving partitions over through {@link RedeliveryFilter}. Partitions assigned while
+ * {@link AdaptiveConcurrency} holds the item topics paused start out paused. Runs on the Kafka polling thread, so
+ * warming the counters of the users of assigned partitions is handed off to a worker thread.
+ */
+@ApplicationScoped
+@Identifier("task-state-rebalance")
+public final class TaskStateRebalanceListener implements KafkaConsumerRebalanceListener
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(TaskStateRebalanceListener.class);
+
+    @Inject
+    TaskStateCache stateCache;
+
+    @Inject
+    UserFeedbackCountersRepository countersRepository;
+
+    @Inject
+    FeedbackCoalescer coalescer;
+
+    @Inject
+    FeedbackSuppressor suppressor;
+
+    @Inject
+    RedeliveryFilter redeliveries;
+
+    @Inject
+    AdaptiveConcurrency concurrency;
+
+    @ConfigProperty(name = "feedback.cache.warm-on-assign")
+    boolean warmOnAssign;
+
+    @ConfigProperty(name = "feedback.cache.warm-limit")
+    int warmLimit;
+
+    @Override
+    public void onPartitionsAssigned(final Consumer<?, ?> consumer, final Collection<TopicPartition> partitions)
+    {
+        partitions.stream().map(TopicPartition::topic).distinct()
+                .forEach(topic -> stateCache.partitionCount(topic, consumer.partitionsFor(topic).size()));
+        redeliveries.assigned(partitions);
+        if (concurrency.isPaused())
+        {
+            // before the first poll of the new partitions rather than on the next tick
+            consumer.pause(partitions);
+        }
+
+        if (warmOnAssign && stateCache.isEnabled() && !partitions.isEmpty())
+        {
+            var assigned = Set.copyOf(partitions);
+            Infrastructure.getDefaultWorkerPool().execute(() -> warm(assigned));
+        }
+    }
+
+    @Override
+    public void onPartitionsRevoked(final Consumer<?, ?> consumer, final Collection<TopicPartition> partitions)
+    {
+        if (!partitions.isEmpty())
+        {
+            var revoked = Set.copyOf(partitions);
+            // the new owner takes over these users, so their feedback must not wait for our window
+            coalescer.flush(userUid -> stateCache.ownedBy(userUid, revoked));
+            suppressor.forget(userUid -> stateCache.ownedBy(userUid, revoked));
+            stateCache.dropPartitions(partitions);
+            redeliveries.revoked(partitions);
+        }
+    }
+
+    @Override
+    public void onPartitionsLost(final Consumer<?, ?> consumer, final Collection<TopicPartition> partitions)
+    {
+        onPartitionsRevoked(consumer, partitions);
+    }
+
+    private void warm(final Set<TopicPartition> assigned)
+    {
+        var warmed = 0;
+
+        try (var cursor = countersRepository.mongoCollection().find().batchSize(1000).iterator())
+        {
+            while (cursor.hasNext() && warmed < warmLimit)
+            {
+                var userCounters = cursor.next();
+                if (stateCache.counters(userCounters.getUserUid()) == null
+                        && stateCache.ownedBy(userCounters.getUserUid(), assigned))
+                {
+                    stateCache.warmCounters(userCounters);
+                    warmed++;
+                }
+            }
+        } catch (final Exception e)
+        {
+            LOGGER.error("Failed to warm the counters of assigned partitions", e);
+        }
+
+        LOGGER.info("Warmed counters of {} users for assigned partitions", warmed);
+    }
+}
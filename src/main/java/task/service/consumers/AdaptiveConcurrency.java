@@ -0,0 +1,277 @@
+package task.service.consumers;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.scheduler.Scheduled;
+import io.smallrye.reactive.messaging.kafka.KafkaClientService;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Adapts how many item records may be in flight, from being handed over until acked, to how Mongo and the feedback
+ * producer keep up, and pauses the item topics while the limit is reached. Consumers report each record's
+ * {@link #started() start}, the end of its Mongo work and its ack, batches once for all their records, and the
+ * limiters of the reactive and keyed modes admit no more records, or users, than the {@link #limit() limit}. Every
+ * {@code feedback.backpressure.tick} the average Mongo time and ack time of the records finished in the tick are
+ * compared to their targets: above either, the limit shrinks by {@code backoff}, otherwise it grows by one, additive
+ * increase and multiplicative decrease between {@code min-limit} and {@code max-limit}. Records that are still slow at
+ * the lowest limit pause the topics too, until a tick brings no slow records.
+ *
+ * <p>
+ * Pausing leaves the consumers polling, so a slow database does not run the poll loop into
+ * {@code max.poll.interval.ms} and a rebalance that would only add load; the records already fetched are still
+ * handled. The connector resumes partitions on its own when it wants more records, and assignments move, so while
+ * paused every tick pauses the channels again.
+ */
+@ApplicationScoped
+public final class AdaptiveConcurrency
+{
+    static final List<String> CHANNELS = List.of("created", "updated", "deleted");
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(AdaptiveConcurrency.class);
+
+    @Inject
+    KafkaClientService kafka;
+
+    @Inject
+    MeterRegistry registry;
+
+    @ConfigProperty(name = "feedback.backpressure.enabled")
+    boolean enabled;
+
+    @ConfigProperty(name = "feedback.backpressure.min-limit")
+    int minLimit;
+
+    @ConfigProperty(name = "feedback.backpressure.max-limit")
+    int maxLimit;
+
+    @ConfigProperty(name = "feedback.backpressure.persist-latency")
+    Duration persistLatency;
+
+    @ConfigProperty(name = "feedback.backpressure.ack-latency")
+    Duration ackLatency;
+
+    @ConfigProperty(name = "feedback.backpressure.backoff")
+    double backoff;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicBoolean paused = new AtomicBoolean();
+    private final LongAdder persistNanos = new LongAdder();
+    private final LongAdder persisted = new LongAdder();
+    private final LongAdder ackNanos = new LongAdder();
+    private final LongAdder acked = new LongAdder();
+    private volatile int limit;
+    // averages of the last tick with samples, for the readiness check
+    private volatile long lastPersistNanos;
+    private volatile long lastAckNanos;
+
+    @PostConstruct
+    void init()
+    {
+        limit = maxLimit;
+        if (!enabled)
+        {
+            return;
+        }
+
+        Gauge.builder("feedback.backpressure.limit", this, AdaptiveConcurrency::limit).register(registry);
+        Gauge.builder("feedback.backpressure.in-flight", inFlight, AtomicInteger::get).register(registry);
+        Gauge.builder("feedback.backpressure.paused", paused, value -> value.get() ? 1 : 0).register(registry);
+    }
+
+    public boolean isEnabled()
+    {
+        return enabled;
+    }
+
+    public int limit()
+    {
+        return limit;
+    }
+
+    public int inFlight()
+    {
+        return inFlight.get();
+    }
+
+    public boolean isPaused()
+    {
+        return paused.get();
+    }
+
+    public Duration persistLatency()
+    {
+        return Duration.ofNanos(lastPersistNanos);
+    }
+
+    public Duration ackLatency()
+    {
+        return Duration.ofNanos(lastAckNanos);
+    }
+
+    /**
+     * A record was handed over; returns its start time for {@link #persisted(long)}.
+     */
+    public long started()
+    {
+        return started(1);
+    }
+
+    /**
+     * {@link #started()} for a batch of records.
+     */
+    public long started(final int records)
+    {
+        var now = System.nanoTime();
+        // every tick pauses again while paused
+        if (enabled && inFlight.addAndGet(records) >= limit && !paused.get())
+        {
+            pause();
+        }
+        return now;
+    }
+
+    /**
+     * The record's Mongo work is done; returns the time for {@link #acked(long)}.
+     */
+    public long persisted(final long startedAt)
+    {
+        return persisted(startedAt, 1);
+    }
+
+    /**
+     * {@link #persisted(long)} for a batch, whose Mongo work took as long for each of its records.
+     */
+    public long persisted(final long startedAt, final int records)
+    {
+        var now = System.nanoTime();
+        if (enabled)
+        {
+            persistNanos.add((now - startedAt) * records);
+            persisted.add(records);
+        }
+        return now;
+    }
+
+    /**
+     * The record was acked, after its feedback settled or its processing failed.
+     */
+    public void acked(final long persistedAt)
+    {
+        acked(persistedAt, 1);
+    }
+
+    /**
+     * {@link #acked(long)} for a batch.
+     */
+    public void acked(final long persistedAt, final int records)
+    {
+        if (enabled)
+        {
+            ackNanos.add((System.nanoTime() - persistedAt) * records);
+            acked.add(records);
+            inFlight.addAndGet(-records);
+        }
+    }
+
+    @Scheduled(every = "{feedback.backpressure.tick}", concurrentExecution = Scheduled.ConcurrentExecution.SKIP,
+            skipExecutionIf = Scheduled.ApplicationNotRunning.class)
+    void adapt()
+    {
+        if (!enabled)
+        {
+            return;
+        }
+
+        try
+        {
+            var persists = persisted.sumThenReset();
+            var persistTotal = persistNanos.sumThenReset();
+            var acks = acked.sumThenReset();
+            var ackTotal = ackNanos.sumThenReset();
+
+            if (persists > 0)
+            {
+                lastPersistNanos = persistTotal / persists;
+            }
+            if (acks > 0)
+            {
+                lastAckNanos = ackTotal / acks;
+            }
+
+            var slow = persists > 0 && lastPersistNanos > persistLatency.toNanos()
+                    || acks > 0 && lastAckNanos > ackLatency.toNanos();
+            if (slow)
+            {
+                var next = Math.max(minLimit, (int) (limit * backoff));
+                if (next < limit)
+                {
+                    LOGGER.warn("Mongo at {} ms, feedback acks at {} ms per record, lowering the in-flight limit to {}",
+                            lastPersistNanos / 1_000_000, lastAckNanos / 1_000_000, next);
+                }
+                limit = next;
+            } else if (persists > 0 || acks > 0)
+            {
+                limit = Math.min(maxLimit, limit + 1);
+            }
+
+            // still slow at the lowest limit: stop taking records until a tick without slow ones
+            if (inFlight.get() >= limit || slow && limit == minLimit)
+            {
+                pause();
+            } else
+            {
+                resume();
+            }
+        } catch (final Exception e)
+        {
+            // the samples are gone, the next tick adapts on new ones
+            LOGGER.error("Failed to adapt the in-flight limit", e);
+        }
+    }
+
+    private void pause()
+    {
+        if (!paused.getAndSet(true))
+        {
+            LOGGER.warn("Pausing the item topics, {} records in flight at a limit of {}", inFlight.get(), limit);
+        }
+        // again on every call, for partitions the connector resumed or that were assigned since
+        CHANNELS.forEach(channel -> {
+            var consumer = kafka.getConsumer(channel);
+            if (consumer != null)
+            {
+                consumer.pause().subscribe().with(partitions -> {
+                }, failure -> LOGGER.warn("Failed to pause channel {}", channel, failure));
+            }
+        });
+    }
+
+    private void resume()
+    {
+        if (!paused.getAndSet(false))
+        {
+            return;
+        }
+
+        LOGGER.info("Resuming the item topics, {} records in flight at a limit of {}", inFlight.get(), limit);
+        CHANNELS.forEach(channel -> {
+            var consumer = kafka.getConsumer(channel);
+            if (consumer != null)
+            {
+                consumer.resume().subscribe().with(ignored -> {
+                }, failure -> LOGGER.warn("Failed to resume channel {}", channel, failure));
+            }
+        });
+    }
+}
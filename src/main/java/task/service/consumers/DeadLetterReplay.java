@@ -0,0 +1,162 @@
+package task.service.consumers;
+
+import io.smallrye.common.annotation.Identifier;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.KafkaException;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.InterruptException;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.faulttolerance.Retry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * Sends the records of an item topic's dead letter topic back to the item topic, without the headers the failure
+ * strategies added, so a replayed record gets its full retries again. A dead letter is not the original record: the
+ * strategies write the parsed {@link task.service.models.messages.ItemEvent} with the channel's Jackson serializer, so
+ * fields the event does not read are gone, while {@link ItemEventDeserializer} reads the rest as before.
+ *
+ * <p>
+ * Replayed records are committed under their own consumer group, so each dead letter is replayed once; offsets are
+ * committed after each polled batch was acknowledged, so a failed replay resends at most that batch.
+ */
+@ApplicationScoped
+public final class DeadLetterReplay
+{
+    public static final List<String> TOPICS = List.of("item-created", "item-updated", "item-deleted");
+    public static final String DEAD_LETTER_SUFFIX = "-dlq";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DeadLetterReplay.class);
+    private static final String GROUP = "task-feedback-dlq-replay";
+    // the header prefixes of the dead-letter-queue and delayed-retry-topic failure strategies
+    private static final List<String> FAILURE_HEADERS = List.of("dead-letter-", "delayed-retry-topic");
+
+    @Inject
+    @Identifier("default-kafka-broker")
+    Map<String, Object> kafkaConfig;
+
+    @ConfigProperty(name = "feedback.dlq.replay.poll-timeout")
+    Duration pollTimeout;
+
+    /**
+     * Replays up to {@code max} dead letters of the item topic and returns how many were replayed. Retried on a Kafka
+     * failure, which resends at most the batch that was not committed.
+     */
+    @Retry(maxRetries = 2, delay = 1000, retryOn = KafkaException.class)
+    public int replay(final String topic, final int max)
+    {
+        if (!TOPICS.contains(topic))
+        {
+            throw new IllegalArgumentException("Not an item topic: " + topic);
+        }
+
+        var replayed = 0;
+        try (var consumer = new KafkaConsumer<byte[], byte[]>(consumerConfig(max));
+                var producer = new KafkaProducer<byte[], byte[]>(producerConfig()))
+        {
+            consumer.subscribe(List.of(topic + DEAD_LETTER_SUFFIX));
+            while (replayed < max)
+            {
+                var records = consumer.poll(pollTimeout);
+                if (records.isEmpty())
+                {
+                    break;
+                }
+
+                var sends = new ArrayList<Future<RecordMetadata>>(records.count());
+                var offsets = new HashMap<TopicPartition, OffsetAndMetadata>();
+                for (var record : records)
+                {
+                    if (replayed + sends.size() == max)
+                    {
+                        break;
+                    }
+                    sends.add(producer.send(new ProducerRecord<>(topic, null, record.key(), record.value(),
+                            replayHeaders(record.headers()))));
+                    offsets.put(new TopicPartition(record.topic(), record.partition()),
+                            new OffsetAndMetadata(record.offset() + 1));
+                }
+
+                awaitAll(sends);
+                consumer.commitSync(offsets);
+                replayed += sends.size();
+            }
+        }
+
+        LOGGER.info("Replayed {} dead letters to {}", replayed, topic);
+        return replayed;
+    }
+
+    static RecordHeaders replayHeaders(final Iterable<Header> headers)
+    {
+        var kept = new RecordHeaders();
+        for (var header : headers)
+        {
+            if (FAILURE_HEADERS.stream().noneMatch(header.key()::startsWith))
+            {
+                kept.add(header);
+            }
+        }
+        return kept;
+    }
+
+    private static void awaitAll(final List<Future<RecordMetadata>> sends)
+    {
+        try
+        {
+            for (var send : sends)
+            {
+                send.get();
+            }
+        } catch (final InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new InterruptException(e);
+        } catch (final ExecutionException e)
+        {
+            throw new KafkaException("Failed to replay a dead letter", e.getCause());
+        }
+    }
+
+    private Map<String, Object> consumerConfig(final int max)
+    {
+        var config = new HashMap<>(kafkaConfig);
+        config.put(ConsumerConfig.GROUP_ID_CONFIG, GROUP);
+        config.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
+        config.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+        config.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, Math.min(max, 500));
+        config.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, ByteArrayDeserializer.class.getName());
+        config.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, ByteArrayDeserializer.class.getName());
+        return config;
+    }
+
+    private Map<String, Object> producerConfig()
+    {
+        var config = new HashMap<>(kafkaConfig);
+        config.put(ProducerConfig.ACKS_CONFIG, "all");
+        config.put(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, true);
+        config.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, ByteArraySerializer.class.getName());
+        config.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, ByteArraySerializer.class.getName());
+        return config;
+    }
+}
@@ -0,0 +1,97 @@
+package task.service.consumers;
+
+import io.smallrye.mutiny.Uni;
+import org.eclipse.microprofile.reactive.messaging.Message;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.IntSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Lets a channel keep up to {@code maxInFlight} records in flight without blocking a thread. The Uni returned by
+ * {@link #submit} completes as soon as the record has a slot, so the connector can hand over the next record while the
+ * previous ones are still waiting on Mongo. Records with the same key still run one after the other, and each record is
+ * acked only when its work is done, which the Kafka commit strategy turns into in-order offset commits, or nacked if
+ * the work failed. The limit is read for every record, so it can move while records are in flight; records beyond a
+ * lowered limit finish, and no new ones start until the records in flight are below it.
+ */
+final class InFlightLimiter
+{
+    private final IntSupplier maxInFlight;
+    private final Queue<CompletableFuture<Void>> waiting = new ArrayDeque<>();
+    private final ConcurrentHashMap<String, CompletableFuture<Void>> tails = new ConcurrentHashMap<>();
+    private int inFlight;
+
+    InFlightLimiter(final IntSupplier maxInFlight)
+    {
+        this.maxInFlight = maxInFlight;
+    }
+
+    Uni<Void> submit(final String key, final Message<?> message, final Supplier<Uni<Void>> work)
+    {
+        return Uni.createFrom().completionStage(this::acquire).invoke(() -> start(key, message, work));
+    }
+
+    private void start(final String key, final Message<?> message, final Supplier<Uni<Void>> work)
+    {
+        var done = new CompletableFuture<Void>();
+        var previous = tails.put(key, done);
+
+        var run = previous == null
+                ? Uni.createFrom().deferred(work)
+                : Uni.createFrom().completionStage(previous).chain(ignored -> work.get());
+
+        run.subscribe().with(ignored -> finish(key, done, message, null),
+                failure -> finish(key, done, message, failure));
+    }
+
+    private void finish(final String key, final CompletableFuture<Void> done, final Message<?> message,
+            final Throwable failure)
+    {
+        tails.remove(key, done);
+        done.complete(null);
+        release();
+        if (failure != null)
+        {
+            message.nack(failure);
+        } else
+        {
+            message.ack();
+        }
+    }
+
+    private synchronized CompletableFuture<Void> acquire()
+    {
+        if (inFlight < maxInFlight.getAsInt())
+        {
+            inFlight++;
+            return CompletableFuture.completedFuture(null);
+        }
+
+        var slot = new CompletableFuture<Void>();
+        waiting.add(slot);
+        return slot;
+    }
+
+    private void release()
+    {
+        var admitted = new ArrayList<CompletableFuture<Void>>();
+        synchronized (this)
+        {
+            inFlight--;
+            // none while above a lowered limit, several once it went up
+            var max = maxInFlight.getAsInt();
+            while (inFlight < max && !waiting.isEmpty())
+            {
+                inFlight++;
+                admitted.add(waiting.poll());
+            }
+        }
+
+        admitted.forEach(slot -> slot.complete(null));
+    }
+}
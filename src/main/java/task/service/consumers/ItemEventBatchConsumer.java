@@ -0,0 +1,179 @@
+package task.service.consumers;
+
+import io.quarkus.arc.properties.IfBuildProperty;
+import io.smallrye.reactive.messaging.annotations.Blocking;
+import io.smallrye.reactive.messaging.kafka.KafkaRecord;
+import io.smallrye.reactive.messaging.kafka.KafkaRecordBatch;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.reactive.messaging.Incoming;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import task.service.metrics.PipelineMetrics;
+import task.service.models.messages.ItemEvent;
+import task.service.services.ItemEventBatchProcessor;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Batch counterpart of {@link ItemEventConsumer}, enabled with {@code feedback.consumer.mode=batch}. Quarkus detects
+ * the {@link KafkaRecordBatch} signatures and switches the channels to batch polling. A batch is acked once the
+ * feedback records of all its users are acknowledged, and reported to {@link AdaptiveConcurrency} as its records.
+ *
+ * <p>
+ * A batch that fails is nacked record by record, so each of its records goes to the retry topics like in
+ * {@link ItemEventConsumer}, while the records it skipped are acked. The records of updates the batch could not
+ * apply, as their items are not there yet, are nacked the same way, and the rest of the batch is acked.
+ */
+@ApplicationScoped
+@IfBuildProperty(name = "feedback.consumer.mode", stringValue = "batch")
+public final class ItemEventBatchConsumer
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(ItemEventBatchConsumer.class);
+    private static final CompletionStage<Void> NEXT = CompletableFuture.completedFuture(null);
+
+    @Inject
+    ItemEventBatchProcessor batchProcessor;
+
+    @Inject
+    PipelineMetrics metrics;
+
+    @Inject
+    RedeliveryFilter redeliveries;
+
+    @Inject
+    AdaptiveConcurrency concurrency;
+
+    @Incoming("created")
+    @Blocking
+    public CompletionStage<Void> consumeCreated(final KafkaRecordBatch<String, ItemEvent> batch)
+    {
+        return consume("item-created", batch);
+    }
+
+    @Incoming("updated")
+    @Blocking
+    public CompletionStage<Void> consumeUpdated(final KafkaRecordBatch<String, ItemEvent> batch)
+    {
+        return consume("item-updated", batch);
+    }
+
+    @Incoming("deleted")
+    @Blocking
+    public CompletionStage<Void> consumeDeleted(final KafkaRecordBatch<String, ItemEvent> batch)
+    {
+        return consume("item-deleted", batch);
+    }
+
+    private CompletionStage<Void> consume(final String topic, final KafkaRecordBatch<String, ItemEvent> batch)
+    {
+        var records = batch.getRecords();
+        LOGGER.info("Received {} batch of {} events", topic, records.size());
+
+        var events = new ArrayList<ItemEvent>(records.size());
+        var tracked = new ArrayList<KafkaRecord<String, ItemEvent>>(records.size());
+        for (var record : records)
+        {
+            // malformed records arrive as null, already reported by ItemEventFailureHandler
+            if (record.getPayload() == null)
+            {
+                continue;
+            }
+            if (redeliveries.isRedelivery(record.getTopic(), record.getPartition(), record.getOffset()))
+            {
+                metrics.stages(topic).skipped().increment();
+                continue;
+            }
+            events.add(record.getPayload());
+            tracked.add(record);
+        }
+
+        var startedAt = concurrency.started(events.size());
+        try
+        {
+            var acked = batchProcessor.process(events);
+            var persistedAt = concurrency.persisted(startedAt, events.size());
+            acked.whenComplete((parked, failure) -> {
+                concurrency.acked(persistedAt, events.size());
+                if (failure != null)
+                {
+                    LOGGER.error("Failed to send feedback for {} batch", topic, failure);
+                    metrics.stages(topic).failed().increment(events.size());
+                    failed(records, tracked, tracked, failure);
+                } else if (parked.isEmpty())
+                {
+                    done(batch, tracked);
+                } else
+                {
+                    LOGGER.warn("Retrying {} updates of unknown items", parked.size());
+                    metrics.stages(topic).failed().increment(parked.size());
+                    failed(records, tracked, recordsOf(tracked, parked),
+                            new IllegalStateException("Update of unknown item"));
+                }
+            });
+        } catch (final Exception e)
+        {
+            LOGGER.error("Failed to process {} batch", topic, e);
+            metrics.stages(topic).failed().increment(events.size());
+            failed(records, tracked, tracked, e);
+            concurrency.acked(concurrency.persisted(startedAt, events.size()), events.size());
+        }
+
+        return NEXT;
+    }
+
+    private void done(final KafkaRecordBatch<String, ItemEvent> batch,
+            final List<KafkaRecord<String, ItemEvent>> tracked)
+    {
+        tracked.forEach(this::processed);
+        batch.ack();
+    }
+
+    // the channel's failure strategy hands each failed record to the retry topics, see ItemEventConsumer
+    private void failed(final List<KafkaRecord<String, ItemEvent>> records,
+            final List<KafkaRecord<String, ItemEvent>> tracked, final List<KafkaRecord<String, ItemEvent>> failed,
+            final Throwable failure)
+    {
+        var processed = identitySet(tracked);
+        var nacked = identitySet(failed);
+        for (var record : records)
+        {
+            if (nacked.contains(record))
+            {
+                record.nack(failure).thenRun(() -> processed(record));
+                continue;
+            }
+            if (processed.contains(record))
+            {
+                processed(record);
+            }
+            record.ack();
+        }
+    }
+
+    private void processed(final KafkaRecord<String, ItemEvent> record)
+    {
+        redeliveries.processed(record.getTopic(), record.getPartition(), record.getOffset());
+    }
+
+    private static List<KafkaRecord<String, ItemEvent>> recordsOf(final List<KafkaRecord<String, ItemEvent>> tracked,
+            final List<ItemEvent> events)
+    {
+        var wanted = identitySet(events);
+        return tracked.stream().filter(record -> wanted.contains(record.getPayload())).toList();
+    }
+
+    private static <T> Set<T> identitySet(final Collection<T> elements)
+    {
+        var set = Collections.<T>newSetFromMap(new IdentityHashMap<>());
+        set.addAll(elements);
+        return set;
+    }
+}
@@ -1,99 +1,126 @@
 package task.service.consumers;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import io.quarkus.arc.properties.IfBuildProperty;
+import io.smallrye.reactive.messaging.annotations.Blocking;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
 import org.eclipse.microprofile.reactive.messaging.Incoming;
+import org.eclipse.microprofile.reactive.messaging.Message;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import task.service.metrics.PipelineMetrics;
 import task.service.models.messages.ItemEvent;
-import task.service.repos.TaskStatusRepository;
-import task.service.services.FeedbackService;
-
+import task.service.services.ItemEventProcessor;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Function;
+
+/**
+ * Handles one record at a time on a worker thread. The next record is taken as soon as the Mongo work of the previous
+ * one is done, while a record itself is acked only once its feedback records are acknowledged; the throttled commit
+ * strategy turns these out-of-order acks into in-order offset commits.
+ *
+ * <p>
+ * A record that fails is nacked. The channel's {@code delayed-retry-topic} failure strategy passes it on to the delay
+ * topics of its topic, where the same channel takes it up again once the delay is over, and after the last retry to
+ * the topic's dead letter topic, so a failure neither loses the event nor holds up the partition.
+ */
 @ApplicationScoped
+@IfBuildProperty(name = "feedback.consumer.mode", stringValue = "single", enableIfMissing = true)
 public final class ItemEventConsumer
 {
     private static final Logger LOGGER = LoggerFactory.getLogger(ItemEventConsumer.class);
+    private static final CompletionStage<Void> NEXT = CompletableFuture.completedFuture(null);
+
+    @Inject
+    ItemEventProcessor processor;
 
     @Inject
-    FeedbackService feedbackService;
+    PipelineMetrics metrics;
 
     @Inject
-    TaskStatusRepository repository;
+    RedeliveryFilter redeliveries;
 
     @Inject
-    ObjectMapper objectMapper;
+    AdaptiveConcurrency concurrency;
 
     @Incoming("created")
-    public void consumeCreated(final String jsonMsg)
+    @Blocking
+    public CompletionStage<Void> consumeCreated(final Message<ItemEvent> message)
     {
-        try
-        {
-            var event = objectMapper.readValue(jsonMsg, ItemEvent.class);
-            LOGGER.info("Received create event: {}", event.getEvent());
-
-            var taskStatus = feedbackService.createStatus(event);
-            repository.persist(taskStatus);
+        return consume("item-created", message, processor::created);
+    }
 
-            var priorityCount = repository.findNotCompletedPriorityByUserUid(event.getUserUid()).size();
-            var completedCount = repository.findCompletedByUserUid(event.getUserUid()).size();
+    @Incoming("updated")
+    @Blocking
+    public CompletionStage<Void> consumeUpdated(final Message<ItemEvent> message)
+    {
+        return consume("item-updated", message, processor::updated);
+    }
 
-            var task = repository.findByUid(event.getItemUid());
+    @Incoming("deleted")
+    @Blocking
+    public CompletionStage<Void> consumeDeleted(final Message<ItemEvent> message)
+    {
+        return consume("item-deleted", message, processor::deleted);
+    }
 
-            feedbackService.feedback(event.getUserUid(), event.getEvent(), task.isCompleted(), priorityCount,
-                    completedCount);
-        } catch (final Exception e)
+    private CompletionStage<Void> consume(final String topic, final Message<ItemEvent> message,
+            final Function<ItemEvent, CompletionStage<Void>> handler)
+    {
+        var event = message.getPayload();
+        if (event == null)
         {
-            LOGGER.error("Failed to process item-created event", e);
+            // malformed, already reported by ItemEventFailureHandler
+            message.ack();
+            return NEXT;
+        }
+        if (redeliveries.isRedelivery(message))
+        {
+            metrics.stages(topic).skipped().increment();
+            message.ack();
+            return NEXT;
         }
-    }
 
-    @Incoming("updated")
-    public void consumeUpdated(final String message)
-    {
+        var startedAt = concurrency.started();
         try
         {
-            var event = objectMapper.readValue(message, ItemEvent.class);
-            LOGGER.info("Received update event: {}", event.getEvent());
-
-            var prevStatus = repository.findByUid(event.getItemUid());
-
-            var updatedStatus = feedbackService.updateStatus(event, prevStatus);
-            repository.update(updatedStatus);
-
-            var priorityCount = repository.findNotCompletedPriorityByUserUid(event.getUserUid()).size();
-            var completedCount = repository.findCompletedByUserUid(event.getUserUid()).size();
-
-            feedbackService.feedback(event.getUserUid(), event.getEvent(), updatedStatus.isCompleted(), priorityCount,
-                    completedCount);
-
+            LOGGER.info("Received {} event: {}", topic, event.getEvent());
+
+            var acked = handler.apply(event);
+            var persistedAt = concurrency.persisted(startedAt);
+            acked.whenComplete((ignored, failure) -> {
+                if (failure == null)
+                {
+                    done(message, persistedAt);
+                    return;
+                }
+                LOGGER.error("Failed to send feedback for {} event", topic, failure);
+                metrics.stages(topic).failed().increment();
+                failed(message, failure, persistedAt);
+            });
         } catch (final Exception e)
         {
-            LOGGER.error("Failed to process item-update event", e);
+            LOGGER.error("Failed to process {} event", topic, e);
+            metrics.stages(topic).failed().increment();
+            failed(message, e, concurrency.persisted(startedAt));
         }
+
+        return NEXT;
     }
 
-    @Incoming("deleted")
-    public void consumeDeleted(final String message)
+    private void done(final Message<ItemEvent> message, final long persistedAt)
     {
-        try
-        {
-            var event = objectMapper.readValue(message, ItemEvent.class);
-            LOGGER.info("Received delete event: {}", event.getEvent());
-
-            var statusToBeDeleted = repository.findByUid(event.getItemUid());
-
-            repository.delete(statusToBeDeleted);
-
-            var priorityCount = repository.findNotCompletedPriorityByUserUid(event.getUserUid()).size();
-            var completedCount = repository.findCompletedByUserUid(event.getUserUid()).size();
-
-            feedbackService.feedback(event.getUserUid(), event.getEvent(), statusToBeDeleted.isCompleted(),
-                    priorityCount, completedCount);
+        redeliveries.processed(message);
+        message.ack();
+        concurrency.acked(persistedAt);
+    }
 
-        } catch (final Exception e)
-        {
-            LOGGER.error("Failed to process item-delete event", e);
-        }
+    // the channel's failure strategy hands the record to the retry topics, and in the end to the dead letter topic
+    private void failed(final Message<ItemEvent> message, final Throwable failure, final long persistedAt)
+    {
+        message.nack(failure).thenRun(() -> redeliveries.processed(message));
+        concurrency.acked(persistedAt);
     }
 }
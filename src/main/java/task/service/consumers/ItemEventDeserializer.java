@@ -0,0 +1,170 @@
+package task.service.consumers;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.serialization.Deserializer;
+import task.service.metrics.PipelineMetrics;
+import task.service.models.messages.ItemContent;
+import task.service.models.messages.ItemEvent;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads {@link ItemEvent}s straight from the record bytes with Jackson's streaming parser, without building a
+ * {@code String} of the payload or a map of the content. Unknown fields are skipped. Anything that is not an item event
+ * object throws, which hands the record to the channel's deserialization failure handler.
+ *
+ * <p>
+ * Kafka creates deserializers itself, so parse times go to Micrometer's global registry, which Quarkus adds its
+ * registries to. Each consumer has its own instance and calls it from its polling thread only.
+ */
+public final class ItemEventDeserializer implements Deserializer<ItemEvent>
+{
+    private static final JsonFactory JSON = new JsonFactory();
+
+    // the values nearly every record carries, returned as constants instead of fresh strings
+    private static final String[] KNOWN_EVENTS = {"item-created", "item-updated", "item-deleted"};
+    private static final String[] KNOWN_TYPES = {"task"};
+
+    private final Map<String, Timer> parseTimers = new HashMap<>();
+
+    @Override
+    public ItemEvent deserialize(final String topic, final byte[] data)
+    {
+        if (data == null)
+        {
+            return null;
+        }
+
+        var start = System.nanoTime();
+        try
+        {
+            return parse(topic, data);
+        } finally
+        {
+            parseTimers.computeIfAbsent(topic, known -> PipelineMetrics.parseTimer(Metrics.globalRegistry, known))
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private static ItemEvent parse(final String topic, final byte[] data)
+    {
+        try (var parser = JSON.createParser(data))
+        {
+            expect(parser.nextToken(), JsonToken.START_OBJECT);
+
+            var event = new ItemEvent();
+            event.setContent(new ItemContent());
+
+            String field;
+            while ((field = parser.nextFieldName()) != null)
+            {
+                var token = parser.nextToken();
+                switch (field)
+                {
+                    case "event" -> event.setEvent(text(parser, token, KNOWN_EVENTS));
+                    case "itemUid" -> event.setItemUid(text(parser, token, null));
+                    case "userUid" -> event.setUserUid(text(parser, token, null));
+                    case "type" -> event.setType(text(parser, token, KNOWN_TYPES));
+                    case "time" -> event.setTime(token == JsonToken.VALUE_NULL ? 0 : parser.getLongValue());
+                    case "content" -> readContent(parser, token, event.getContent());
+                    default -> parser.skipChildren();
+                }
+            }
+
+            expect(parser.currentToken(), JsonToken.END_OBJECT);
+            return event;
+        } catch (final IOException | RuntimeException e)
+        {
+            throw new SerializationException("Malformed item event on " + topic, e);
+        }
+    }
+
+    private static void readContent(final JsonParser parser, final JsonToken token, final ItemContent content)
+            throws IOException
+    {
+        if (token == JsonToken.VALUE_NULL)
+        {
+            return;
+        }
+        expect(token, JsonToken.START_OBJECT);
+
+        String field;
+        while ((field = parser.nextFieldName()) != null)
+        {
+            var value = parser.nextToken();
+            switch (field)
+            {
+                case "priority" -> content.setPriority(flag(parser, value));
+                case "completed" -> content.setCompleted(flag(parser, value));
+                case "time" -> content.setTime(value == JsonToken.VALUE_NULL ? null : parser.getLongValue());
+                default -> parser.skipChildren();
+            }
+        }
+    }
+
+    // only a literal true is true; an object or array is skipped whole, so the parser keeps its place
+    private static boolean flag(final JsonParser parser, final JsonToken token) throws IOException
+    {
+        parser.skipChildren();
+        return token == JsonToken.VALUE_TRUE;
+    }
+
+    private static String text(final JsonParser parser, final JsonToken token, final String[] known)
+            throws IOException
+    {
+        if (token == JsonToken.VALUE_NULL)
+        {
+            return null;
+        }
+        expect(token, JsonToken.VALUE_STRING);
+
+        if (known != null)
+        {
+            var chars = parser.getTextCharacters();
+            var offset = parser.getTextOffset();
+            var length = parser.getTextLength();
+
+            for (var candidate : known)
+            {
+                if (matches(candidate, chars, offset, length))
+                {
+                    return candidate;
+                }
+            }
+        }
+
+        return parser.getText();
+    }
+
+    private static boolean matches(final String candidate, final char[] chars, final int offset, final int length)
+    {
+        if (candidate.length() != length)
+        {
+            return false;
+        }
+        for (var i = 0; i < length; i++)
+        {
+            if (candidate.charAt(i) != chars[offset + i])
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void expect(final JsonToken actual, final JsonToken expected) throws IOException
+    {
+        if (actual != expected)
+        {
+            throw new IOException("Expected " + expected + " but found " + actual);
+        }
+    }
+}
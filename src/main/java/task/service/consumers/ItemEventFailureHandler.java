@@ -0,0 +1,41 @@
+package task.service.consumers;
+
+import io.smallrye.common.annotation.Identifier;
+import io.smallrye.reactive.messaging.kafka.DeserializationFailureHandler;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.apache.kafka.common.header.Headers;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import task.service.metrics.PipelineMetrics;
+import task.service.models.messages.ItemEvent;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Receives the records {@link ItemEventDeserializer} rejects. They are logged and passed on with a {@code null}
+ * payload, which the consumers skip, so one malformed record does not stop the channel.
+ */
+@ApplicationScoped
+@Identifier("item-event-failure")
+public final class ItemEventFailureHandler implements DeserializationFailureHandler<ItemEvent>
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(ItemEventFailureHandler.class);
+    private static final int MAX_LOGGED_BYTES = 512;
+
+    @Inject
+    PipelineMetrics metrics;
+
+    @Override
+    public ItemEvent handleDeserializationFailure(final String topic, final boolean isKey, final String deserializer,
+            final byte[] data, final Exception exception, final Headers headers)
+    {
+        var preview = data == null
+                ? "null"
+                : new String(data, 0, Math.min(data.length, MAX_LOGGED_BYTES), StandardCharsets.UTF_8);
+        LOGGER.error("Skipping malformed record on {}: {}", topic, preview, exception);
+        metrics.stages(topic).skipped().increment();
+
+        return null;
+    }
+}
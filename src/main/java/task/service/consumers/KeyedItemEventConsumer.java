@@ -0,0 +1,141 @@
+package task.service.consumers;
+
+import io.quarkus.arc.properties.IfBuildProperty;
+import io.quarkus.virtual.threads.VirtualThreads;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.reactive.messaging.Incoming;
+import org.eclipse.microprofile.reactive.messaging.Message;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import task.service.metrics.PipelineMetrics;
+import task.service.models.messages.ItemEvent;
+import task.service.services.ItemEventProcessor;
+
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Function;
+
+/**
+ * Parallel counterpart of {@link ItemEventConsumer}, enabled with {@code feedback.consumer.mode=keyed}. Records are
+ * handed to a {@link KeyedLaneExecutor} keyed by {@code userUid}, shared by all three channels, so one user's creates,
+ * updates and deletes run in arrival order while other users proceed in parallel. Each record is acked when its lane
+ * has processed it and its feedback records are acknowledged; the throttled commit strategy only commits an offset
+ * once every earlier record of the partition is acked. Failed records are nacked into the retry topics, as in
+ * {@link ItemEventConsumer}. No more users run in parallel than the {@link AdaptiveConcurrency} limit.
+ */
+@ApplicationScoped
+@IfBuildProperty(name = "feedback.consumer.mode", stringValue = "keyed")
+public final class KeyedItemEventConsumer
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(KeyedItemEventConsumer.class);
+
+    @Inject
+    ItemEventProcessor processor;
+
+    @Inject
+    PipelineMetrics metrics;
+
+    @Inject
+    RedeliveryFilter redeliveries;
+
+    @Inject
+    AdaptiveConcurrency concurrency;
+
+    // virtual threads where the JVM supports them, the Quarkus worker pool otherwise
+    @Inject
+    @VirtualThreads
+    ExecutorService laneThreads;
+
+    @ConfigProperty(name = "feedback.consumer.max-keys-in-flight")
+    int maxKeysInFlight;
+
+    private KeyedLaneExecutor lanes;
+
+    @PostConstruct
+    void init()
+    {
+        lanes = new KeyedLaneExecutor(laneThreads, this::keysInFlightLimit);
+    }
+
+    @Incoming("created")
+    public CompletionStage<Void> consumeCreated(final Message<ItemEvent> message)
+    {
+        return consume("item-created", message, processor::created);
+    }
+
+    @Incoming("updated")
+    public CompletionStage<Void> consumeUpdated(final Message<ItemEvent> message)
+    {
+        return consume("item-updated", message, processor::updated);
+    }
+
+    @Incoming("deleted")
+    public CompletionStage<Void> consumeDeleted(final Message<ItemEvent> message)
+    {
+        return consume("item-deleted", message, processor::deleted);
+    }
+
+    private CompletionStage<Void> consume(final String topic, final Message<ItemEvent> message,
+            final Function<ItemEvent, CompletionStage<Void>> handler)
+    {
+        var event = message.getPayload();
+        if (event == null)
+        {
+            // malformed, already reported by ItemEventFailureHandler
+            return message.ack();
+        }
+        if (redeliveries.isRedelivery(message))
+        {
+            metrics.stages(topic).skipped().increment();
+            return message.ack();
+        }
+        LOGGER.info("Received {} event: {}", topic, event.getEvent());
+
+        var startedAt = concurrency.started();
+        return lanes.submit(event.getUserUid(), () -> {
+            try
+            {
+                // the lane moves on once Mongo is done, the record waits for its feedback acks
+                var acked = handler.apply(event);
+                var persistedAt = concurrency.persisted(startedAt);
+                acked.whenComplete((ignored, failure) -> {
+                    if (failure == null)
+                    {
+                        done(message, persistedAt);
+                        return;
+                    }
+                    LOGGER.error("Failed to send feedback for {} event", topic, failure);
+                    metrics.stages(topic).failed().increment();
+                    failed(message, failure, persistedAt);
+                });
+            } catch (final Exception e)
+            {
+                LOGGER.error("Failed to process {} event", topic, e);
+                metrics.stages(topic).failed().increment();
+                failed(message, e, concurrency.persisted(startedAt));
+            }
+        });
+    }
+
+    private void done(final Message<ItemEvent> message, final long persistedAt)
+    {
+        redeliveries.processed(message);
+        message.ack();
+        concurrency.acked(persistedAt);
+    }
+
+    // the channel's failure strategy hands the record to the retry topics, and in the end to the dead letter topic
+    private void failed(final Message<ItemEvent> message, final Throwable failure, final long persistedAt)
+    {
+        message.nack(failure).thenRun(() -> redeliveries.processed(message));
+        concurrency.acked(persistedAt);
+    }
+
+    private int keysInFlightLimit()
+    {
+        return concurrency.isEnabled() ? Math.min(maxKeysInFlight, concurrency.limit()) : maxKeysInFlight;
+    }
+}
@@ -0,0 +1,171 @@
+package task.service.consumers;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.function.IntSupplier;
+
+/**
+ * Runs tasks one at a time per key and different keys in parallel. Each key with pending work owns a lane, which
+ * drains its queue on a single executor thread and goes away when empty; a task that throws does not end its lane. At
+ * most {@code maxKeysInFlight} lanes exist at once; a task for a new key beyond that waits, in arrival order, until a
+ * lane frees up. The limit is read on every admission, so it can move while lanes are busy.
+ */
+final class KeyedLaneExecutor
+{
+    private final Executor executor;
+    private final IntSupplier maxKeysInFlight;
+    private final Map<String, Lane> lanes = new HashMap<>();
+    private final Queue<Pending> pending = new ArrayDeque<>();
+
+    KeyedLaneExecutor(final Executor executor, final IntSupplier maxKeysInFlight)
+    {
+        this.executor = executor;
+        this.maxKeysInFlight = maxKeysInFlight;
+    }
+
+    /**
+     * Queues the task on its key's lane. The returned stage completes once the task is admitted to a lane, not when it
+     * has run, so callers can use it to hold back the next record while all lanes are busy.
+     */
+    CompletionStage<Void> submit(final String key, final Runnable task)
+    {
+        Lane started;
+        synchronized (this)
+        {
+            // behind a waiting task of the same key, even if its lane exists or has room by now
+            if (isWaiting(key) || !lanes.containsKey(key) && lanes.size() >= maxKeysInFlight.getAsInt())
+            {
+                var admitted = new CompletableFuture<Void>();
+                pending.add(new Pending(key, task, admitted));
+                return admitted;
+            }
+            started = enqueue(key, task);
+        }
+
+        if (started != null)
+        {
+            executor.execute(started);
+        }
+        return CompletableFuture.completedFuture(null);
+    }
+
+    synchronized int keysInFlight()
+    {
+        return lanes.size();
+    }
+
+    /**
+     * Adds the task to the key's lane and returns the lane if it is new and still has to be started. Caller holds the
+     * lock.
+     */
+    private Lane enqueue(final String key, final Runnable task)
+    {
+        var lane = lanes.get(key);
+        if (lane != null)
+        {
+            lane.tasks.add(task);
+            return null;
+        }
+
+        lane = new Lane(key);
+        lane.tasks.add(task);
+        lanes.put(key, lane);
+        return lane;
+    }
+
+    // caller holds the lock
+    private boolean isWaiting(final String key)
+    {
+        for (var next : pending)
+        {
+            if (next.key.equals(key))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Moves waiting tasks onto lanes, in arrival order, while there is room or their key's lane exists. Caller holds
+     * the lock; the lanes to start and the tasks admitted are handed to {@link #start} once it is released.
+     */
+    private void admit(final Queue<Lane> started, final Queue<Pending> admitted)
+    {
+        var max = maxKeysInFlight.getAsInt();
+        while (!pending.isEmpty() && (lanes.size() < max || lanes.containsKey(pending.peek().key)))
+        {
+            var next = pending.poll();
+            var lane = enqueue(next.key, next.task);
+            if (lane != null)
+            {
+                started.add(lane);
+            }
+            admitted.add(next);
+        }
+    }
+
+    private void start(final Queue<Lane> started, final Queue<Pending> admitted)
+    {
+        started.forEach(executor::execute);
+        admitted.forEach(next -> next.admitted.complete(null));
+    }
+
+    private record Pending(String key, Runnable task, CompletableFuture<Void> admitted)
+    {
+    }
+
+    private final class Lane implements Runnable
+    {
+        private final String key;
+        private final Queue<Runnable> tasks = new ArrayDeque<>();
+
+        private Lane(final String key)
+        {
+            this.key = key;
+        }
+
+        @Override
+        public void run()
+        {
+            var drained = false;
+            var started = new ArrayDeque<Lane>();
+            var admitted = new ArrayDeque<Pending>();
+            try
+            {
+                while (!drained)
+                {
+                    Runnable task;
+                    synchronized (KeyedLaneExecutor.this)
+                    {
+                        task = tasks.poll();
+                        if (task == null)
+                        {
+                            lanes.remove(key);
+                            // under the same lock, so no task submitted meanwhile overtakes a waiting one
+                            admit(started, admitted);
+                            drained = true;
+                            continue;
+                        }
+                    }
+                    task.run();
+                }
+            } finally
+            {
+                if (drained)
+                {
+                    start(started, admitted);
+                } else
+                {
+                    // a task threw: the rest of the lane goes on in a new run, so the key is not stuck
+                    executor.execute(this);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package task.service.consumers;
+
+import task.service.models.ProcessedOffsets;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.TreeSet;
+
+/**
+ * Which offsets of one partition are processed, in constant memory per record in flight. Everything up to the
+ * watermark is processed; above it, the offsets that finished before an earlier one are kept until the watermark
+ * passes them. Offsets need not be contiguous: the watermark advances over the offsets in the order they were
+ * received, so gaps left by compaction or transaction markers do not hold it back.
+ */
+final class PartitionProgress
+{
+    private long watermark;
+    private final TreeSet<Long> doneAhead;
+    private final ArrayDeque<Long> received = new ArrayDeque<>();
+    private boolean dirty;
+
+    PartitionProgress(final long watermark, final Collection<Long> doneAhead)
+    {
+        this.watermark = watermark;
+        this.doneAhead = new TreeSet<>(doneAhead);
+    }
+
+    /**
+     * Registers a received record. Returns {@code false} if the offset was already processed, i.e. the record is a
+     * redelivery.
+     */
+    synchronized boolean receive(final long offset)
+    {
+        if (offset <= watermark || doneAhead.contains(offset))
+        {
+            return false;
+        }
+
+        received.addLast(offset);
+        return true;
+    }
+
+    synchronized void done(final long offset)
+    {
+        dirty = true;
+        if (received.isEmpty() || received.peekFirst() != offset)
+        {
+            doneAhead.add(offset);
+            return;
+        }
+
+        watermark = received.pollFirst();
+        while (!received.isEmpty() && doneAhead.contains(received.peekFirst()))
+        {
+            watermark = received.pollFirst();
+        }
+        doneAhead.headSet(watermark, true).clear();
+    }
+
+    synchronized long watermark()
+    {
+        return watermark;
+    }
+
+    /**
+     * A snapshot to persist if anything changed since the last call, otherwise {@code null}.
+     */
+    synchronized ProcessedOffsets takeChanges(final String partition)
+    {
+        if (!dirty)
+        {
+            return null;
+        }
+
+        dirty = false;
+        return new ProcessedOffsets(partition, watermark, new ArrayList<>(doneAhead));
+    }
+}
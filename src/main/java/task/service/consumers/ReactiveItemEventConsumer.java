@@ -0,0 +1,114 @@
+package task.service.consumers;
+
+import io.quarkus.arc.properties.IfBuildProperty;
+import io.smallrye.mutiny.Uni;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.reactive.messaging.Incoming;
+import org.eclipse.microprofile.reactive.messaging.Message;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import task.service.metrics.PipelineMetrics;
+import task.service.models.messages.ItemEvent;
+import task.service.services.ReactiveItemEventProcessor;
+
+import java.util.function.Function;
+
+/**
+ * Non-blocking counterpart of {@link ItemEventConsumer}, enabled with {@code feedback.consumer.mode=reactive}. Each
+ * channel keeps up to {@code feedback.consumer.max-in-flight} records in flight, ordered per item, and no more than
+ * the {@link AdaptiveConcurrency} limit. The reactive pipeline has no point between a record's Mongo work and its
+ * feedback acks, so it reports the record's whole time as its Mongo time.
+ */
+@ApplicationScoped
+@IfBuildProperty(name = "feedback.consumer.mode", stringValue = "reactive")
+public final class ReactiveItemEventConsumer
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(ReactiveItemEventConsumer.class);
+
+    @Inject
+    ReactiveItemEventProcessor processor;
+
+    @Inject
+    PipelineMetrics metrics;
+
+    @Inject
+    RedeliveryFilter redeliveries;
+
+    @Inject
+    AdaptiveConcurrency concurrency;
+
+    @ConfigProperty(name = "feedback.consumer.max-in-flight")
+    int maxInFlight;
+
+    private InFlightLimiter createdLimiter;
+    private InFlightLimiter updatedLimiter;
+    private InFlightLimiter deletedLimiter;
+
+    @PostConstruct
+    void init()
+    {
+        createdLimiter = new InFlightLimiter(this::limit);
+        updatedLimiter = new InFlightLimiter(this::limit);
+        deletedLimiter = new InFlightLimiter(this::limit);
+    }
+
+    @Incoming("created")
+    public Uni<Void> consumeCreated(final Message<ItemEvent> message)
+    {
+        return consume("item-created", message, createdLimiter, processor::created);
+    }
+
+    @Incoming("updated")
+    public Uni<Void> consumeUpdated(final Message<ItemEvent> message)
+    {
+        return consume("item-updated", message, updatedLimiter, processor::updated);
+    }
+
+    @Incoming("deleted")
+    public Uni<Void> consumeDeleted(final Message<ItemEvent> message)
+    {
+        return consume("item-deleted", message, deletedLimiter, processor::deleted);
+    }
+
+    private Uni<Void> consume(final String topic, final Message<ItemEvent> message, final InFlightLimiter limiter,
+            final Function<ItemEvent, Uni<Void>> handler)
+    {
+        var event = message.getPayload();
+        if (event == null)
+        {
+            // malformed, already reported by ItemEventFailureHandler
+            return Uni.createFrom().completionStage(message.ack());
+        }
+        if (redeliveries.isRedelivery(message))
+        {
+            metrics.stages(topic).skipped().increment();
+            return Uni.createFrom().completionStage(message.ack());
+        }
+        LOGGER.info("Received {} event: {}", topic, event.getEvent());
+
+        var startedAt = concurrency.started();
+        var tracked = message.withAck(() -> {
+            redeliveries.processed(message);
+            concurrency.acked(concurrency.persisted(startedAt));
+            return message.ack();
+        }).withNack(failure -> {
+            concurrency.acked(concurrency.persisted(startedAt));
+            return message.nack(failure).thenRun(() -> redeliveries.processed(message));
+        });
+        // a failure nacks the record into the retry topics, see ItemEventConsumer
+        return limiter.submit(event.getItemUid(), tracked,
+                () -> handler.apply(event).onFailure()
+                        .invoke(e -> {
+                            LOGGER.error("Failed to process {} event", topic, e);
+                            metrics.stages(topic).failed().increment();
+                        }));
+    }
+
+    private int limit()
+    {
+        return concurrency.isEnabled() ? Math.min(maxInFlight, concurrency.limit()) : maxInFlight;
+    }
+}
@@ -0,0 +1,169 @@
+package task.service.consumers;
+
+import io.quarkus.runtime.ShutdownEvent;
+import io.quarkus.scheduler.Scheduled;
+import io.smallrye.reactive.messaging.kafka.api.IncomingKafkaRecordMetadata;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import org.apache.kafka.common.TopicPartition;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.reactive.messaging.Message;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import task.service.models.ProcessedOffsets;
+import task.service.repos.ProcessedOffsetsRepository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Recognizes records that were already processed when Kafka delivers them again, after a crash or a rebalance left
+ * their offsets uncommitted. The consumers skip such records and ack them straight away, so a redelivery costs a
+ * lookup in memory instead of Mongo writes and repeated feedback.
+ *
+ * <p>
+ * Progress is tracked per partition in {@link PartitionProgress}, only for the partitions this instance holds, and
+ * persisted to {@code processed_offsets} every {@code feedback.dedup.persist-interval}, on revocation and on shutdown.
+ * It is loaded when a partition is assigned. Records finished since the last save are processed again after a crash,
+ * which the upserts and counter deltas tolerate. Records without Kafka metadata are never treated as redeliveries.
+ */
+@ApplicationScoped
+public final class RedeliveryFilter
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(RedeliveryFilter.class);
+
+    @Inject
+    ProcessedOffsetsRepository repository;
+
+    @ConfigProperty(name = "feedback.dedup.enabled")
+    boolean enabled;
+
+    private final Map<TopicPartition, PartitionProgress> partitions = new ConcurrentHashMap<>();
+
+    /**
+     * Whether the record was processed before. Otherwise registers it as in flight, to be passed to
+     * {@link #processed(String, int, long)} once done. Records of partitions this instance does not hold are never
+     * taken as redeliveries, nor tracked.
+     */
+    public boolean isRedelivery(final String topic, final int partition, final long offset)
+    {
+        if (!enabled)
+        {
+            return false;
+        }
+        var progress = partitions.get(new TopicPartition(topic, partition));
+        return progress != null && !progress.receive(offset);
+    }
+
+    public boolean isRedelivery(final Message<?> message)
+    {
+        var metadata = message.getMetadata(IncomingKafkaRecordMetadata.class);
+        return metadata.isPresent()
+                && isRedelivery(metadata.get().getTopic(), metadata.get().getPartition(), metadata.get().getOffset());
+    }
+
+    public void processed(final String topic, final int partition, final long offset)
+    {
+        // a record of a partition revoked meanwhile is left to the partition's next owner
+        var progress = enabled ? partitions.get(new TopicPartition(topic, partition)) : null;
+        if (progress != null)
+        {
+            progress.done(offset);
+        }
+    }
+
+    public void processed(final Message<?> message)
+    {
+        message.getMetadata(IncomingKafkaRecordMetadata.class)
+                .ifPresent(metadata -> processed(metadata.getTopic(), metadata.getPartition(), metadata.getOffset()));
+    }
+
+    /**
+     * Loads the stored progress of newly assigned partitions. Called from the rebalance listener, before any of their
+     * records are polled.
+     */
+    public void assigned(final Collection<TopicPartition> assigned)
+    {
+        if (!enabled || assigned.isEmpty())
+        {
+            return;
+        }
+
+        var stored = new ArrayList<String>(assigned.size());
+        assigned.forEach(partition -> stored.add(id(partition)));
+
+        var loaded = 0;
+        for (var progress : repository.findByPartitions(stored))
+        {
+            var separator = progress.getPartition().lastIndexOf('-');
+            var partition = new TopicPartition(progress.getPartition().substring(0, separator),
+                    Integer.parseInt(progress.getPartition().substring(separator + 1)));
+            partitions.put(partition, new PartitionProgress(progress.getWatermark(),
+                    progress.getAhead() != null ? progress.getAhead() : List.of()));
+            loaded++;
+        }
+        assigned.forEach(partition -> partitions.putIfAbsent(partition, new PartitionProgress(-1, List.of())));
+
+        LOGGER.info("Loaded processed offsets of {} of {} assigned partitions", loaded, assigned.size());
+    }
+
+    /**
+     * Saves and forgets the progress of revoked partitions; their next owner loads it.
+     */
+    public void revoked(final Collection<TopicPartition> revoked)
+    {
+        if (!enabled || revoked.isEmpty())
+        {
+            return;
+        }
+
+        save(revoked);
+        revoked.forEach(partitions::remove);
+    }
+
+    @Scheduled(every = "{feedback.dedup.persist-interval}", skipExecutionIf = Scheduled.ApplicationNotRunning.class)
+    void persist()
+    {
+        if (enabled)
+        {
+            save(List.copyOf(partitions.keySet()));
+        }
+    }
+
+    void onStop(@Observes final ShutdownEvent event)
+    {
+        persist();
+    }
+
+    private void save(final Collection<TopicPartition> toSave)
+    {
+        var changed = new ArrayList<ProcessedOffsets>();
+        for (var partition : toSave)
+        {
+            var progress = partitions.get(partition);
+            var snapshot = progress != null ? progress.takeChanges(id(partition)) : null;
+            if (snapshot != null)
+            {
+                changed.add(snapshot);
+            }
+        }
+
+        try
+        {
+            repository.saveAll(changed);
+        } catch (final Exception e)
+        {
+            // a later save covers it; until then a crash only means more reprocessing
+            LOGGER.error("Failed to save processed offsets of {} partitions", changed.size(), e);
+        }
+    }
+
+    private static String id(final TopicPartition partition)
+    {
+        return partition.topic() + "-" + partition.partition();
+    }
+}
@@ -0,0 +1,34 @@
+package task.service.health;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.health.HealthCheck;
+import org.eclipse.microprofile.health.HealthCheckResponse;
+import org.eclipse.microprofile.health.Readiness;
+import task.service.consumers.AdaptiveConcurrency;
+
+/**
+ * Not ready while {@link AdaptiveConcurrency} holds the item topics paused, with the in-flight limit and the latencies
+ * it acts on either way.
+ */
+@Readiness
+@ApplicationScoped
+public class BackpressureReadinessCheck implements HealthCheck
+{
+    @Inject
+    AdaptiveConcurrency concurrency;
+
+    @Override
+    public HealthCheckResponse call()
+    {
+        return HealthCheckResponse.named("backpressure")
+                .status(!concurrency.isPaused())
+                .withData("enabled", concurrency.isEnabled())
+                .withData("paused", concurrency.isPaused())
+                .withData("limit", concurrency.limit())
+                .withData("inFlight", concurrency.inFlight())
+                .withData("persistLatencyMs", concurrency.persistLatency().toMillis())
+                .withData("ackLatencyMs", concurrency.ackLatency().toMillis())
+                .build();
+    }
+}
@@ -0,0 +1,199 @@
+package task.service.jobs;
+
+import task.service.models.TaskStatus;
+import task.service.models.messages.ItemEvent;
+import task.service.services.FeedbackService;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Folds replayed item events into the final state of each item, ordered by event time rather than by arrival: the
+ * three topics are read side by side, so an update can arrive before the create it follows. An event older than the
+ * item's state is stale and dropped. An update of an item that is not known yet waits for its create; a delete leaves
+ * a tombstone, so a create not newer than the delete does not bring the item back.
+ *
+ * <p>
+ * Updates and deletes need the item's state before the replay started, which the caller loads in bulk for
+ * {@link #misses(List)} and hands to {@link #known(Collection, Collection)}. The tombstones of deleted items, stored
+ * or folded, outlive {@link #drain()}, so they keep applying to the events of later chunks. Not thread-safe.
+ */
+final class BackfillFold
+{
+    private final FeedbackService feedbackService;
+
+    private final Map<String, ItemState> items = new HashMap<>();
+    private final Map<String, ItemEvent> orphans = new HashMap<>();
+    // of the items deleted as of the drained chunks
+    private final Map<String, Long> deletedAt = new HashMap<>();
+
+    private long applied;
+    private long stale;
+    private long skipped;
+
+    BackfillFold(final FeedbackService feedbackService)
+    {
+        this.feedbackService = feedbackService;
+    }
+
+    /**
+     * The items updated or deleted by the events whose state is neither folded nor loaded yet.
+     */
+    Set<String> misses(final List<ItemEvent> events)
+    {
+        var misses = new HashSet<String>();
+        for (var event : events)
+        {
+            if (!"item-created".equals(event.getEvent()) && !items.containsKey(event.getItemUid())
+                    && !deletedAt.containsKey(event.getItemUid()))
+            {
+                misses.add(event.getItemUid());
+            }
+        }
+        return misses;
+    }
+
+    /**
+     * Takes the stored state of the looked up items; those not found are remembered as absent.
+     */
+    void known(final Collection<String> lookedUp, final Collection<TaskStatus> stored)
+    {
+        lookedUp.forEach(uid -> items.putIfAbsent(uid, ItemState.ABSENT));
+        stored.forEach(status -> items.put(status.getUid(),
+                new ItemState(status.isDeleted() ? null : status, status.getUpdatedAt(), false)));
+    }
+
+    void apply(final ItemEvent event)
+    {
+        var uid = event.getItemUid();
+        var state = items.get(uid);
+        if (state == null && deletedAt.containsKey(uid))
+        {
+            state = new ItemState(null, deletedAt.get(uid), false);
+        }
+
+        switch (event.getEvent())
+        {
+            case "item-created" -> {
+                // one as old as the delete is stale too
+                if (state != null && (event.getTime() < state.changedAt()
+                        || state.isDeleted() && event.getTime() == state.changedAt()))
+                {
+                    stale++;
+                    return;
+                }
+                deletedAt.remove(uid);
+                var status = feedbackService.createStatus(event);
+                var orphan = orphans.remove(uid);
+                if (orphan != null && !FeedbackService.isStale(status, FeedbackService.updatedAt(orphan)))
+                {
+                    status = feedbackService.updateStatus(orphan, status);
+                }
+                items.put(uid, new ItemState(status, status.getUpdatedAt(), true));
+            }
+            case "item-updated" -> {
+                var changedAt = FeedbackService.updatedAt(event);
+                if (state != null && changedAt < state.changedAt())
+                {
+                    stale++;
+                    return;
+                }
+                if (state == null || state.status() == null)
+                {
+                    if (state != null && state.isDeleted())
+                    {
+                        skipped++;
+                        return;
+                    }
+                    orphans.merge(uid, event, BackfillFold::later);
+                    return;
+                }
+                feedbackService.updateStatus(event, state.status());
+                items.put(uid, new ItemState(state.status(), changedAt, true));
+            }
+            case "item-deleted" -> {
+                if (state != null && event.getTime() < state.changedAt())
+                {
+                    stale++;
+                    return;
+                }
+                items.put(uid, new ItemState(null, event.getTime(), true));
+            }
+            default -> {
+                skipped++;
+                return;
+            }
+        }
+
+        applied++;
+    }
+
+    /**
+     * Hands out the changed final states, the tombstone for a deleted item, and forgets every folded item but the
+     * deleted ones. Waiting updates are kept.
+     */
+    Map<String, TaskStatus> drain()
+    {
+        var changed = new HashMap<String, TaskStatus>();
+        items.forEach((uid, state) -> {
+            if (state.isDeleted())
+            {
+                deletedAt.put(uid, state.changedAt());
+            }
+            if (state.dirty())
+            {
+                changed.put(uid, state.isDeleted() ? TaskStatus.tombstone(uid, state.changedAt()) : state.status());
+            }
+        });
+        items.clear();
+        return changed;
+    }
+
+    int size()
+    {
+        return items.size();
+    }
+
+    /**
+     * Updates still waiting for the create of their item. After the replay these are updates of unknown items.
+     */
+    int orphans()
+    {
+        return orphans.size();
+    }
+
+    long applied()
+    {
+        return applied;
+    }
+
+    long stale()
+    {
+        return stale;
+    }
+
+    long skipped()
+    {
+        return skipped;
+    }
+
+    private static ItemEvent later(final ItemEvent parked, final ItemEvent arrived)
+    {
+        return FeedbackService.updatedAt(arrived) >= FeedbackService.updatedAt(parked) ? arrived : parked;
+    }
+
+    // a null status is a deleted or absent item
+    private record ItemState(TaskStatus status, long changedAt, boolean dirty)
+    {
+        static final ItemState ABSENT = new ItemState(null, Long.MIN_VALUE, false);
+
+        boolean isDeleted()
+        {
+            return status == null && this != ABSENT;
+        }
+    }
+}
@@ -0,0 +1,305 @@
+package task.service.jobs;
+
+import io.quarkus.arc.properties.IfBuildProperty;
+import io.quarkus.runtime.Quarkus;
+import io.quarkus.runtime.StartupEvent;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.RecordDeserializationException;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import task.service.consumers.ItemEventDeserializer;
+import task.service.models.TaskStatus;
+import task.service.models.messages.ItemEvent;
+import task.service.repos.TaskStatusRepository;
+import task.service.services.FeedbackService;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * The {@code backfill} consumer mode: replays the item topics into {@code tasks} once and exits, for onboarding an
+ * environment or repairing data. Instead of the consumers' round trips per record, a plain consumer reads the topics
+ * from {@code feedback.backfill.from} up to their end offsets at startup, {@link BackfillFold} folds every
+ * {@code feedback.backfill.chunk-size} items into their final states, and these are written as unordered bulk writes
+ * of {@code feedback.backfill.bulk-size}, {@code feedback.backfill.write-parallelism} at a time. The user counters are
+ * rebuilt from {@code tasks} at the end. No feedback is sent.
+ *
+ * <p>
+ * The item writes only apply where the stored item is not newer, so running a backfill next to live traffic, or more
+ * than once, does not roll items back. A delete leaves the item's tombstone, which neither a later chunk nor a stored
+ * item older than the delete brings back.
+ */
+@ApplicationScoped
+@IfBuildProperty(name = "feedback.consumer.mode", stringValue = "backfill")
+public final class BackfillJob
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(BackfillJob.class);
+    private static final List<String> ITEM_TOPICS = List.of("item-created", "item-updated", "item-deleted");
+    private static final Duration POLL_TIMEOUT = Duration.ofSeconds(1);
+
+    @Inject
+    FeedbackService feedbackService;
+
+    @Inject
+    TaskStatusRepository repository;
+
+    @Inject
+    CounterReconciliationJob reconciliationJob;
+
+    @ConfigProperty(name = "kafka.bootstrap.servers")
+    String bootstrapServers;
+
+    @ConfigProperty(name = "feedback.backfill.from")
+    String from;
+
+    @ConfigProperty(name = "feedback.backfill.offsets")
+    Optional<List<String>> offsets;
+
+    @ConfigProperty(name = "feedback.backfill.max-poll-records")
+    int maxPollRecords;
+
+    @ConfigProperty(name = "feedback.backfill.chunk-size")
+    int chunkSize;
+
+    @ConfigProperty(name = "feedback.backfill.bulk-size")
+    int bulkSize;
+
+    @ConfigProperty(name = "feedback.backfill.write-parallelism")
+    int writeParallelism;
+
+    @ConfigProperty(name = "feedback.backfill.progress-interval")
+    Duration progressInterval;
+
+    void onStart(@Observes final StartupEvent event)
+    {
+        var runner = new Thread(() -> {
+            try
+            {
+                run();
+                Quarkus.asyncExit(0);
+            } catch (final Exception e)
+            {
+                LOGGER.error("Backfill failed", e);
+                Quarkus.asyncExit(1);
+            }
+        }, "backfill");
+        runner.start();
+    }
+
+    public void run()
+    {
+        var startedAt = System.nanoTime();
+        var fold = new BackfillFold(feedbackService);
+        var progress = new Progress(startedAt);
+        var writers = Executors.newFixedThreadPool(writeParallelism,
+                runnable -> new Thread(runnable, "backfill-write"));
+
+        try (var consumer = new KafkaConsumer<String, ItemEvent>(consumerConfig()))
+        {
+            var partitions = new ArrayList<TopicPartition>();
+            ITEM_TOPICS.forEach(topic -> consumer.partitionsFor(topic)
+                    .forEach(info -> partitions.add(new TopicPartition(topic, info.partition()))));
+            consumer.assign(partitions);
+            seek(consumer, partitions);
+
+            var endOffsets = consumer.endOffsets(partitions);
+            var remaining = new ArrayList<TopicPartition>();
+            partitions.forEach(partition -> {
+                if (consumer.position(partition) < endOffsets.get(partition))
+                {
+                    remaining.add(partition);
+                }
+            });
+            progress.total = remaining.stream().mapToLong(p -> endOffsets.get(p) - consumer.position(p)).sum();
+            LOGGER.info("Backfilling {} records of {} partitions from {}", progress.total, remaining.size(), from);
+
+            while (!remaining.isEmpty())
+            {
+                var events = poll(consumer, progress);
+
+                var misses = fold.misses(events);
+                if (!misses.isEmpty())
+                {
+                    fold.known(misses, repository.findByUids(List.copyOf(misses)));
+                }
+                events.forEach(fold::apply);
+
+                if (fold.size() >= chunkSize)
+                {
+                    progress.written += write(writers, fold.drain());
+                }
+
+                var finished = remaining.stream()
+                        .filter(partition -> consumer.position(partition) >= endOffsets.get(partition)).toList();
+                consumer.pause(finished);
+                remaining.removeAll(finished);
+                progress.report(fold, false);
+            }
+
+            progress.written += write(writers, fold.drain());
+        } finally
+        {
+            writers.shutdown();
+        }
+
+        progress.report(fold, true);
+        if (fold.orphans() > 0)
+        {
+            LOGGER.warn("Skipped updates of {} items that were never created", fold.orphans());
+        }
+
+        reconciliationJob.reconcile();
+        LOGGER.info("Backfill done in {} s", Duration.ofNanos(System.nanoTime() - startedAt).toSeconds());
+    }
+
+    private List<ItemEvent> poll(final KafkaConsumer<String, ItemEvent> consumer, final Progress progress)
+    {
+        var events = new ArrayList<ItemEvent>(maxPollRecords);
+        try
+        {
+            for (var record : consumer.poll(POLL_TIMEOUT))
+            {
+                progress.read++;
+                if (record.value() != null)
+                {
+                    events.add(record.value());
+                }
+            }
+        } catch (final RecordDeserializationException e)
+        {
+            // the consumer stops in front of it, the records after it come with the next poll
+            LOGGER.warn("Skipping malformed record {} of {}", e.offset(), e.topicPartition(), e);
+            consumer.seek(e.topicPartition(), e.offset() + 1);
+            progress.read++;
+        }
+        return events;
+    }
+
+    /**
+     * Writes the final states in slices of {@code bulk-size} at once. Each item occurs once, so the slices can land in
+     * any order.
+     */
+    private int write(final ExecutorService writers, final Map<String, TaskStatus> finalStates)
+    {
+        var slices = new ArrayList<CompletableFuture<Void>>();
+        var slice = new HashMap<String, TaskStatus>(bulkSize);
+        for (var entry : finalStates.entrySet())
+        {
+            slice.put(entry.getKey(), entry.getValue());
+            if (slice.size() == bulkSize)
+            {
+                slices.add(writeAsync(writers, slice));
+                slice = new HashMap<>(bulkSize);
+            }
+        }
+        slices.add(writeAsync(writers, slice));
+
+        CompletableFuture.allOf(slices.toArray(CompletableFuture[]::new)).join();
+        return finalStates.size();
+    }
+
+    private CompletableFuture<Void> writeAsync(final ExecutorService writers, final Map<String, TaskStatus> slice)
+    {
+        return CompletableFuture.runAsync(() -> repository.bulkApply(slice), writers);
+    }
+
+    private void seek(final KafkaConsumer<String, ItemEvent> consumer, final List<TopicPartition> partitions)
+    {
+        if ("earliest".equals(from))
+        {
+            consumer.seekToBeginning(partitions);
+        } else
+        {
+            var timestamp = Instant.parse(from).toEpochMilli();
+            var query = new HashMap<TopicPartition, Long>();
+            partitions.forEach(partition -> query.put(partition, timestamp));
+
+            var found = consumer.offsetsForTimes(query);
+            var pastEnd = new ArrayList<TopicPartition>();
+            found.forEach((partition, offset) -> {
+                if (offset != null)
+                {
+                    consumer.seek(partition, offset.offset());
+                } else
+                {
+                    pastEnd.add(partition);
+                }
+            });
+            consumer.seekToEnd(pastEnd);
+        }
+
+        offsets.orElse(List.of()).forEach(start -> {
+            var separator = start.lastIndexOf('=');
+            var partitionId = start.substring(0, separator);
+            var partition = new TopicPartition(partitionId.substring(0, partitionId.lastIndexOf('-')),
+                    Integer.parseInt(partitionId.substring(partitionId.lastIndexOf('-') + 1)));
+            consumer.seek(partition, Long.parseLong(start.substring(separator + 1)));
+        });
+    }
+
+    private Properties consumerConfig()
+    {
+        var config = new Properties();
+        config.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+        config.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class.getName());
+        config.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, ItemEventDeserializer.class.getName());
+        config.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+        config.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, maxPollRecords);
+        // large fetches: the replay reads far behind the head of the topics
+        config.put(ConsumerConfig.FETCH_MIN_BYTES_CONFIG, 1024 * 1024);
+        config.put(ConsumerConfig.MAX_PARTITION_FETCH_BYTES_CONFIG, 8 * 1024 * 1024);
+        config.put(ConsumerConfig.FETCH_MAX_BYTES_CONFIG, 64 * 1024 * 1024);
+        return config;
+    }
+
+    private final class Progress
+    {
+        private final long startedAt;
+        private long lastReportAt;
+        private long lastRead;
+
+        long total;
+        long read;
+        long written;
+
+        Progress(final long startedAt)
+        {
+            this.startedAt = startedAt;
+            this.lastReportAt = startedAt;
+        }
+
+        void report(final BackfillFold fold, final boolean last)
+        {
+            var now = System.nanoTime();
+            if (!last && now - lastReportAt < progressInterval.toNanos())
+            {
+                return;
+            }
+
+            var since = last ? startedAt : lastReportAt;
+            var perSecond = (last ? read : read - lastRead) * 1_000_000_000L / Math.max(1, now - since);
+            LOGGER.info("Backfill {}: {} of {} records read, {}/s, {} applied, {} stale, {} skipped, {} items written",
+                    last ? "finished" : "progress", read, total, perSecond, fold.applied(), fold.stale(),
+                    fold.skipped(), written);
+
+            lastReportAt = now;
+            lastRead = read;
+        }
+    }
+}
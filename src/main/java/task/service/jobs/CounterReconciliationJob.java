@@ -0,0 +1,141 @@
+package task.service.jobs;
+
+import com.mongodb.client.model.Accumulators;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.MergeOptions;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.Updates;
+import io.quarkus.scheduler.Scheduled;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import task.service.cache.TaskStateCache;
+import task.service.repos.TaskArchiveRepository;
+import task.service.repos.TaskStatusFields;
+import task.service.repos.TaskStatusLayout;
+import task.service.repos.TaskStatusRepository;
+import task.service.repos.UserFeedbackCountersRepository;
+import task.service.services.FeedbackCounterService;
+
+import java.util.List;
+
+import static task.service.repos.UserFeedbackCountersRepository.COMPLETED_COUNT;
+import static task.service.repos.UserFeedbackCountersRepository.PRIORITY_COUNT;
+import static task.service.repos.UserFeedbackCountersRepository.VERSION;
+
+/**
+ * Rebuilds {@code user_feedback_counters} from the {@code tasks} collection and the rollups of archived tasks, which it
+ * rebuilds from the archive first. The counters are maintained with increments on the hot path, so this is the repair
+ * tool for drift, not something the consumers depend on.
+ *
+ * <p>
+ * It runs next to the consumers: the counters' versions are noted before the tasks are counted, and counters that an
+ * increment moved in the meantime are left as they are rather than overwritten with a count that may lack the change.
+ * A change whose item write is counted but whose increment lands after the counts were written is counted twice; that
+ * window is the time between the two writes of one event.
+ */
+@ApplicationScoped
+public final class CounterReconciliationJob
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(CounterReconciliationJob.class);
+    private static final String RECONCILED_AT = "reconciledAt";
+    private static final String COUNTED_VERSION = "countedVersion";
+    private static final Document VERSION_OR_ZERO = new Document("$ifNull", List.of("$" + VERSION, 0L));
+    // not moved by an increment since the versions were noted
+    private static final Document UNCHANGED = new Document("$eq", List.of(VERSION_OR_ZERO, "$" + COUNTED_VERSION));
+    private static final Document NEXT_VERSION = new Document("$add", List.of(VERSION_OR_ZERO, 1L));
+
+    @Inject
+    TaskStatusRepository taskRepository;
+
+    @Inject
+    UserFeedbackCountersRepository countersRepository;
+
+    @Inject
+    TaskArchiveRepository archive;
+
+    @Inject
+    FeedbackCounterService counterService;
+
+    @Inject
+    TaskStateCache stateCache;
+
+    @Scheduled(cron = "{feedback.counters.reconcile.cron}", concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    void scheduledReconcile()
+    {
+        reconcile();
+    }
+
+    public void reconcile()
+    {
+        var startedAt = System.currentTimeMillis();
+        LOGGER.info("Reconciling user feedback counters");
+        reconcileRollups(startedAt);
+
+        var counters = countersRepository.mongoCollection();
+        counters.updateMany(Filters.empty(), List.of(new Document("$set", new Document(COUNTED_VERSION,
+                VERSION_OR_ZERO))));
+
+        // a plain 0 would exclude the field
+        var rollups = List.of(Aggregates.project(Projections.fields(
+                Projections.computed(PRIORITY_COUNT, new Document("$literal", 0)),
+                Projections.include(COMPLETED_COUNT))));
+        // tombstones have no user to count for
+        var pipeline = List.of(Aggregates.match(Filters.ne(TaskStatusFields.DELETED, true)),
+                TaskStatusRepository.countersGroup(TaskStatusLayout.value(TaskStatusFields.USER_UID)),
+                Aggregates.unionWith(archive.mongoCollection().getNamespace().getCollectionName(), rollups),
+                Aggregates.group("$_id", Accumulators.sum(PRIORITY_COUNT, "$" + PRIORITY_COUNT),
+                        Accumulators.sum(COMPLETED_COUNT, "$" + COMPLETED_COUNT)),
+                Aggregates.project(Projections.fields(Projections.include(PRIORITY_COUNT, COMPLETED_COUNT),
+                        Projections.computed(RECONCILED_AT, startedAt))),
+                Aggregates.merge(counters.getNamespace().getCollectionName(),
+                        new MergeOptions().whenMatched(MergeOptions.WhenMatched.PIPELINE)
+                                .whenMatchedPipeline(List.of(new Document("$replaceWith", new Document("$cond",
+                                        List.of(UNCHANGED, new Document("$mergeObjects",
+                                                List.of("$$new", new Document(VERSION, NEXT_VERSION))), "$$ROOT")))))
+                                .whenNotMatched(MergeOptions.WhenNotMatched.INSERT)));
+
+        taskRepository.mongoCollection().aggregate(pipeline, Document.class).toCollection();
+
+        // users reconciled by an earlier run but without any task left were not touched by $merge
+        var zeroed = counters.updateMany(Filters.and(Filters.lt(RECONCILED_AT, startedAt), Filters.expr(UNCHANGED)),
+                List.of(new Document("$set", new Document(PRIORITY_COUNT, 0).append(COMPLETED_COUNT, 0)
+                        .append(RECONCILED_AT, startedAt).append(VERSION, NEXT_VERSION)),
+                        new Document("$unset", COUNTED_VERSION)));
+        // what is left noted was moved by increments while counting
+        var changed = counters.updateMany(Filters.exists(COUNTED_VERSION), Updates.unset(COUNTED_VERSION));
+        // rewritten behind the cache, without a version the cache could compare
+        stateCache.invalidateAllCounters();
+
+        LOGGER.info("Reconciled user feedback counters in {} ms, {} emptied, {} left to their increments",
+                System.currentTimeMillis() - startedAt, zeroed.getModifiedCount(), changed.getModifiedCount());
+    }
+
+    private void reconcileRollups(final long startedAt)
+    {
+        var pipeline = List.of(Aggregates.group("$" + TaskStatusFields.USER_UID, Accumulators.sum(COMPLETED_COUNT, 1)),
+                Aggregates.project(Projections.fields(Projections.include(COMPLETED_COUNT),
+                        Projections.computed(RECONCILED_AT, startedAt))),
+                Aggregates.merge(archive.mongoCollection().getNamespace().getCollectionName(),
+                        new MergeOptions().whenMatched(MergeOptions.WhenMatched.REPLACE)
+                                .whenNotMatched(MergeOptions.WhenNotMatched.INSERT)));
+
+        archive.archive().aggregate(pipeline, Document.class).toCollection();
+        // rollups of users without archived tasks left, including those only ever incremented
+        archive.mongoCollection().updateMany(Filters.not(Filters.gte(RECONCILED_AT, startedAt)),
+                Updates.combine(Updates.set(COMPLETED_COUNT, 0), Updates.set(RECONCILED_AT, startedAt)));
+    }
+
+    /**
+     * Rebuilds a single user's counters, like the consumers do for a user without counters.
+     */
+    public void reconcile(final String userUid)
+    {
+        counterService.recount(userUid);
+
+        LOGGER.info("Reconciled feedback counters of user {}", userUid);
+    }
+}
@@ -0,0 +1,133 @@
+package task.service.jobs;
+
+import io.quarkus.runtime.ShutdownEvent;
+import io.quarkus.scheduler.Scheduled;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import task.service.models.TaskStatus;
+import task.service.repos.TaskArchiveRepository;
+import task.service.repos.TaskStatusLayout;
+import task.service.repos.TaskStatusRepository;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Keeps {@code tasks} small by moving tasks completed longer than {@code feedback.tiering.age} ago to the archive of
+ * {@link TaskArchiveRepository}, in batches of {@code feedback.tiering.batch-size} with a pause in between, so the
+ * consumers keep the collection for themselves. The moved tasks are counted in their users' rollups, which keeps the
+ * completed totals exact.
+ *
+ * <p>
+ * A task is copied to the archive first and then deleted from {@code tasks} only if it did not change meanwhile; a
+ * task that did change, or was deleted and left its tombstone, has its copy dropped. A task gone from {@code tasks}
+ * was moved by another instance running the job at the same time, which counted the copy, so the copy stays. After a
+ * crash between the steps, {@link CounterReconciliationJob} rebuilds the rollups from the archive.
+ */
+@ApplicationScoped
+public final class TaskTieringJob
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(TaskTieringJob.class);
+
+    @Inject
+    TaskStatusRepository taskRepository;
+
+    @Inject
+    TaskArchiveRepository archive;
+
+    @ConfigProperty(name = "feedback.tiering.enabled")
+    boolean enabled;
+
+    @ConfigProperty(name = "feedback.tiering.age")
+    Duration age;
+
+    @ConfigProperty(name = "feedback.tiering.batch-size")
+    int batchSize;
+
+    @ConfigProperty(name = "feedback.tiering.pause")
+    Duration pause;
+
+    private volatile boolean stopped;
+
+    @Scheduled(every = "{feedback.tiering.interval}", concurrentExecution = Scheduled.ConcurrentExecution.SKIP,
+            skipExecutionIf = Scheduled.ApplicationNotRunning.class)
+    void scheduledTier() throws InterruptedException
+    {
+        // items of the legacy layout are not found by completion time yet
+        if (enabled && !TaskStatusLayout.hasLegacyItems())
+        {
+            tier();
+        }
+    }
+
+    void onStop(@Observes final ShutdownEvent event)
+    {
+        stopped = true;
+    }
+
+    /**
+     * Moves every task completed before the configured age, and returns how many.
+     */
+    public long tier() throws InterruptedException
+    {
+        var startedAt = System.currentTimeMillis();
+        var completedBefore = startedAt - age.toMillis();
+        var moved = 0L;
+
+        while (!stopped)
+        {
+            var batch = taskRepository.findArchivable(completedBefore, batchSize);
+            if (batch.isEmpty())
+            {
+                break;
+            }
+            moved += move(batch);
+            Thread.sleep(pause.toMillis());
+        }
+
+        if (moved > 0)
+        {
+            LOGGER.info("Moved {} tasks completed before {} ms ago to the archive in {} ms", moved, age.toMillis(),
+                    System.currentTimeMillis() - startedAt);
+        }
+        return moved;
+    }
+
+    private int move(final List<TaskStatus> batch)
+    {
+        archive.copy(batch);
+
+        var movedByUser = new HashMap<String, Integer>();
+        var stayed = new ArrayList<TaskStatus>();
+        for (var task : batch)
+        {
+            if (taskRepository.deleteIfUnchanged(task))
+            {
+                movedByUser.merge(task.getUserUid(), 1, Integer::sum);
+            } else
+            {
+                stayed.add(task);
+            }
+        }
+
+        if (!stayed.isEmpty())
+        {
+            // only the copies of tasks still in tasks: the others were moved, and are counted, by another run
+            var stored = taskRepository.storedIds(stayed);
+            stayed.removeIf(task -> !stored.contains(task.getId()));
+        }
+        if (!stayed.isEmpty())
+        {
+            archive.discard(stayed);
+        }
+        archive.rollUp(movedByUser);
+
+        return movedByUser.values().stream().mapToInt(Integer::intValue).sum();
+    }
+}
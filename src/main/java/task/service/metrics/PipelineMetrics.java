@@ -0,0 +1,145 @@
+package task.service.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.smallrye.mutiny.Uni;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Meters of the event pipeline. Each topic and outgoing channel has its meters registered once and held, so the hot
+ * path records with a map lookup and an atomic update, without building tags. Timers publish a few percentiles rather
+ * than histogram buckets, which keeps the number of series per topic small.
+ *
+ * <p>
+ * Topics are the three item topics; events naming anything else are counted under {@value #OTHER}, so a misbehaving
+ * producer cannot grow the number of series.
+ */
+@ApplicationScoped
+public final class PipelineMetrics
+{
+    public static final String STAGE_TIMER = "feedback.pipeline.stage";
+    public static final String EVENTS_COUNTER = "feedback.pipeline.events";
+    public static final String ACK_TIMER = "feedback.emitter.ack";
+    public static final String SUPPRESSED_COUNTER = "feedback.emitter.suppressed";
+
+    static final String OTHER = "other";
+    private static final Set<String> TOPICS = Set.of("item-created", "item-updated", "item-deleted");
+
+    private final MeterRegistry registry;
+    private final Map<String, Stages> stages = new ConcurrentHashMap<>();
+    private final Map<String, Acks> acks = new ConcurrentHashMap<>();
+    private final Map<String, Counter> suppressed = new ConcurrentHashMap<>();
+
+    @Inject
+    public PipelineMetrics(final MeterRegistry registry)
+    {
+        this.registry = registry;
+    }
+
+    /**
+     * The meters of the topic an event of the given type arrives on.
+     */
+    public Stages stages(final String topic)
+    {
+        return stages.computeIfAbsent(known(topic), key -> Stages.register(registry, key));
+    }
+
+    /**
+     * The send-to-ack timers of an outgoing channel.
+     */
+    public Acks acks(final String channel)
+    {
+        return acks.computeIfAbsent(channel, key -> Acks.register(registry, key));
+    }
+
+    /**
+     * Feedback records of an outgoing channel not sent because the user already saw the same feedback.
+     */
+    public Counter suppressed(final String channel)
+    {
+        return suppressed.computeIfAbsent(channel,
+                key -> Counter.builder(SUPPRESSED_COUNTER).tag("channel", key).register(registry));
+    }
+
+    /**
+     * The parse timer of a topic, for code Kafka instantiates itself, outside CDI.
+     */
+    public static Timer parseTimer(final MeterRegistry registry, final String topic)
+    {
+        return Stages.stage(registry, known(topic), "parse");
+    }
+
+    /**
+     * Times a {@link Uni} from subscription until it emits or fails.
+     */
+    public static <T> Uni<T> time(final Timer timer, final Supplier<Uni<T>> work)
+    {
+        return Uni.createFrom().deferred(() -> {
+            var start = System.nanoTime();
+            return work.get().onTermination()
+                    .invoke(() -> timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS));
+        });
+    }
+
+    private static String known(final String topic)
+    {
+        return topic != null && TOPICS.contains(topic) ? topic : OTHER;
+    }
+
+    static Timer timer(final MeterRegistry registry, final String name, final String... tags)
+    {
+        return Timer.builder(name).tags(tags).publishPercentiles(0.5, 0.99, 0.999).register(registry);
+    }
+
+    /**
+     * Per topic: time spent parsing, persisting the item, moving the counters and handing the feedback to the emitters,
+     * and the number of events processed, failed, skipped as malformed or unknown, and dropped as older than the stored
+     * item.
+     */
+    public record Stages(Timer parse, Timer persist, Timer count, Timer emit, Counter processed, Counter failed,
+            Counter skipped, Counter stale)
+    {
+        static Stages register(final MeterRegistry registry, final String topic)
+        {
+            return new Stages(stage(registry, topic, "parse"), stage(registry, topic, "persist"),
+                    stage(registry, topic, "count"), stage(registry, topic, "emit"),
+                    outcome(registry, topic, "processed"), outcome(registry, topic, "failed"),
+                    outcome(registry, topic, "skipped"), outcome(registry, topic, "stale"));
+        }
+
+        private static Timer stage(final MeterRegistry registry, final String topic, final String stage)
+        {
+            return timer(registry, STAGE_TIMER, "topic", topic, "stage", stage);
+        }
+
+        private static Counter outcome(final MeterRegistry registry, final String topic, final String outcome)
+        {
+            return Counter.builder(EVENTS_COUNTER).tags("topic", topic, "outcome", outcome).register(registry);
+        }
+    }
+
+    /**
+     * Per outgoing channel: time from handing a record to the emitter until Kafka acknowledged or rejected it.
+     */
+    public record Acks(Timer acked, Timer nacked)
+    {
+        static Acks register(final MeterRegistry registry, final String channel)
+        {
+            return new Acks(timer(registry, ACK_TIMER, "channel", channel, "outcome", "ack"),
+                    timer(registry, ACK_TIMER, "channel", channel, "outcome", "nack"));
+        }
+
+        public void record(final long sentAtNanos, final boolean success)
+        {
+            (success ? acked : nacked).record(System.nanoTime() - sentAtNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+}
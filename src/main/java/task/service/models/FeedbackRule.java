@@ -0,0 +1,41 @@
+package task.service.models;
+
+import io.quarkus.mongodb.panache.common.MongoEntity;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.bson.BsonType;
+import org.bson.codecs.pojo.annotations.BsonId;
+import org.bson.codecs.pojo.annotations.BsonRepresentation;
+
+import java.util.List;
+
+/**
+ * A feedback rule as defined in config or in {@code feedback_rules}: which message, if any, an event sends on a
+ * feedback channel. A rule matches an event of one of its {@code events}, all item events if there are none, whose
+ * completion state and counts meet every condition that is set; the bounds are inclusive. The message may show one of
+ * the counts in place of {@code {priorityCount}} or {@code {completedCount}}. Per channel, the first matching rule in
+ * {@code order} wins, and no matching rule means no record on that channel.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@MongoEntity(collection = "feedback_rules")
+public final class FeedbackRule
+{
+    @BsonId
+    @BsonRepresentation(BsonType.OBJECT_ID)
+    private String id;
+
+    private String name;
+    private int order;
+    // "completed" or "priority"
+    private String channel;
+    private List<String> events;
+    private Boolean completed;
+    private Integer minPriorityCount;
+    private Integer maxPriorityCount;
+    private Integer minCompletedCount;
+    private Integer maxCompletedCount;
+    private String message;
+}
@@ -0,0 +1,27 @@
+package task.service.models;
+
+import io.quarkus.mongodb.panache.common.MongoEntity;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.bson.codecs.pojo.annotations.BsonId;
+
+import java.util.List;
+
+/**
+ * How far the records of one partition have been processed: every offset up to {@code watermark}, plus the offsets in
+ * {@code ahead}, which finished before an earlier one.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@MongoEntity(collection = "processed_offsets")
+public final class ProcessedOffsets
+{
+    // topic-partition
+    @BsonId
+    private String partition;
+
+    private long watermark;
+    private List<Long> ahead;
+}
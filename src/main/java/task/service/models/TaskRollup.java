@@ -0,0 +1,22 @@
+package task.service.models;
+
+import io.quarkus.mongodb.panache.common.MongoEntity;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.bson.codecs.pojo.annotations.BsonId;
+
+/**
+ * The completed tasks of a user that were moved to {@code tasks_archive}.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@MongoEntity(collection = "task_rollups")
+public final class TaskRollup
+{
+    @BsonId
+    private String userUid;
+
+    private int completedCount;
+}
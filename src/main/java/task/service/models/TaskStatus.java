@@ -7,6 +7,9 @@ import org.bson.BsonType;
 import org.bson.codecs.pojo.annotations.BsonId;
 import org.bson.codecs.pojo.annotations.BsonRepresentation;
 
+/**
+ * Stored by {@link task.service.repos.TaskStatusCodec}, in the layout of {@link task.service.repos.TaskStatusFields}.
+ */
 @Data
 @MongoEntity(collection = "tasks")
 public final class TaskStatus
@@ -21,15 +24,49 @@ public final class TaskStatus
     private String type;
     private boolean priority;
     private boolean completed;
-    private Long createdAt;
-    private Long updatedAt;
-    private Long completedAt;
+    private long createdAt;
+    private long updatedAt;
+    // 0 until completed
+    private long completedAt;
+    // a tombstone, which only keeps uid and the time of the delete as updatedAt
+    private boolean deleted;
+
+    /**
+     * What is stored of an item deleted at the given time, so that older events of it are known to be stale.
+     */
+    public static TaskStatus tombstone(final String uid, final long deletedAt)
+    {
+        var tombstone = new TaskStatus();
+        tombstone.uid = uid;
+        tombstone.updatedAt = deletedAt;
+        tombstone.deleted = true;
+        return tombstone;
+    }
+
+    /**
+     * A copy to change in place, e.g. of a cached status others may read meanwhile.
+     */
+    public TaskStatus copy()
+    {
+        var copy = new TaskStatus();
+        copy.id = id;
+        copy.uid = uid;
+        copy.userUid = userUid;
+        copy.type = type;
+        copy.priority = priority;
+        copy.completed = completed;
+        copy.createdAt = createdAt;
+        copy.updatedAt = updatedAt;
+        copy.completedAt = completedAt;
+        copy.deleted = deleted;
+        return copy;
+    }
 
     @Override
     public String toString()
     {
         return "Task{" + "\n uid='" + uid + '\'' + "\n, userUid='" + userUid + '\'' + "\n, priority=" + priority
                 + "\n, completed=" + completed + "\n, createdAt=" + createdAt + "\n, updatedAt=" + updatedAt
-                + "\n, completedAt=" + completedAt + '}';
+                + "\n, completedAt=" + completedAt + "\n, deleted=" + deleted + '}';
     }
 }
@@ -0,0 +1,29 @@
+package task.service.models;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import io.quarkus.mongodb.panache.common.MongoEntity;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.bson.codecs.pojo.annotations.BsonId;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@MongoEntity(collection = "user_feedback_counters")
+public final class UserFeedbackCounters
+{
+    @BsonId
+    private String userUid;
+
+    private int priorityCount;
+    private int completedCount;
+    // moved by every change, so the later of two reads of the same counters can be told; 0 where unknown
+    @JsonIgnore
+    private long version;
+
+    public UserFeedbackCounters(final String userUid, final int priorityCount, final int completedCount)
+    {
+        this(userUid, priorityCount, completedCount, 0);
+    }
+}
@@ -0,0 +1,15 @@
+package task.service.models.messages;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public final class ItemContent
+{
+    private boolean priority;
+    private boolean completed;
+    private Long time;
+}
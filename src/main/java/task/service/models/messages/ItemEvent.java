@@ -4,8 +4,6 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
-import java.util.Map;
-
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -15,6 +13,6 @@ public final class ItemEvent
     private String itemUid;
     private String userUid;
     private String type;
-    private Map<String, Object> content;
+    private ItemContent content;
     private long time;
 }
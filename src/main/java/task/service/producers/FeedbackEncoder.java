@@ -0,0 +1,354 @@
+package task.service.producers;
+
+import task.service.models.messages.FeedbackEvent;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Writes feedback records as UTF-8 JSON straight into a {@code byte[]} of the exact size, without a
+ * {@link FeedbackEvent} or an intermediate {@code String}. The output is the same, byte for byte, as Jackson's for a
+ * {@link FeedbackEvent}: the fields in declaration order, {@code null} for a missing string, and Jackson's escapes. The
+ * one difference is a lone surrogate, which Jackson refuses to write and this writes as a unicode escape.
+ *
+ * <p>
+ * Each encoder stands for one record event and type, which it keeps encoded together with the field names around
+ * them; the feedback texts are {@link Text}s, encoded once. Feedback ids are random version 4 UUIDs drawn from
+ * {@link ThreadLocalRandom}, which neither blocks nor contends like {@link java.util.UUID#randomUUID()}'s
+ * {@code SecureRandom}; they only need to be unique, not unpredictable. Instances are immutable and thread-safe.
+ */
+public final class FeedbackEncoder
+{
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+    // Jackson escapes control characters with upper case digits
+    private static final byte[] ESCAPE_HEX = "0123456789ABCDEF".getBytes(StandardCharsets.US_ASCII);
+    private static final int UUID_LENGTH = 36;
+
+    private static final byte[] USER_UID = ascii("\",\"userUid\":");
+    private static final byte[] TIME = ascii("\",\"time\":");
+
+    // {"event":"<event>","feedbackUid":"
+    private final byte[] head;
+    // ,"type":"<type>","feedback":"
+    private final byte[] middle;
+
+    public FeedbackEncoder(final String event, final String type)
+    {
+        head = concat(ascii("{\"event\":"), quoted(event), ascii(",\"feedbackUid\":\""));
+        middle = concat(ascii(",\"type\":"), quoted(type), ascii(",\"feedback\":\""));
+    }
+
+    /**
+     * A feedback text, either constant or with a count between two parts.
+     */
+    public static Text text(final String constant)
+    {
+        return new Text(constant, null);
+    }
+
+    public static Text text(final String before, final String after)
+    {
+        return new Text(before, after);
+    }
+
+    /**
+     * The record of this encoder's event and type for the user, with a new feedback id.
+     */
+    public byte[] encode(final String userUid, final Text text, final int count, final long time)
+    {
+        var out = new byte[head.length + UUID_LENGTH + USER_UID.length + quotedLength(userUid) + middle.length
+                + text.length(count) + TIME.length + digits(time) + 1];
+
+        var at = put(head, out, 0);
+        at = writeUuid(out, at);
+        at = put(USER_UID, out, at);
+        at = writeQuoted(userUid, out, at);
+        at = put(middle, out, at);
+        at = text.write(count, out, at);
+        at = put(TIME, out, at);
+        at = writeLong(time, out, at);
+        out[at] = '}';
+
+        return out;
+    }
+
+    /**
+     * Any feedback event, for writers that hold one, such as the streams topology.
+     */
+    public static byte[] encode(final FeedbackEvent event)
+    {
+        return concat(ascii("{\"event\":"), quoted(event.getEvent()), ascii(",\"feedbackUid\":"),
+                quoted(event.getFeedbackUid()), ascii(",\"userUid\":"), quoted(event.getUserUid()),
+                ascii(",\"type\":"), quoted(event.getType()), ascii(",\"feedback\":"), quoted(event.getFeedback()),
+                ascii(",\"time\":" + event.getTime() + "}"));
+    }
+
+    /**
+     * A random version 4 UUID in its usual form, for feedback ids.
+     */
+    public static String randomUuid()
+    {
+        var uuid = new byte[UUID_LENGTH];
+        writeUuid(uuid, 0);
+        return new String(uuid, StandardCharsets.US_ASCII);
+    }
+
+    private static int writeUuid(final byte[] out, final int at)
+    {
+        var random = ThreadLocalRandom.current();
+        // the version and variant bits of a random UUID, as UUID.randomUUID() sets them
+        var msb = random.nextLong() & 0xFFFFFFFFFFFF0FFFL | 0x0000000000004000L;
+        var lsb = random.nextLong() & 0x3FFFFFFFFFFFFFFFL | 0x8000000000000000L;
+
+        writeHex(msb >>> 32, out, at, 8);
+        out[at + 8] = '-';
+        writeHex(msb >>> 16, out, at + 9, 4);
+        out[at + 13] = '-';
+        writeHex(msb, out, at + 14, 4);
+        out[at + 18] = '-';
+        writeHex(lsb >>> 48, out, at + 19, 4);
+        out[at + 23] = '-';
+        writeHex(lsb, out, at + 24, 12);
+
+        return at + UUID_LENGTH;
+    }
+
+    private static void writeHex(final long value, final byte[] out, final int at, final int digits)
+    {
+        var rest = value;
+        for (var i = digits - 1; i >= 0; i--)
+        {
+            out[at + i] = HEX[(int) rest & 0xF];
+            rest >>>= 4;
+        }
+    }
+
+    private static int digits(final long value)
+    {
+        var digits = value < 0 ? 2 : 1;
+        // counted on the negative side, which also holds Long.MIN_VALUE
+        for (var rest = value < 0 ? value : -value; rest <= -10; rest /= 10)
+        {
+            digits++;
+        }
+        return digits;
+    }
+
+    private static int writeLong(final long value, final byte[] out, final int at)
+    {
+        var end = at + digits(value);
+        var rest = value < 0 ? value : -value;
+        var i = end;
+        do
+        {
+            out[--i] = (byte) ('0' - rest % 10);
+            rest /= 10;
+        } while (rest != 0);
+        if (value < 0)
+        {
+            out[at] = '-';
+        }
+        return end;
+    }
+
+    private static int quotedLength(final String value)
+    {
+        if (value == null)
+        {
+            return 4;
+        }
+
+        var length = 2;
+        for (var i = 0; i < value.length(); i++)
+        {
+            var c = value.charAt(i);
+            if (c < 0x80)
+            {
+                length += c == '"' || c == '\\' ? 2 : c >= 0x20 ? 1 : shortEscape(c) != 0 ? 2 : 6;
+            } else if (c < 0x800)
+            {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length()
+                    && Character.isLowSurrogate(value.charAt(i + 1)))
+            {
+                length += 4;
+                i++;
+            } else
+            {
+                length += Character.isSurrogate(c) ? 6 : 3;
+            }
+        }
+        return length;
+    }
+
+    private static int writeQuoted(final String value, final byte[] out, final int start)
+    {
+        if (value == null)
+        {
+            out[start] = 'n';
+            out[start + 1] = 'u';
+            out[start + 2] = 'l';
+            out[start + 3] = 'l';
+            return start + 4;
+        }
+
+        var at = start;
+        out[at++] = '"';
+        for (var i = 0; i < value.length(); i++)
+        {
+            var c = value.charAt(i);
+            if (c < 0x80)
+            {
+                if (c == '"' || c == '\\')
+                {
+                    out[at++] = '\\';
+                    out[at++] = (byte) c;
+                } else if (c >= 0x20)
+                {
+                    out[at++] = (byte) c;
+                } else if (shortEscape(c) != 0)
+                {
+                    out[at++] = '\\';
+                    out[at++] = shortEscape(c);
+                } else
+                {
+                    at = writeUnicodeEscape(c, out, at);
+                }
+            } else if (c < 0x800)
+            {
+                out[at++] = (byte) (0xC0 | c >> 6);
+                out[at++] = (byte) (0x80 | c & 0x3F);
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length()
+                    && Character.isLowSurrogate(value.charAt(i + 1)))
+            {
+                var codePoint = Character.toCodePoint(c, value.charAt(++i));
+                out[at++] = (byte) (0xF0 | codePoint >> 18);
+                out[at++] = (byte) (0x80 | codePoint >> 12 & 0x3F);
+                out[at++] = (byte) (0x80 | codePoint >> 6 & 0x3F);
+                out[at++] = (byte) (0x80 | codePoint & 0x3F);
+            } else if (Character.isSurrogate(c))
+            {
+                at = writeUnicodeEscape(c, out, at);
+            } else
+            {
+                out[at++] = (byte) (0xE0 | c >> 12);
+                out[at++] = (byte) (0x80 | c >> 6 & 0x3F);
+                out[at++] = (byte) (0x80 | c & 0x3F);
+            }
+        }
+        out[at++] = '"';
+        return at;
+    }
+
+    private static byte shortEscape(final char c)
+    {
+        return switch (c)
+        {
+            case '\b' -> 'b';
+            case '\t' -> 't';
+            case '\n' -> 'n';
+            case '\f' -> 'f';
+            case '\r' -> 'r';
+            default -> 0;
+        };
+    }
+
+    private static int writeUnicodeEscape(final char c, final byte[] out, final int at)
+    {
+        out[at] = '\\';
+        out[at + 1] = 'u';
+        out[at + 2] = ESCAPE_HEX[c >> 12];
+        out[at + 3] = ESCAPE_HEX[c >> 8 & 0xF];
+        out[at + 4] = ESCAPE_HEX[c >> 4 & 0xF];
+        out[at + 5] = ESCAPE_HEX[c & 0xF];
+        return at + 6;
+    }
+
+    private static byte[] quoted(final String value)
+    {
+        var out = new byte[quotedLength(value)];
+        writeQuoted(value, out, 0);
+        return out;
+    }
+
+    // the quoted form without its quotes, to write between other parts of a string
+    private static byte[] unquoted(final String value)
+    {
+        var quoted = quoted(value);
+        var out = new byte[quoted.length - 2];
+        System.arraycopy(quoted, 1, out, 0, out.length);
+        return out;
+    }
+
+    private static byte[] ascii(final String value)
+    {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static byte[] concat(final byte[]... parts)
+    {
+        var length = 0;
+        for (var part : parts)
+        {
+            length += part.length;
+        }
+        var out = new byte[length];
+        var at = 0;
+        for (var part : parts)
+        {
+            at = put(part, out, at);
+        }
+        return out;
+    }
+
+    private static int put(final byte[] part, final byte[] out, final int at)
+    {
+        System.arraycopy(part, 0, out, at, part.length);
+        return at + part.length;
+    }
+
+    /**
+     * A feedback text, kept both as text and encoded. A counted text has the count between its two parts.
+     */
+    public static final class Text
+    {
+        private final String before;
+        private final String after;
+        private final byte[] encodedBefore;
+        private final byte[] encodedAfter;
+
+        private Text(final String before, final String after)
+        {
+            this.before = before;
+            this.after = after;
+            this.encodedBefore = unquoted(before);
+            this.encodedAfter = after != null ? unquoted(after) : null;
+        }
+
+        public boolean isCounted()
+        {
+            return after != null;
+        }
+
+        public String render(final int count)
+        {
+            return isCounted() ? before + count + after : before;
+        }
+
+        private int length(final int count)
+        {
+            return isCounted() ? encodedBefore.length + digits(count) + encodedAfter.length : encodedBefore.length;
+        }
+
+        private int write(final int count, final byte[] out, final int at)
+        {
+            var end = put(encodedBefore, out, at);
+            if (isCounted())
+            {
+                end = writeLong(count, out, end);
+                end = put(encodedAfter, out, end);
+            }
+            return end;
+        }
+    }
+}
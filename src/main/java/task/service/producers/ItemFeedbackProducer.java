@@ -1,16 +1,39 @@
 package task.service.producers;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import io.smallrye.reactive.messaging.kafka.KafkaRecord;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
 import lombok.Setter;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.eclipse.microprofile.reactive.messaging.Channel;
 import org.eclipse.microprofile.reactive.messaging.Emitter;
+import org.eclipse.microprofile.reactive.messaging.OnOverflow;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import task.service.models.messages.FeedbackEvent;
+import task.service.metrics.PipelineMetrics;
+import task.service.metrics.PipelineMetrics.Acks;
 
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Sends feedback records, already encoded by {@link FeedbackEncoder}, and reports each one's fate through the returned
+ * {@link CompletionStage}: it completes when Kafka acknowledged the record and fails when the record was rejected or
+ * could not be handed over in time. The bytes go out as they are, through a {@code ByteArraySerializer}.
+ *
+ * <p>
+ * At most {@code feedback.producer.max-in-flight} records are unacknowledged at any time. A further send returns at
+ * once and its record waits, without holding the calling thread, until an ack frees a slot; after
+ * {@code feedback.producer.send-timeout} without one the send fails. The records the consumers wait for keep their
+ * Kafka records unacked, so a saturated producer slows the consumers down through their in-flight limits. The
+ * emitters buffer up to {@code mp.messaging.emitter.default-buffer-size} records, which is at least the in-flight
+ * limit, so the buffer never overflows; if it ever did, the send fails instead of blocking or dropping.
+ */
 @ApplicationScoped
 public final class ItemFeedbackProducer
 {
@@ -19,44 +42,141 @@ public final class ItemFeedbackProducer
     @Setter
     @Inject
     @Channel("completed")
-    Emitter<String> itemCompletedEmitter;
+    @OnOverflow(OnOverflow.Strategy.BUFFER)
+    Emitter<byte[]> itemCompletedEmitter;
 
     @Setter
     @Inject
     @Channel("priority")
-    Emitter<String> itemPriorityEmitter;
+    @OnOverflow(OnOverflow.Strategy.BUFFER)
+    Emitter<byte[]> itemPriorityEmitter;
 
     @Setter
     @Inject
-    ObjectMapper objectMapper;
+    PipelineMetrics metrics;
+
+    @Setter
+    @ConfigProperty(name = "feedback.producer.max-in-flight")
+    int maxInFlight;
+
+    @Setter
+    @ConfigProperty(name = "feedback.producer.send-timeout")
+    Duration sendTimeout;
+
+    // sends waiting for a slot, in order; guarded by this
+    private final Queue<CompletableFuture<Void>> waiting = new ArrayDeque<>();
+    private int inFlight;
 
-    public void sendItemCompletedEvent(final String key, final FeedbackEvent event)
+    public CompletionStage<Void> sendItemCompletedEvent(final String key, final byte[] record)
     {
-        try
-        {
-            LOGGER.debug("Sending item completed event");
+        LOGGER.debug("Sending item completed event");
+        return send(itemCompletedEmitter, metrics.acks("completed"), key, record);
+    }
+
+    public CompletionStage<Void> sendItemPriorityEvent(final String key, final byte[] record)
+    {
+        LOGGER.debug("Sending item priority event");
+        return send(itemPriorityEmitter, metrics.acks("priority"), key, record);
+    }
 
-            var json = objectMapper.writeValueAsString(event);
-            itemCompletedEmitter.send(KafkaRecord.of(key, json));
+    /**
+     * Records sent and not yet acknowledged.
+     */
+    public synchronized int inFlight()
+    {
+        return inFlight;
+    }
+
+    private CompletionStage<Void> send(final Emitter<byte[]> emitter, final Acks acks, final String key,
+            final byte[] record)
+    {
+        var acked = new CompletableFuture<Void>();
 
-        } catch (final Exception e)
+        var slot = acquire();
+        if (slot.isDone())
         {
-            LOGGER.error("Failed to send item completed event", e);
-            throw new RuntimeException("Failed to send event", e);
+            emit(emitter, acks, key, record, acked);
+            return acked;
         }
+
+        LOGGER.debug("Feedback producer saturated, waiting for acks");
+        slot.orTimeout(sendTimeout.toNanos(), TimeUnit.NANOSECONDS).whenComplete((ignored, failure) -> {
+            if (failure == null)
+            {
+                emit(emitter, acks, key, record, acked);
+            } else if (failure instanceof TimeoutException)
+            {
+                acked.completeExceptionally(new IllegalStateException(
+                        "No room for feedback record after " + sendTimeout + ", " + maxInFlight + " still in flight"));
+            } else
+            {
+                acked.completeExceptionally(failure);
+            }
+        });
+        return acked;
     }
 
-    public void sendItemPriorityEvent(final String key, final FeedbackEvent event)
+    private void emit(final Emitter<byte[]> emitter, final Acks acks, final String key, final byte[] record,
+            final CompletableFuture<Void> acked)
     {
+        var sentAt = System.nanoTime();
         try
         {
-            LOGGER.debug("Sending item priority event");
-            var json = objectMapper.writeValueAsString(event);
-            itemPriorityEmitter.send(KafkaRecord.of(key, json));
+            emitter.send(KafkaRecord.of(key, record).withAck(() -> {
+                release();
+                acks.record(sentAt, true);
+                acked.complete(null);
+                return CompletableFuture.completedFuture(null);
+            }).withNack(failure -> {
+                release();
+                acks.record(sentAt, false);
+                acked.completeExceptionally(failure);
+                return CompletableFuture.completedFuture(null);
+            }));
+        } catch (final RuntimeException e)
+        {
+            // rejected before reaching Kafka, e.g. a full buffer or a terminated channel
+            release();
+            acked.completeExceptionally(e);
+        }
+    }
+
+    // a completed future for a free slot, otherwise one that completes once a slot is handed over
+    private synchronized CompletableFuture<Void> acquire()
+    {
+        if (inFlight < maxInFlight)
+        {
+            inFlight++;
+            return CompletableFuture.completedFuture(null);
+        }
+
+        var slot = new CompletableFuture<Void>();
+        waiting.add(slot);
+        return slot;
+    }
+
+    private void release()
+    {
+        CompletableFuture<Void> next;
+        synchronized (this)
+        {
+            // hand the slot over to the oldest waiting send, skipping the ones that timed out meanwhile
+            do
+            {
+                next = waiting.poll();
+            } while (next != null && next.isDone());
+
+            if (next == null)
+            {
+                inFlight--;
+                return;
+            }
+        }
 
-        } catch (final Exception e)
+        // completed outside the lock, the waiting send emits right away; it lost the slot only if it timed out just now
+        if (!next.complete(null))
         {
-            LOGGER.error("Failed to send item priority event", e);
+            release();
         }
     }
 }
@@ -0,0 +1,17 @@
+package task.service.repos;
+
+import io.quarkus.mongodb.panache.PanacheMongoRepository;
+import io.quarkus.panache.common.Sort;
+import jakarta.enterprise.context.ApplicationScoped;
+import task.service.models.FeedbackRule;
+
+import java.util.List;
+
+@ApplicationScoped
+public final class FeedbackRuleRepository implements PanacheMongoRepository<FeedbackRule>
+{
+    public List<FeedbackRule> findAllInOrder()
+    {
+        return listAll(Sort.ascending("order", "name"));
+    }
+}
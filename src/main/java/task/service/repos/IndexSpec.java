@@ -0,0 +1,73 @@
+package task.service.repos;
+
+import com.mongodb.client.model.IndexOptions;
+import org.bson.Document;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * An index the service relies on, comparable with the index documents returned by {@code listIndexes}. A TTL index
+ * has {@code expireAfterSeconds}, which is {@code null} for any other.
+ */
+public record IndexSpec(String name, Document keys, boolean unique, Document partialFilter, Long expireAfterSeconds)
+{
+    public IndexSpec(final String name, final Document keys, final boolean unique, final Document partialFilter)
+    {
+        this(name, keys, unique, partialFilter, null);
+    }
+
+    public IndexOptions options()
+    {
+        var options = new IndexOptions().name(name).unique(unique);
+        if (expireAfterSeconds != null)
+        {
+            options.expireAfter(expireAfterSeconds, TimeUnit.SECONDS);
+        }
+        return partialFilter == null ? options : options.partialFilterExpression(partialFilter);
+    }
+
+    public String keySignature()
+    {
+        return keySignature(keys);
+    }
+
+    /**
+     * Describes how the existing index differs from this spec, or returns {@code null} if it matches. Key order is
+     * significant.
+     */
+    public String differenceTo(final Document existing)
+    {
+        if (!keySignature().equals(keySignature(existing.get("key", Document.class))))
+        {
+            return "keys " + keySignature(existing.get("key", Document.class)) + " instead of " + keySignature();
+        }
+        if (unique != existing.getBoolean("unique", false))
+        {
+            return "unique=" + existing.getBoolean("unique", false) + " instead of " + unique;
+        }
+        if (!Objects.equals(partialFilter, existing.get("partialFilterExpression", Document.class)))
+        {
+            return "partial filter " + existing.get("partialFilterExpression") + " instead of " + partialFilter;
+        }
+        var existingExpiry = existing.get("expireAfterSeconds") instanceof Number number ? number.longValue() : null;
+        if (!Objects.equals(expireAfterSeconds, existingExpiry))
+        {
+            return "expireAfterSeconds=" + existingExpiry + " instead of " + expireAfterSeconds;
+        }
+        return null;
+    }
+
+    static String keySignature(final Document keys)
+    {
+        return keys.entrySet().stream().map(IndexSpec::keyPart).collect(Collectors.joining(","));
+    }
+
+    private static String keyPart(final Map.Entry<String, Object> key)
+    {
+        var direction = key.getValue() instanceof Number number ? String.valueOf(number.intValue()) : key.getValue();
+        return key.getKey() + ":" + direction;
+    }
+}
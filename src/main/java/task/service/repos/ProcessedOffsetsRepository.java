@@ -0,0 +1,61 @@
+package task.service.repos;
+
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.WriteModel;
+import io.quarkus.mongodb.panache.PanacheMongoRepositoryBase;
+import jakarta.enterprise.context.ApplicationScoped;
+import org.bson.Document;
+import task.service.models.ProcessedOffsets;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import static com.mongodb.client.model.Filters.eq;
+import static com.mongodb.client.model.Filters.in;
+
+@ApplicationScoped
+public final class ProcessedOffsetsRepository implements PanacheMongoRepositoryBase<ProcessedOffsets, String>
+{
+    private static final String WATERMARK = "watermark";
+    private static final String AHEAD = "ahead";
+    private static final UpdateOptions UPSERT = new UpdateOptions().upsert(true);
+
+    public List<ProcessedOffsets> findByPartitions(final Collection<String> partitions)
+    {
+        return mongoCollection().find(in("_id", partitions)).into(new ArrayList<>());
+    }
+
+    /**
+     * Stores the progress of many partitions in one unordered bulk write. A stored watermark never moves back, so a
+     * late save of an instance that has lost a partition cannot undo the progress of its next owner.
+     */
+    public void saveAll(final Collection<ProcessedOffsets> progress)
+    {
+        if (progress.isEmpty())
+        {
+            return;
+        }
+
+        var writes = new ArrayList<WriteModel<ProcessedOffsets>>(progress.size());
+        for (var partition : progress)
+        {
+            writes.add(new UpdateOneModel<>(eq("_id", partition.getPartition()), progressOf(partition), UPSERT));
+        }
+
+        mongoCollection().bulkWrite(writes, new BulkWriteOptions().ordered(false));
+    }
+
+    // the offsets ahead go with their watermark: a newer stored watermark keeps its own
+    private static List<Document> progressOf(final ProcessedOffsets progress)
+    {
+        var watermark = progress.getWatermark();
+        var newer = new Document("$gt", List.of("$" + WATERMARK, watermark));
+        var ahead = new Document("$literal", progress.getAhead() != null ? progress.getAhead() : List.of());
+
+        return List.of(new Document("$set", new Document(WATERMARK, new Document("$max", List.of("$" + WATERMARK,
+                watermark))).append(AHEAD, new Document("$cond", List.of(newer, "$" + AHEAD, ahead)))));
+    }
+}
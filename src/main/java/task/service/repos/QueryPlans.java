@@ -0,0 +1,41 @@
+package task.service.repos;
+
+import org.bson.Document;
+
+import java.util.List;
+
+/**
+ * Reads {@code explain} output. The layout differs between server versions and between find and aggregate, so the
+ * plan tree is searched as a whole rather than by path.
+ */
+public final class QueryPlans
+{
+    private static final String COLLECTION_SCAN = "COLLSCAN";
+
+    private QueryPlans()
+    {
+    }
+
+    public static boolean scansCollection(final Document explain)
+    {
+        var queryPlanner = explain.get("queryPlanner", Document.class);
+        return containsStage(queryPlanner != null ? queryPlanner.get("winningPlan") : explain, COLLECTION_SCAN);
+    }
+
+    static boolean containsStage(final Object node, final String stage)
+    {
+        if (node instanceof Document document)
+        {
+            if (stage.equals(document.get("stage")))
+            {
+                return true;
+            }
+            return document.values().stream().anyMatch(value -> containsStage(value, stage));
+        }
+        if (node instanceof List<?> list)
+        {
+            return list.stream().anyMatch(value -> containsStage(value, stage));
+        }
+        return false;
+    }
+}
@@ -0,0 +1,77 @@
+package task.service.repos;
+
+import com.mongodb.client.model.FindOneAndUpdateOptions;
+import com.mongodb.client.model.ReturnDocument;
+import io.quarkus.mongodb.FindOptions;
+import io.quarkus.mongodb.panache.reactive.ReactivePanacheMongoRepository;
+import io.smallrye.mutiny.Uni;
+import io.smallrye.mutiny.infrastructure.Infrastructure;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import task.service.models.TaskStatus;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+import static task.service.repos.TaskStatusLayout.byUid;
+
+/**
+ * Misses fall back to the archive like those of {@link TaskStatusRepository}; being rare, they do so blocking, on a
+ * worker thread.
+ */
+@ApplicationScoped
+public final class ReactiveTaskStatusRepository implements ReactivePanacheMongoRepository<TaskStatus>
+{
+    @Inject
+    TaskStatusRepository blockingRepository;
+
+    @Inject
+    TaskArchiveRepository archive;
+
+    public Uni<TaskStatus> findByUid(final String uid)
+    {
+        return mongoCollection().find(byUid(uid), new FindOptions().projection(TaskStatusRepository.state()).limit(1))
+                .collect().first();
+    }
+
+    /**
+     * Non-blocking variant of {@link TaskStatusRepository#upsertReturningPrevious(TaskStatus)}.
+     */
+    public Uni<TaskStatus> upsertReturningPrevious(final TaskStatus status)
+    {
+        return mongoCollection().findOneAndUpdate(byUid(status.getUid()), TaskStatusRepository.replacementOf(status),
+                TaskStatusRepository.returnBefore(true));
+    }
+
+    /**
+     * Non-blocking variant of {@link TaskStatusRepository#updateReturningPrevious(String, TaskStatus)}.
+     */
+    public Uni<TaskStatus> updateReturningPrevious(final String uid, final TaskStatus changes)
+    {
+        return update(uid, changes).onItem().ifNull()
+                .switchTo(() -> blocking(() -> blockingRepository.restore(List.of(uid)).isEmpty() ? null : uid)
+                        .onItem().ifNotNull().transformToUni(restored -> update(uid, changes)));
+    }
+
+    /**
+     * Non-blocking variant of {@link TaskStatusRepository#deleteReturningPrevious(String, long)}.
+     */
+    public Uni<TaskStatus> deleteReturningPrevious(final String uid, final long deletedAt)
+    {
+        return mongoCollection().findOneAndUpdate(byUid(uid), blockingRepository.tombstoneOf(uid, deletedAt),
+                new FindOneAndUpdateOptions().upsert(true).returnDocument(ReturnDocument.BEFORE)
+                        .projection(TaskStatusRepository.contribution())).onItem().ifNull()
+                .switchTo(() -> blocking(() -> archive.deleteByUid(uid)));
+    }
+
+    private Uni<TaskStatus> update(final String uid, final TaskStatus changes)
+    {
+        return mongoCollection().findOneAndUpdate(byUid(uid), TaskStatusRepository.changesIfNotNewer(changes),
+                TaskStatusRepository.returnBefore(false));
+    }
+
+    private <T> Uni<T> blocking(final Supplier<T> call)
+    {
+        return Uni.createFrom().item(call).runSubscriptionOn(Infrastructure.getDefaultWorkerPool());
+    }
+}
@@ -0,0 +1,39 @@
+package task.service.repos;
+
+import com.mongodb.client.model.FindOneAndUpdateOptions;
+import com.mongodb.client.model.ReturnDocument;
+import io.quarkus.mongodb.panache.reactive.ReactivePanacheMongoRepositoryBase;
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.Uni;
+import jakarta.enterprise.context.ApplicationScoped;
+import task.service.models.UserFeedbackCounters;
+
+import java.util.Collection;
+
+import static com.mongodb.client.model.Filters.eq;
+import static com.mongodb.client.model.Filters.in;
+
+@ApplicationScoped
+public final class ReactiveUserFeedbackCountersRepository
+        implements ReactivePanacheMongoRepositoryBase<UserFeedbackCounters, String>
+{
+    private static final FindOneAndUpdateOptions RETURN_AFTER = new FindOneAndUpdateOptions()
+            .returnDocument(ReturnDocument.AFTER);
+
+    /**
+     * Non-blocking variant of {@link UserFeedbackCountersRepository#increment(String, int, int)}.
+     */
+    public Uni<UserFeedbackCounters> increment(final String userUid, final int priorityDelta, final int completedDelta)
+    {
+        return mongoCollection().findOneAndUpdate(eq("_id", userUid),
+                UserFeedbackCountersRepository.incrementOf(priorityDelta, completedDelta), RETURN_AFTER);
+    }
+
+    /**
+     * The counters of those of the users that have any, in one query.
+     */
+    public Multi<UserFeedbackCounters> findByUsers(final Collection<String> userUids)
+    {
+        return mongoCollection().find(in("_id", userUids));
+    }
+}
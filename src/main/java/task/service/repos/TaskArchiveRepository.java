@@ -0,0 +1,130 @@
+package task.service.repos;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.ReplaceOneModel;
+import com.mongodb.client.model.ReplaceOptions;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.Updates;
+import com.mongodb.client.model.WriteModel;
+import io.micrometer.core.annotation.Timed;
+import io.quarkus.mongodb.panache.PanacheMongoRepositoryBase;
+import io.quarkus.runtime.StartupEvent;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import task.service.models.TaskRollup;
+import task.service.models.TaskStatus;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static task.service.repos.UserFeedbackCountersRepository.COMPLETED_COUNT;
+
+/**
+ * The cold tier of {@code tasks}: completed tasks moved to {@code tasks_archive} by the tiering job, stored in the
+ * compact layout, and their number per user in {@code task_rollups}. Archived tasks keep counting towards the user
+ * counters; an archived task that is updated or deleted is taken out of the archive again. As the tiering job may
+ * move a task at any time, every miss in {@code tasks} is looked up here, by the unique uid index.
+ */
+@ApplicationScoped
+public final class TaskArchiveRepository implements PanacheMongoRepositoryBase<TaskRollup, String>
+{
+    public static final String ARCHIVE = "tasks_archive";
+
+    private static final ReplaceOptions UPSERT = new ReplaceOptions().upsert(true);
+    private static final UpdateOptions UPSERT_ROLLUP = new UpdateOptions().upsert(true);
+
+    void onStart(@Observes final StartupEvent event)
+    {
+        archive().createIndex(new Document(TaskStatusFields.UID, 1), new IndexOptions().name("u_unique").unique(true));
+    }
+
+    @Timed(value = TaskStatusRepository.TIMER, histogram = true)
+    public List<TaskStatus> findByUids(final Collection<String> uids)
+    {
+        return archive().find(Filters.in(TaskStatusFields.UID, uids)).into(new ArrayList<>());
+    }
+
+    /**
+     * Copies the tasks into the archive, over earlier copies, without counting them yet.
+     */
+    @Timed(value = TaskStatusRepository.TIMER, histogram = true)
+    public void copy(final List<TaskStatus> tasks)
+    {
+        var writes = new ArrayList<WriteModel<TaskStatus>>(tasks.size());
+        tasks.forEach(task -> writes.add(
+                new ReplaceOneModel<>(Filters.eq("_id", new ObjectId(task.getId())), task, UPSERT)));
+        archive().bulkWrite(writes, new BulkWriteOptions().ordered(false));
+    }
+
+    /**
+     * Drops copies of tasks that turned out to have stayed hot, without touching the rollups.
+     */
+    @Timed(value = TaskStatusRepository.TIMER, histogram = true)
+    public void discard(final Collection<TaskStatus> tasks)
+    {
+        archive().deleteMany(Filters.in("_id", tasks.stream().map(task -> new ObjectId(task.getId())).toList()));
+    }
+
+    /**
+     * Removes the tasks from the archive and from their users' rollups.
+     */
+    @Timed(value = TaskStatusRepository.TIMER, histogram = true)
+    public void remove(final Collection<TaskStatus> tasks)
+    {
+        discard(tasks);
+        rollUp(tasks.stream()
+                .collect(Collectors.groupingBy(TaskStatus::getUserUid, Collectors.summingInt(task -> -1))));
+    }
+
+    /**
+     * Takes the task out of the archive and its user's rollup, and returns it, or {@code null} if it is not archived.
+     */
+    @Timed(value = TaskStatusRepository.TIMER, histogram = true)
+    public TaskStatus deleteByUid(final String uid)
+    {
+        var task = archive().findOneAndDelete(Filters.eq(TaskStatusFields.UID, uid));
+        if (task != null)
+        {
+            rollUp(Map.of(task.getUserUid(), -1));
+        }
+        return task;
+    }
+
+    /**
+     * Adds the given numbers of archived tasks to the users' rollups.
+     */
+    @Timed(value = TaskStatusRepository.TIMER, histogram = true)
+    public void rollUp(final Map<String, Integer> completedByUser)
+    {
+        if (completedByUser.isEmpty())
+        {
+            return;
+        }
+
+        var writes = new ArrayList<WriteModel<TaskRollup>>(completedByUser.size());
+        completedByUser.forEach((userUid, completed) -> writes.add(
+                new UpdateOneModel<>(Filters.eq("_id", userUid), Updates.inc(COMPLETED_COUNT, completed),
+                        UPSERT_ROLLUP)));
+        mongoCollection().bulkWrite(writes, new BulkWriteOptions().ordered(false));
+    }
+
+    public int completedCount(final String userUid)
+    {
+        var rollup = findById(userUid);
+        return rollup != null ? rollup.getCompletedCount() : 0;
+    }
+
+    public MongoCollection<TaskStatus> archive()
+    {
+        return mongoDatabase().getCollection(ARCHIVE, TaskStatus.class);
+    }
+}
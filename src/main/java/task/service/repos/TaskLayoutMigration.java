@@ -0,0 +1,191 @@
+package task.service.repos;
+
+import com.mongodb.ErrorCategory;
+import com.mongodb.MongoWriteException;
+import com.mongodb.client.FindIterable;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+import io.quarkus.runtime.ShutdownEvent;
+import io.quarkus.runtime.StartupEvent;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import task.service.jobs.CounterReconciliationJob;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static task.service.repos.TaskStatusFields.LEGACY;
+
+/**
+ * Rewrites the items of {@code tasks} stored in the legacy layout, with the model's field names, into the compact
+ * layout of {@link TaskStatusFields}, in batches and in the background while the consumers keep running. Reads and
+ * writes go through {@link TaskStatusLayout}, which handles both layouts until this reports the legacy one gone; then
+ * the legacy indexes are dropped. Every instance may run it at once: each batch only rewrites items still in the
+ * legacy layout. As the compact uid is unique, a uid stored more than once keeps only its most recently changed item
+ * with {@code feedback.indexes.delete-duplicate-uids} on, and its user's counters are reconciled; otherwise the
+ * migration stops at it.
+ */
+@ApplicationScoped
+public final class TaskLayoutMigration
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(TaskLayoutMigration.class);
+    private static final String ID = "_id";
+
+    @Inject
+    TaskStatusRepository repository;
+
+    @Inject
+    CounterReconciliationJob reconciliation;
+
+    @ConfigProperty(name = "feedback.indexes.delete-duplicate-uids")
+    boolean deleteDuplicateUids;
+
+    @ConfigProperty(name = "feedback.migration.compact-layout.enabled")
+    boolean enabled;
+
+    @ConfigProperty(name = "feedback.migration.compact-layout.batch-size")
+    int batchSize;
+
+    @ConfigProperty(name = "feedback.migration.compact-layout.pause")
+    Duration pause;
+
+    private volatile boolean stopped;
+
+    void onStart(@Observes final StartupEvent event)
+    {
+        if (legacyItems().first() == null)
+        {
+            finish();
+            return;
+        }
+        if (!enabled)
+        {
+            LOGGER.warn("Items of the legacy layout left in tasks, and their migration is disabled");
+            return;
+        }
+
+        var runner = new Thread(() -> {
+            try
+            {
+                migrate();
+            } catch (final Exception e)
+            {
+                LOGGER.error("Migration of tasks to the compact layout failed, the legacy layout stays readable", e);
+            }
+        }, "task-layout-migration");
+        runner.setDaemon(true);
+        runner.start();
+    }
+
+    void onStop(@Observes final ShutdownEvent event)
+    {
+        stopped = true;
+    }
+
+    void migrate() throws InterruptedException
+    {
+        var startedAt = System.currentTimeMillis();
+        var migrated = 0L;
+        LOGGER.info("Migrating tasks to the compact layout");
+        if (deleteDuplicateUids)
+        {
+            deleteDuplicates();
+        }
+
+        while (!stopped)
+        {
+            var ids = legacyItems().limit(batchSize).map(document -> document.getObjectId(ID))
+                    .into(new ArrayList<ObjectId>());
+            if (ids.isEmpty())
+            {
+                finish();
+                LOGGER.info("Migrated {} tasks to the compact layout in {} ms", migrated,
+                        System.currentTimeMillis() - startedAt);
+                return;
+            }
+
+            try
+            {
+                // matched again by the legacy uid, so an item rewritten by another instance meanwhile is left alone
+                migrated += repository.mongoCollection()
+                        .updateMany(Filters.and(Filters.in(ID, ids),
+                                Filters.exists(LEGACY.get(TaskStatusFields.UID))), compaction())
+                        .getModifiedCount();
+            } catch (final MongoWriteException e)
+            {
+                // an item stored in both layouts since the start, e.g. by an instance not reading the legacy one
+                if (e.getError().getCategory() != ErrorCategory.DUPLICATE_KEY)
+                {
+                    throw e;
+                }
+                if (!deleteDuplicateUids)
+                {
+                    throw new IllegalStateException("Items stored in both layouts, set "
+                            + "feedback.indexes.delete-duplicate-uids to keep only the newest item of each uid", e);
+                }
+                if (!deleteDuplicates())
+                {
+                    throw e;
+                }
+            }
+            Thread.sleep(pause.toMillis());
+        }
+    }
+
+    // a legacy item whose uid is also stored compactly cannot take its compact uid under the unique index
+    private boolean deleteDuplicates()
+    {
+        var users = repository.deleteDuplicateUids();
+        if (!users.isEmpty())
+        {
+            LOGGER.warn("Deleted older duplicates of stored tasks of {} users, reconciling their counters",
+                    users.size());
+            users.forEach(reconciliation::reconcile);
+        }
+        return !users.isEmpty();
+    }
+
+    private FindIterable<Document> legacyItems()
+    {
+        return repository.mongoCollection().withDocumentClass(Document.class)
+                .find(Filters.exists(LEGACY.get(TaskStatusFields.UID))).projection(Projections.include(ID));
+    }
+
+    private void finish()
+    {
+        TaskStatusLayout.legacyItemsMigrated();
+
+        var collection = repository.mongoCollection();
+        var existing = new ArrayList<String>();
+        collection.listIndexes().forEach(index -> existing.add(index.getString("name")));
+        TaskStatusIndexManager.LEGACY_INDEXES.stream().filter(existing::contains).forEach(name -> {
+            LOGGER.info("Dropping legacy index {} on tasks", name);
+            collection.dropIndex(name);
+        });
+    }
+
+    /**
+     * Update pipeline moving every legacy field to its compact name, unless the compact one is set already, and
+     * dropping the default type.
+     */
+    static List<Bson> compaction()
+    {
+        var set = new Document();
+        LEGACY.forEach((field, legacy) -> set.put(field,
+                new Document("$ifNull", List.of("$" + field, "$" + legacy, "$$REMOVE"))));
+
+        var type = set.get(TaskStatusFields.TYPE);
+        set.put(TaskStatusFields.TYPE, new Document("$cond",
+                List.of(new Document("$eq", List.of(type, TaskStatusFields.DEFAULT_TYPE)), "$$REMOVE", type)));
+
+        return List.of(new Document("$set", set), new Document("$unset", List.copyOf(LEGACY.values())));
+    }
+}
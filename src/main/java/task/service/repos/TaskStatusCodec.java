@@ -0,0 +1,145 @@
+package task.service.repos;
+
+import org.bson.BsonReader;
+import org.bson.BsonType;
+import org.bson.BsonWriter;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.types.ObjectId;
+import task.service.models.TaskStatus;
+
+import java.util.List;
+
+import static task.service.repos.TaskStatusFields.COMPLETED;
+import static task.service.repos.TaskStatusFields.COMPLETED_AT;
+import static task.service.repos.TaskStatusFields.CREATED_AT;
+import static task.service.repos.TaskStatusFields.DEFAULT_TYPE;
+import static task.service.repos.TaskStatusFields.DELETED;
+import static task.service.repos.TaskStatusFields.PRIORITY;
+import static task.service.repos.TaskStatusFields.TYPE;
+import static task.service.repos.TaskStatusFields.UID;
+import static task.service.repos.TaskStatusFields.UPDATED_AT;
+import static task.service.repos.TaskStatusFields.USER_UID;
+
+/**
+ * Writes {@link TaskStatus} in the compact layout of {@link TaskStatusFields} and reads both layouts, field by field
+ * and without reflection. Where an item carries a field in both layouts, as one written by this service before the
+ * migration reached it does, the compact one wins. Fields left out by a projection keep their defaults.
+ */
+public final class TaskStatusCodec implements Codec<TaskStatus>
+{
+    private static final String ID = "_id";
+
+    // in the order of read(BsonReader, TaskStatus, int)
+    private static final List<String> FIELDS = List.of(UID, USER_UID, TYPE, PRIORITY, COMPLETED, CREATED_AT,
+            UPDATED_AT, COMPLETED_AT, DELETED);
+    // null for the fields the legacy layout did not have
+    private static final List<String> LEGACY_FIELDS = FIELDS.stream().map(TaskStatusFields.LEGACY::get).toList();
+
+    @Override
+    public void encode(final BsonWriter writer, final TaskStatus status, final EncoderContext encoderContext)
+    {
+        writer.writeStartDocument();
+        if (status.getId() != null)
+        {
+            writer.writeObjectId(ID, new ObjectId(status.getId()));
+        }
+        writer.writeString(UID, status.getUid());
+        if (status.getUserUid() != null)
+        {
+            writer.writeString(USER_UID, status.getUserUid());
+        }
+        if (status.getType() != null && !DEFAULT_TYPE.equals(status.getType()))
+        {
+            writer.writeString(TYPE, status.getType());
+        }
+        writer.writeBoolean(PRIORITY, status.isPriority());
+        writer.writeBoolean(COMPLETED, status.isCompleted());
+        writer.writeInt64(CREATED_AT, status.getCreatedAt());
+        writer.writeInt64(UPDATED_AT, status.getUpdatedAt());
+        if (status.getCompletedAt() != 0)
+        {
+            writer.writeInt64(COMPLETED_AT, status.getCompletedAt());
+        }
+        if (status.isDeleted())
+        {
+            writer.writeBoolean(DELETED, true);
+        }
+        writer.writeEndDocument();
+    }
+
+    @Override
+    public TaskStatus decode(final BsonReader reader, final DecoderContext decoderContext)
+    {
+        var status = new TaskStatus();
+        status.setType(DEFAULT_TYPE);
+        // the compact fields read so far; a legacy field only counts while its compact twin was not read
+        var seen = 0;
+
+        reader.readStartDocument();
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT)
+        {
+            var name = reader.readName();
+            if (reader.getCurrentBsonType() == BsonType.NULL)
+            {
+                reader.readNull();
+                continue;
+            }
+
+            var field = FIELDS.indexOf(name);
+            var legacy = field < 0 ? LEGACY_FIELDS.indexOf(name) : -1;
+            if (ID.equals(name) && reader.getCurrentBsonType() == BsonType.OBJECT_ID)
+            {
+                status.setId(reader.readObjectId().toHexString());
+            } else if (field >= 0)
+            {
+                read(reader, status, field);
+                seen |= 1 << field;
+            } else if (legacy >= 0 && (seen & 1 << legacy) == 0)
+            {
+                read(reader, status, legacy);
+            } else
+            {
+                reader.skipValue();
+            }
+        }
+        reader.readEndDocument();
+
+        return status;
+    }
+
+    private static void read(final BsonReader reader, final TaskStatus status, final int field)
+    {
+        switch (field)
+        {
+            case 0 -> status.setUid(reader.readString());
+            case 1 -> status.setUserUid(reader.readString());
+            case 2 -> status.setType(reader.readString());
+            case 3 -> status.setPriority(reader.readBoolean());
+            case 4 -> status.setCompleted(reader.readBoolean());
+            case 5 -> status.setCreatedAt(readLong(reader));
+            case 6 -> status.setUpdatedAt(readLong(reader));
+            case 7 -> status.setCompletedAt(readLong(reader));
+            case 8 -> status.setDeleted(reader.readBoolean());
+            default -> throw new IllegalArgumentException("No field " + field);
+        }
+    }
+
+    @Override
+    public Class<TaskStatus> getEncoderClass()
+    {
+        return TaskStatus.class;
+    }
+
+    // times were stored as int64, but accept what other writers may have used
+    private static long readLong(final BsonReader reader)
+    {
+        return switch (reader.getCurrentBsonType())
+        {
+            case INT32 -> reader.readInt32();
+            case DOUBLE -> (long) reader.readDouble();
+            default -> reader.readInt64();
+        };
+    }
+}
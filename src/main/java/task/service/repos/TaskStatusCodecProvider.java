@@ -0,0 +1,22 @@
+package task.service.repos;
+
+import org.bson.codecs.Codec;
+import org.bson.codecs.configuration.CodecProvider;
+import org.bson.codecs.configuration.CodecRegistry;
+import task.service.models.TaskStatus;
+
+/**
+ * Hands {@link TaskStatusCodec} to the Mongo client, ahead of the reflective POJO codec. Quarkus registers every
+ * {@link CodecProvider} of the application.
+ */
+public final class TaskStatusCodecProvider implements CodecProvider
+{
+    private static final TaskStatusCodec CODEC = new TaskStatusCodec();
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> Codec<T> get(final Class<T> clazz, final CodecRegistry registry)
+    {
+        return clazz == TaskStatus.class ? (Codec<T>) CODEC : null;
+    }
+}
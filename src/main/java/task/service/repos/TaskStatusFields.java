@@ -0,0 +1,38 @@
+package task.service.repos;
+
+import java.util.Map;
+
+/**
+ * Stored field names of the {@code tasks} collection. The names are kept short, as every item repeats them and the
+ * working set of Mongo is mostly item documents. {@link TaskStatusCodec} maps them to the model.
+ */
+public final class TaskStatusFields
+{
+    public static final String UID = "u";
+    public static final String USER_UID = "uu";
+    // only stored when it is not DEFAULT_TYPE, which all items are so far
+    public static final String TYPE = "t";
+    public static final String PRIORITY = "p";
+    public static final String COMPLETED = "c";
+    public static final String CREATED_AT = "ca";
+    public static final String UPDATED_AT = "ua";
+    // absent until the item is completed
+    public static final String COMPLETED_AT = "da";
+    // only on tombstones: the item was deleted at UPDATED_AT, and the document goes once EXPIRES_AT passed
+    public static final String DELETED = "d";
+    public static final String EXPIRES_AT = "e";
+
+    public static final String DEFAULT_TYPE = "task";
+
+    /**
+     * The names of the layout before, by current name, for the fields it had, read until {@link TaskLayoutMigration}
+     * rewrote every item.
+     */
+    public static final Map<String, String> LEGACY = Map.of(UID, "uid", USER_UID, "userUid", TYPE, "type", PRIORITY,
+            "priority", COMPLETED, "completed", CREATED_AT, "createdAt", UPDATED_AT, "updatedAt", COMPLETED_AT,
+            "completedAt");
+
+    private TaskStatusFields()
+    {
+    }
+}
@@ -0,0 +1,194 @@
+package task.service.repos;
+
+import com.mongodb.ErrorCategory;
+import com.mongodb.MongoCommandException;
+import io.quarkus.runtime.StartupEvent;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import org.bson.Document;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import task.service.jobs.CounterReconciliationJob;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static task.service.repos.TaskStatusFields.COMPLETED;
+import static task.service.repos.TaskStatusFields.COMPLETED_AT;
+import static task.service.repos.TaskStatusFields.EXPIRES_AT;
+import static task.service.repos.TaskStatusFields.PRIORITY;
+import static task.service.repos.TaskStatusFields.UID;
+import static task.service.repos.TaskStatusFields.USER_UID;
+
+/**
+ * Owns the indexes of the {@code tasks} collection. At startup it creates missing indexes, reports indexes that differ
+ * from what the hot queries need, and asks Mongo for the plan of every hot query to make sure none of them scans the
+ * collection. Duplicates of a uid, which keep the unique uid index from being built, are only deleted with
+ * {@code feedback.indexes.delete-duplicate-uids} on, and their users' counters reconciled afterwards.
+ */
+@ApplicationScoped
+public final class TaskStatusIndexManager
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(TaskStatusIndexManager.class);
+
+    static final List<IndexSpec> INDEXES = List.of(
+            // partial, as items of the legacy layout have no compact uid to be unique on
+            new IndexSpec("u_unique", new Document(UID, 1), true, new Document(UID, new Document("$exists", true))),
+            // covers the per-user count aggregation, which reads nothing but these fields
+            new IndexSpec("uu_c_p", new Document(USER_UID, 1).append(COMPLETED, 1).append(PRIORITY, 1), false, null),
+            // open priority items only: a fraction of the collection for the priority count
+            new IndexSpec("uu_open_priority", new Document(USER_UID, 1), false,
+                    new Document(PRIORITY, true).append(COMPLETED, false)),
+            // completed items only, for the tiering job to find those due for the archive
+            new IndexSpec("da_completed", new Document(COMPLETED_AT, 1), false, new Document(COMPLETED, true)),
+            // removes tombstones once they expire; only they have the field
+            new IndexSpec("e_ttl", new Document(EXPIRES_AT, 1), false, null, 0L));
+
+    // the indexes of the legacy layout serve its items until TaskLayoutMigration drops them
+    static final List<String> LEGACY_INDEXES = List.of("uid_unique", "userUid_completed_priority",
+            "userUid_open_priority");
+
+    static final Map<String, Document> HOT_QUERIES = Map.of(
+            "item by uid", new Document(UID, ""),
+            "user counts", new Document(USER_UID, ""),
+            "completed by user", new Document(USER_UID, "").append(COMPLETED, true),
+            "open priority by user", new Document(USER_UID, "").append(PRIORITY, true).append(COMPLETED, false),
+            "completed before", new Document(COMPLETED, true).append(COMPLETED_AT, 0L));
+
+    @Inject
+    TaskStatusRepository repository;
+
+    @Inject
+    CounterReconciliationJob reconciliation;
+
+    @ConfigProperty(name = "feedback.indexes.create")
+    boolean create;
+
+    @ConfigProperty(name = "feedback.indexes.delete-duplicate-uids")
+    boolean deleteDuplicateUids;
+
+    @ConfigProperty(name = "feedback.indexes.verify-plans")
+    boolean verifyPlans;
+
+    @ConfigProperty(name = "feedback.indexes.fail-on-drift")
+    boolean failOnDrift;
+
+    void onStart(@Observes final StartupEvent event)
+    {
+        var drift = ensureIndexes();
+
+        if (!drift.isEmpty() && failOnDrift)
+        {
+            throw new IllegalStateException("Index drift on tasks collection: " + String.join("; ", drift));
+        }
+    }
+
+    /**
+     * Creates missing indexes (if enabled) and returns every difference found between the expected and the actual
+     * indexes and query plans.
+     */
+    public List<String> ensureIndexes()
+    {
+        var collection = repository.mongoCollection();
+        var existingBySignature = new HashMap<String, Document>();
+        collection.listIndexes().forEach(index -> existingBySignature
+                .put(IndexSpec.keySignature(index.get("key", Document.class)) + index.get("partialFilterExpression"),
+                        index));
+
+        var drift = new ArrayList<String>();
+        var expectedNames = new ArrayList<String>();
+        expectedNames.add("_id_");
+        expectedNames.addAll(LEGACY_INDEXES);
+
+        for (var spec : INDEXES)
+        {
+            expectedNames.add(spec.name());
+            var existing = existingBySignature.get(spec.keySignature() + spec.partialFilter());
+
+            if (existing == null)
+            {
+                if (create)
+                {
+                    if (spec.unique() && deleteDuplicateUids)
+                    {
+                        deleteDuplicates();
+                    }
+                    LOGGER.info("Creating index {} on tasks", spec.name());
+                    try
+                    {
+                        collection.createIndex(spec.keys(), spec.options());
+                    } catch (final MongoCommandException e)
+                    {
+                        if (ErrorCategory.fromErrorCode(e.getErrorCode()) != ErrorCategory.DUPLICATE_KEY)
+                        {
+                            throw e;
+                        }
+                        drift.add("missing index " + spec.name() + ", as uids are stored more than once; set "
+                                + "feedback.indexes.delete-duplicate-uids to keep only the newest item of each");
+                    }
+                } else
+                {
+                    drift.add("missing index " + spec.name());
+                }
+                continue;
+            }
+
+            var difference = spec.differenceTo(existing);
+            if (difference != null)
+            {
+                drift.add("index " + existing.getString("name") + " has " + difference);
+            }
+            if (!spec.name().equals(existing.getString("name")))
+            {
+                expectedNames.add(existing.getString("name"));
+            }
+        }
+
+        existingBySignature.values().stream().map(index -> index.getString("name"))
+                .filter(name -> !expectedNames.contains(name))
+                .forEach(name -> drift.add("unexpected index " + name));
+
+        if (verifyPlans)
+        {
+            drift.addAll(verifyQueryPlans());
+        }
+
+        drift.forEach(difference -> LOGGER.warn("Index drift on tasks: {}", difference));
+        return drift;
+    }
+
+    // a unique index cannot be built while any uid is stored twice
+    private void deleteDuplicates()
+    {
+        var users = repository.deleteDuplicateUids();
+        if (!users.isEmpty())
+        {
+            LOGGER.warn("Deleted older duplicates of stored tasks of {} users, reconciling their counters",
+                    users.size());
+            users.forEach(reconciliation::reconcile);
+        }
+    }
+
+    private List<String> verifyQueryPlans()
+    {
+        var collectionName = repository.mongoCollection().getNamespace().getCollectionName();
+        var database = repository.mongoDatabase();
+        var problems = new ArrayList<String>();
+
+        HOT_QUERIES.forEach((name, filter) -> {
+            var explain = database.runCommand(new Document("explain",
+                    new Document("find", collectionName).append("filter", filter)).append("verbosity", "queryPlanner"));
+
+            if (QueryPlans.scansCollection(explain))
+            {
+                problems.add("query '" + name + "' scans the collection");
+            }
+        });
+
+        return problems;
+    }
+}
@@ -0,0 +1,96 @@
+package task.service.repos;
+
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import static task.service.repos.TaskStatusFields.LEGACY;
+
+/**
+ * Filters, projections and expressions over {@code tasks} that hold while items of both layouts are stored. Until
+ * {@link TaskLayoutMigration} reports that no item of the legacy layout is left, lookups match either uid field and
+ * expressions fall back to the legacy field; from then on they only use the compact fields, which the indexes cover.
+ */
+public final class TaskStatusLayout
+{
+    // assume legacy items until the migration checked
+    private static volatile boolean legacyItems = true;
+
+    private TaskStatusLayout()
+    {
+    }
+
+    public static boolean hasLegacyItems()
+    {
+        return legacyItems;
+    }
+
+    static void legacyItemsMigrated()
+    {
+        legacyItems = false;
+    }
+
+    public static Bson byUid(final String uid)
+    {
+        return matching(Filters.eq(TaskStatusFields.UID, uid), Filters.eq(LEGACY.get(TaskStatusFields.UID), uid));
+    }
+
+    public static Bson byUids(final Collection<String> uids)
+    {
+        return matching(Filters.in(TaskStatusFields.UID, uids), Filters.in(LEGACY.get(TaskStatusFields.UID), uids));
+    }
+
+    public static Bson byUser(final String userUid)
+    {
+        return matching(Filters.eq(TaskStatusFields.USER_UID, userUid),
+                Filters.eq(LEGACY.get(TaskStatusFields.USER_UID), userUid));
+    }
+
+    /**
+     * Matches items changed at or before {@code updatedAt}, and items without a change time.
+     */
+    public static Bson notNewerThan(final long updatedAt)
+    {
+        var newer = Filters.gt(TaskStatusFields.UPDATED_AT, updatedAt);
+        return legacyItems
+                ? Filters.nor(newer, Filters.gt(LEGACY.get(TaskStatusFields.UPDATED_AT), updatedAt))
+                : Filters.nor(newer);
+    }
+
+    /**
+     * The aggregation expression reading a field.
+     */
+    public static Object value(final String field)
+    {
+        return legacyItems ? new Document("$ifNull", List.of("$" + field, "$" + LEGACY.get(field))) : "$" + field;
+    }
+
+    /**
+     * Projection of the given fields, without {@code _id}.
+     */
+    public static Bson projection(final String... fields)
+    {
+        var included = new ArrayList<String>(List.of(fields));
+        if (legacyItems)
+        {
+            for (var field : fields)
+            {
+                if (LEGACY.containsKey(field))
+                {
+                    included.add(LEGACY.get(field));
+                }
+            }
+        }
+        return Projections.fields(Projections.include(included), Projections.excludeId());
+    }
+
+    private static Bson matching(final Bson compact, final Bson legacy)
+    {
+        return legacyItems ? Filters.or(compact, legacy) : compact;
+    }
+}
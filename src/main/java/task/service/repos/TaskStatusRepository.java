@@ -1,26 +1,459 @@
 package task.service.repos;
 
+import com.mongodb.client.model.Accumulators;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.DeleteOneModel;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.FindOneAndDeleteOptions;
+import com.mongodb.client.model.FindOneAndUpdateOptions;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.ReturnDocument;
+import com.mongodb.client.model.Sorts;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.Updates;
+import com.mongodb.client.model.WriteModel;
+import io.micrometer.core.annotation.Timed;
 import io.quarkus.mongodb.panache.PanacheMongoRepository;
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 import task.service.models.TaskStatus;
+import task.service.models.UserFeedbackCounters;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 
+import static task.service.repos.TaskStatusLayout.byUid;
+import static task.service.repos.UserFeedbackCountersRepository.COMPLETED_COUNT;
+import static task.service.repos.UserFeedbackCountersRepository.PRIORITY_COUNT;
+
+/**
+ * Every Mongo call is timed as {@value #TIMER}, tagged with the method, and publishes a histogram so latencies can be
+ * aggregated across instances.
+ *
+ * <p>
+ * Queries are built from {@link TaskStatusFields} and {@link TaskStatusLayout} rather than Panache queries, which only
+ * know the model's field names, and fetch no more fields than their callers use.
+ *
+ * <p>
+ * A deleted item leaves a tombstone in its place, its uid and the time of the delete, until
+ * {@code feedback.tombstones.ttl} passed. Writes that are not newer than the tombstone leave it as it is, so a late
+ * create cannot bring the item back, and the lookups return it like any item, so callers learn of the delete without
+ * asking elsewhere.
+ */
 @ApplicationScoped
 public final class TaskStatusRepository implements PanacheMongoRepository<TaskStatus>
 {
+    static final String TIMER = "feedback.mongo.tasks";
+
+    private static final UpdateOptions UPSERT = new UpdateOptions().upsert(true);
+
+    // what the processors and the cache use of an item: all of it but the type
+    private static final String[] STATE = {TaskStatusFields.UID, TaskStatusFields.USER_UID, TaskStatusFields.PRIORITY,
+            TaskStatusFields.COMPLETED, TaskStatusFields.CREATED_AT, TaskStatusFields.UPDATED_AT,
+            TaskStatusFields.COMPLETED_AT, TaskStatusFields.DELETED};
+    // what moving the counters needs of a deleted item, and whether and when it was deleted already
+    private static final String[] CONTRIBUTION = {TaskStatusFields.PRIORITY, TaskStatusFields.COMPLETED,
+            TaskStatusFields.UPDATED_AT, TaskStatusFields.DELETED};
+    private static final Document IS_DELETED = new Document("$eq",
+            Arrays.asList("$" + TaskStatusFields.DELETED, true));
+
+    @Inject
+    TaskArchiveRepository archive;
+
+    @ConfigProperty(name = "feedback.tombstones.ttl")
+    Duration tombstoneTtl;
+
+    @Timed(value = TIMER, histogram = true)
     public TaskStatus findByUid(final String uid)
     {
-        return find("uid", uid).firstResult();
+        return mongoCollection().find(byUid(uid)).projection(state()).first();
+    }
+
+    @Timed(value = TIMER, histogram = true)
+    public List<TaskStatus> findByUids(final Collection<String> uids)
+    {
+        var found = mongoCollection().find(TaskStatusLayout.byUids(uids)).projection(state())
+                .into(new ArrayList<>());
+        if (found.size() < uids.size())
+        {
+            var misses = new HashSet<>(uids);
+            found.forEach(status -> misses.remove(status.getUid()));
+            found.addAll(restore(misses));
+        }
+        return found;
+    }
+
+    /**
+     * Stores the status over any stored status with the same uid, unless the stored one is newer, and returns what was
+     * stored before. A redelivered create therefore never duplicates an item, and a late one never overwrites later
+     * changes: if the returned status is newer than {@code status}, nothing was written.
+     */
+    @Timed(value = TIMER, histogram = true)
+    public TaskStatus upsertReturningPrevious(final TaskStatus status)
+    {
+        return mongoCollection().findOneAndUpdate(byUid(status.getUid()), replacementOf(status),
+                returnBefore(true));
+    }
+
+    /**
+     * Sets the mutable fields of {@code changes} on the stored item, unless the item is newer, and returns the item as
+     * it was before, or {@code null} if there is no such item. If the returned item is newer than {@code changes},
+     * nothing was written. A completedAt of 0 leaves the stored one as is.
+     */
+    @Timed(value = TIMER, histogram = true)
+    public TaskStatus updateReturningPrevious(final String uid, final TaskStatus changes)
+    {
+        var prevStatus = mongoCollection().findOneAndUpdate(byUid(uid), changesIfNotNewer(changes),
+                returnBefore(false));
+        if (prevStatus == null && !restore(List.of(uid)).isEmpty())
+        {
+            prevStatus = mongoCollection().findOneAndUpdate(byUid(uid), changesIfNotNewer(changes),
+                    returnBefore(false));
+        }
+        return prevStatus;
+    }
+
+    /**
+     * Like {@link #updateReturningPrevious(String, TaskStatus)} for callers that believe they know the previous state,
+     * e.g. from a cache: updates the item only if it is still as {@code expected}, and returns whether it did. If not,
+     * the item is gone, archived, or was changed elsewhere, and the caller has to ask the item itself.
+     */
+    @Timed(value = TIMER, histogram = true)
+    public boolean updateIfUnchanged(final TaskStatus expected, final TaskStatus changes)
+    {
+        var unchanged = Filters.and(byUid(expected.getUid()),
+                Filters.eq(TaskStatusFields.UPDATED_AT, expected.getUpdatedAt()),
+                Filters.eq(TaskStatusFields.PRIORITY, expected.isPriority()),
+                Filters.eq(TaskStatusFields.COMPLETED, expected.isCompleted()),
+                Filters.ne(TaskStatusFields.DELETED, true),
+                TaskStatusLayout.notNewerThan(changes.getUpdatedAt()));
+        return mongoCollection().updateOne(unchanged, changesOf(changes)).getMatchedCount() > 0;
+    }
+
+    /**
+     * Replaces the item by its tombstone, unless the item is newer, and returns its priority, completion and time as
+     * they were before, or {@code null} if there was no such item. A returned tombstone means the item was deleted
+     * already; a returned item newer than {@code deletedAt} that nothing was written.
+     */
+    @Timed(value = TIMER, histogram = true)
+    public TaskStatus deleteReturningPrevious(final String uid, final long deletedAt)
+    {
+        var prevStatus = mongoCollection().findOneAndUpdate(byUid(uid), tombstoneOf(uid, deletedAt),
+                new FindOneAndUpdateOptions().upsert(true).returnDocument(ReturnDocument.BEFORE)
+                        .projection(contribution()));
+        return prevStatus == null ? archive.deleteByUid(uid) : prevStatus;
+    }
+
+    /**
+     * Moves the archived ones of the items back into {@code tasks}, and returns them. See
+     * {@link TaskArchiveRepository}.
+     */
+    @Timed(value = TIMER, histogram = true)
+    public List<TaskStatus> restore(final Collection<String> uids)
+    {
+        if (uids.isEmpty())
+        {
+            return List.of();
+        }
+        var archived = archive.findByUids(uids);
+        if (archived.isEmpty())
+        {
+            return archived;
+        }
+
+        var writes = new ArrayList<WriteModel<TaskStatus>>(archived.size());
+        archived.forEach(status -> writes.add(new UpdateOneModel<>(byUid(status.getUid()), replacementOf(status),
+                UPSERT)));
+        mongoCollection().bulkWrite(writes, new BulkWriteOptions().ordered(false));
+        archive.remove(archived);
+        return archived;
+    }
+
+    /**
+     * Up to {@code limit} items completed before {@code completedBefore}, with all their fields.
+     */
+    @Timed(value = TIMER, histogram = true)
+    public List<TaskStatus> findArchivable(final long completedBefore, final int limit)
+    {
+        return mongoCollection().find(Filters.and(Filters.eq(TaskStatusFields.COMPLETED, true),
+                Filters.lt(TaskStatusFields.COMPLETED_AT, completedBefore))).limit(limit).into(new ArrayList<>());
+    }
+
+    /**
+     * Deletes the item if it is still as given, and returns whether it did.
+     */
+    @Timed(value = TIMER, histogram = true)
+    public boolean deleteIfUnchanged(final TaskStatus status)
+    {
+        var unchanged = Filters.and(Filters.eq("_id", new ObjectId(status.getId())),
+                Filters.eq(TaskStatusFields.UPDATED_AT, status.getUpdatedAt()),
+                Filters.eq(TaskStatusFields.COMPLETED, true));
+        return mongoCollection().findOneAndDelete(unchanged,
+                new FindOneAndDeleteOptions().projection(Projections.include("_id"))) != null;
+    }
+
+    /**
+     * Those of the tasks still stored in {@code tasks}, changed or not, by their ids.
+     */
+    @Timed(value = TIMER, histogram = true)
+    public Set<String> storedIds(final Collection<TaskStatus> tasks)
+    {
+        var ids = tasks.stream().map(task -> new ObjectId(task.getId())).toList();
+        return mongoCollection().find(Filters.in("_id", ids)).projection(Projections.include("_id"))
+                .map(TaskStatus::getId).into(new HashSet<>());
+    }
+
+    /**
+     * Deletes all but the most recently changed item of every uid stored more than once, e.g. once in each layout, and
+     * returns the users whose items it deleted. The unique uid index and the layout migration both need every uid to be
+     * stored once. The users' counters still count the deleted items until they are reconciled.
+     */
+    @Timed(value = TIMER, histogram = true)
+    public Set<String> deleteDuplicateUids()
+    {
+        var uid = new Document("$ifNull", List.of("$" + TaskStatusFields.UID,
+                "$" + TaskStatusFields.LEGACY.get(TaskStatusFields.UID)));
+        var userUid = new Document("$ifNull", List.of("$" + TaskStatusFields.USER_UID,
+                "$" + TaskStatusFields.LEGACY.get(TaskStatusFields.USER_UID)));
+        var updatedAt = new Document("$ifNull", List.of("$" + TaskStatusFields.UPDATED_AT,
+                "$" + TaskStatusFields.LEGACY.get(TaskStatusFields.UPDATED_AT), 0L));
+        var pipeline = List.of(
+                Aggregates.project(Projections.fields(Projections.computed("uid", uid),
+                        Projections.computed("userUid", userUid), Projections.computed("updatedAt", updatedAt))),
+                Aggregates.sort(Sorts.descending("updatedAt", "_id")),
+                Aggregates.group("$uid",
+                        Accumulators.push("items", new Document("id", "$_id").append("user", "$userUid")),
+                        Accumulators.sum("stored", 1)),
+                Aggregates.match(Filters.gt("stored", 1)));
+
+        var users = new HashSet<String>();
+        for (var duplicates : mongoCollection().aggregate(pipeline, Document.class).allowDiskUse(true))
+        {
+            var older = duplicates.getList("items", Document.class);
+            older = older.subList(1, older.size());
+
+            mongoCollection().deleteMany(Filters.in("_id", older.stream().map(item -> item.get("id")).toList()));
+            older.stream().map(item -> item.getString("user")).filter(Objects::nonNull).forEach(users::add);
+        }
+        return users;
+    }
+
+    /**
+     * Counts a user's open priority and completed items in one aggregation, plus the completed items in the user's
+     * rollup of archived items.
+     */
+    @Timed(value = TIMER, histogram = true)
+    public UserFeedbackCounters countByUserUid(final String userUid)
+    {
+        var pipeline = List.of(Aggregates.match(TaskStatusLayout.byUser(userUid)), countersGroup(null));
+        var counts = mongoCollection().aggregate(pipeline, Document.class).first();
+        var archived = archive.completedCount(userUid);
+
+        if (counts == null)
+        {
+            return new UserFeedbackCounters(userUid, 0, archived);
+        }
+
+        return new UserFeedbackCounters(userUid, counts.getInteger(PRIORITY_COUNT),
+                counts.getInteger(COMPLETED_COUNT) + archived);
+    }
+
+    /**
+     * {@code $group} stage summing open priority and completed items into the counter field names, grouped by the given
+     * expression.
+     */
+    public static Bson countersGroup(final Object id)
+    {
+        var priority = TaskStatusLayout.value(TaskStatusFields.PRIORITY);
+        var completed = TaskStatusLayout.value(TaskStatusFields.COMPLETED);
+        var isOpenPriority = new Document("$and", List.of(priority, new Document("$not", List.of(completed))));
+
+        var openPriorityCount = new Document("$cond", List.of(isOpenPriority, 1, 0));
+        var completedCount = new Document("$cond", List.of(completed, 1, 0));
+
+        return Aggregates.group(id, Accumulators.sum(PRIORITY_COUNT, openPriorityCount),
+                Accumulators.sum(COMPLETED_COUNT, completedCount));
+    }
+
+    /**
+     * Update pipeline writing every field of the status, where the stored item is not newer. Upserts a missing item. A
+     * tombstone only gives way to a status later than the delete.
+     */
+    static List<Bson> replacementOf(final TaskStatus status)
+    {
+        var fields = new Document();
+        fields.put(TaskStatusFields.UID, status.getUid());
+        fields.put(TaskStatusFields.USER_UID, status.getUserUid());
+        var type = status.getType();
+        fields.put(TaskStatusFields.TYPE, TaskStatusFields.DEFAULT_TYPE.equals(type) ? null : type);
+        fields.put(TaskStatusFields.PRIORITY, status.isPriority());
+        fields.put(TaskStatusFields.COMPLETED, status.isCompleted());
+        fields.put(TaskStatusFields.CREATED_AT, status.getCreatedAt());
+        fields.put(TaskStatusFields.UPDATED_AT, status.getUpdatedAt());
+        fields.put(TaskStatusFields.COMPLETED_AT, status.getCompletedAt() != 0 ? status.getCompletedAt() : null);
+        fields.put(TaskStatusFields.DELETED, null);
+        fields.put(TaskStatusFields.EXPIRES_AT, null);
+
+        var updatedAt = status.getUpdatedAt();
+        return setIf(new Document("$cond", Arrays.asList(IS_DELETED, olderThan(updatedAt), notNewerThan(updatedAt))),
+                fields);
+    }
+
+    /**
+     * Update pipeline form of {@link #changesOf(TaskStatus)} that leaves a newer stored item, and any tombstone, as it
+     * is.
+     */
+    static List<Bson> changesIfNotNewer(final TaskStatus changes)
+    {
+        var fields = new Document();
+        fields.put(TaskStatusFields.PRIORITY, changes.isPriority());
+        fields.put(TaskStatusFields.COMPLETED, changes.isCompleted());
+        fields.put(TaskStatusFields.UPDATED_AT, changes.getUpdatedAt());
+        if (changes.getCompletedAt() != 0)
+        {
+            fields.put(TaskStatusFields.COMPLETED_AT, changes.getCompletedAt());
+        }
+
+        var notDeleted = new Document("$not", List.of(IS_DELETED));
+        return setIf(new Document("$and", List.of(notDeleted, notNewerThan(changes.getUpdatedAt()))), fields);
+    }
+
+    /**
+     * Update pipeline turning the stored item, if it is not newer, or nothing into the tombstone of an item deleted at
+     * {@code deletedAt}.
+     */
+    List<Bson> tombstoneOf(final String uid, final long deletedAt)
+    {
+        var fields = new Document();
+        fields.put(TaskStatusFields.UID, uid);
+        fields.put(TaskStatusFields.UPDATED_AT, deletedAt);
+        fields.put(TaskStatusFields.DELETED, true);
+        fields.put(TaskStatusFields.EXPIRES_AT, new Date(deletedAt + tombstoneTtl.toMillis()));
+        for (var field : List.of(TaskStatusFields.USER_UID, TaskStatusFields.TYPE, TaskStatusFields.PRIORITY,
+                TaskStatusFields.COMPLETED, TaskStatusFields.CREATED_AT, TaskStatusFields.COMPLETED_AT))
+        {
+            fields.put(field, null);
+        }
+        if (TaskStatusLayout.hasLegacyItems())
+        {
+            TaskStatusFields.LEGACY.values().forEach(field -> fields.put(field, null));
+        }
+
+        return setIf(notNewerThan(deletedAt), fields);
+    }
+
+    // a missing updatedAt compares as older
+    private static Document notNewerThan(final long updatedAt)
+    {
+        return new Document("$lte", Arrays.asList(TaskStatusLayout.value(TaskStatusFields.UPDATED_AT), updatedAt));
+    }
+
+    private static Document olderThan(final long updatedAt)
+    {
+        return new Document("$lt", Arrays.asList(TaskStatusLayout.value(TaskStatusFields.UPDATED_AT), updatedAt));
+    }
+
+    // each field keeps its stored value unless the condition holds. A null value removes the field.
+    private static List<Bson> setIf(final Document condition, final Document fields)
+    {
+        var set = new Document();
+        fields.forEach((field, value) -> set.put(field, new Document("$cond",
+                Arrays.asList(condition, value != null ? new Document("$literal", value) : "$$REMOVE", "$" + field))));
+
+        return List.of(new Document("$set", set));
+    }
+
+    static Bson changesOf(final TaskStatus changes)
+    {
+        var updates = new ArrayList<Bson>(4);
+        updates.add(Updates.set(TaskStatusFields.PRIORITY, changes.isPriority()));
+        updates.add(Updates.set(TaskStatusFields.COMPLETED, changes.isCompleted()));
+        updates.add(Updates.set(TaskStatusFields.UPDATED_AT, changes.getUpdatedAt()));
+        if (changes.getCompletedAt() != 0)
+        {
+            updates.add(Updates.set(TaskStatusFields.COMPLETED_AT, changes.getCompletedAt()));
+        }
+
+        return Updates.combine(updates);
+    }
+
+    /**
+     * Writes the final state of each item in one unordered bulk write. A {@code null} state deletes the item, a deleted
+     * one leaves its tombstone; any other state is upserted unless the stored item is newer. As there is exactly one
+     * write per uid, the lack of ordering between writes cannot reorder changes to an item.
+     */
+    @Timed(value = TIMER, histogram = true)
+    public void bulkApply(final Map<String, TaskStatus> finalStates)
+    {
+        if (finalStates.isEmpty())
+        {
+            return;
+        }
+
+        var stored = mongoCollection().find(TaskStatusLayout.byUids(finalStates.keySet()))
+                .projection(TaskStatusLayout.projection(TaskStatusFields.UID)).map(TaskStatus::getUid)
+                .into(new HashSet<>());
+        bulkApply(finalStates, stored);
+    }
+
+    /**
+     * {@link #bulkApply(Map)} for callers that looked the items up through {@link #findByUids(Collection)} already,
+     * which restores the archived ones: only uids not among {@code lookedUp} are looked up in the archive.
+     */
+    @Timed(value = TIMER, histogram = true)
+    public void bulkApply(final Map<String, TaskStatus> finalStates, final Collection<String> lookedUp)
+    {
+        if (finalStates.isEmpty())
+        {
+            return;
+        }
+
+        // archived items come back first, or the write would leave a stale copy in the archive
+        var unknown = new HashSet<>(finalStates.keySet());
+        unknown.removeAll(lookedUp);
+        restore(unknown);
+
+        var writes = new ArrayList<WriteModel<TaskStatus>>(finalStates.size());
+        finalStates.forEach((uid, status) -> {
+            if (status == null)
+            {
+                writes.add(new DeleteOneModel<>(byUid(uid)));
+            } else
+            {
+                var update = status.isDeleted() ? tombstoneOf(uid, status.getUpdatedAt()) : replacementOf(status);
+                writes.add(new UpdateOneModel<>(byUid(uid), update, UPSERT));
+            }
+        });
+
+        mongoCollection().bulkWrite(writes, new BulkWriteOptions().ordered(false));
+    }
+
+    static Bson state()
+    {
+        return TaskStatusLayout.projection(STATE);
     }
 
-    public List<TaskStatus> findCompletedByUserUid(final String userUid)
+    static Bson contribution()
     {
-        return list("userUid = ?1 and completed = ?2", userUid, true);
+        return TaskStatusLayout.projection(CONTRIBUTION);
     }
 
-    public List<TaskStatus> findNotCompletedPriorityByUserUid(final String userUid)
+    static FindOneAndUpdateOptions returnBefore(final boolean upsert)
     {
-        return list("userUid = ?1 and priority = ?2 and completed = ?3", userUid, true, false);
+        return new FindOneAndUpdateOptions().upsert(upsert).returnDocument(ReturnDocument.BEFORE).projection(state());
     }
 }
@@ -0,0 +1,120 @@
+package task.service.repos;
+
+import com.mongodb.ErrorCategory;
+import com.mongodb.MongoWriteException;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.FindOneAndUpdateOptions;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.ReturnDocument;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.Updates;
+import com.mongodb.client.model.WriteModel;
+import io.quarkus.mongodb.panache.PanacheMongoRepositoryBase;
+import jakarta.enterprise.context.ApplicationScoped;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import task.service.models.UserFeedbackCounters;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.mongodb.client.model.Filters.eq;
+import static com.mongodb.client.model.Filters.in;
+
+/**
+ * Increments do not create counters: the first change of a user counts the user's tasks instead, see
+ * {@link task.service.services.FeedbackCounterService#recount(String)}. Every change increments the counters'
+ * {@value #VERSION}, which the writes of counted counts compare against, so they never overwrite an increment that
+ * landed while counting.
+ */
+@ApplicationScoped
+public final class UserFeedbackCountersRepository implements PanacheMongoRepositoryBase<UserFeedbackCounters, String>
+{
+    public static final String PRIORITY_COUNT = "priorityCount";
+    public static final String COMPLETED_COUNT = "completedCount";
+    public static final String VERSION = "version";
+
+    private static final FindOneAndUpdateOptions RETURN_AFTER = new FindOneAndUpdateOptions()
+            .returnDocument(ReturnDocument.AFTER);
+    private static final UpdateOptions UPSERT = new UpdateOptions().upsert(true);
+
+    /**
+     * Atomically applies the deltas and returns the counters as they are after the change, or {@code null} if the user
+     * has no counters yet. A zero delta doubles as a read of the current counts.
+     */
+    public UserFeedbackCounters increment(final String userUid, final int priorityDelta, final int completedDelta)
+    {
+        return mongoCollection().findOneAndUpdate(eq("_id", userUid), incrementOf(priorityDelta, completedDelta),
+                RETURN_AFTER);
+    }
+
+    /**
+     * Applies many users' deltas in one unordered bulk write, then reads the resulting counters back in one query. The
+     * counts of each given counters object are interpreted as deltas. Users without counters yet are left out.
+     */
+    public List<UserFeedbackCounters> incrementAll(final List<UserFeedbackCounters> deltas)
+    {
+        if (deltas.isEmpty())
+        {
+            return List.of();
+        }
+
+        var writes = new ArrayList<WriteModel<UserFeedbackCounters>>(deltas.size());
+        var userUids = new ArrayList<String>(deltas.size());
+
+        for (var delta : deltas)
+        {
+            writes.add(new UpdateOneModel<>(eq("_id", delta.getUserUid()),
+                    incrementOf(delta.getPriorityCount(), delta.getCompletedCount())));
+            userUids.add(delta.getUserUid());
+        }
+
+        mongoCollection().bulkWrite(writes, new BulkWriteOptions().ordered(false));
+
+        return mongoCollection().find(in("_id", userUids)).into(new ArrayList<>());
+    }
+
+    /**
+     * The version of the user's counters, {@code null} if the user has none or they predate versions.
+     */
+    public Long version(final String userUid)
+    {
+        var stored = mongoCollection().withDocumentClass(Document.class).find(eq("_id", userUid))
+                .projection(Projections.include(VERSION)).first();
+        return stored != null ? stored.getLong(VERSION) : null;
+    }
+
+    /**
+     * Stores counted counts as the user's counters if they are still at {@code version}, as read before counting, and
+     * returns whether it did. An increment in the meantime may already be in the count or not, so the count is stale.
+     */
+    public boolean replaceIfUnchanged(final UserFeedbackCounters counted, final Long version)
+    {
+        var unchanged = Filters.and(eq("_id", counted.getUserUid()),
+                version != null ? eq(VERSION, version) : Filters.exists(VERSION, false));
+        var update = Updates.combine(Updates.set(PRIORITY_COUNT, counted.getPriorityCount()),
+                Updates.set(COMPLETED_COUNT, counted.getCompletedCount()), Updates.inc(VERSION, 1L));
+
+        try
+        {
+            var result = mongoCollection().updateOne(unchanged, update, UPSERT);
+            return result.getMatchedCount() > 0 || result.getUpsertedId() != null;
+        } catch (final MongoWriteException e)
+        {
+            // the upsert of a user without versioned counters met counters created in the meantime
+            if (e.getError().getCategory() == ErrorCategory.DUPLICATE_KEY)
+            {
+                return false;
+            }
+            throw e;
+        }
+    }
+
+    static Bson incrementOf(final int priorityDelta, final int completedDelta)
+    {
+        return Updates.combine(Updates.inc(PRIORITY_COUNT, priorityDelta), Updates.inc(COMPLETED_COUNT, completedDelta),
+                Updates.inc(VERSION, 1L));
+    }
+}
@@ -0,0 +1,283 @@
+package task.service.rules;
+
+import task.service.models.FeedbackRule;
+import task.service.producers.FeedbackEncoder;
+import task.service.producers.FeedbackEncoder.Text;
+import task.service.services.FeedbackSuppressor;
+import task.service.services.FeedbackSuppressor.Shown;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * {@link FeedbackRule}s compiled into per channel and item event lists of matchers, so a decision is a few array reads
+ * and integer comparisons, without allocating. The templates are compiled into {@link Text}s, encoded once. Immutable
+ * and thread-safe; {@link FeedbackRules} swaps whole tables when the rules change.
+ */
+public final class DecisionTable
+{
+    public static final int COMPLETED = 0;
+    public static final int PRIORITY = 1;
+    // the names of the channels in index order, as rules and the suppressor name them
+    public static final List<String> CHANNELS = List.of(FeedbackSuppressor.COMPLETED, FeedbackSuppressor.PRIORITY);
+
+    static final List<String> EVENTS = List.of("item-created", "item-updated", "item-deleted");
+
+    private static final String PRIORITY_COUNT = "{priorityCount}";
+    private static final String COMPLETED_COUNT = "{completedCount}";
+
+    // [channel][event] the matching candidates, in rule order
+    private final Rule[][][] rules;
+    private final List<FeedbackRule> definitions;
+
+    private DecisionTable(final Rule[][][] rules, final List<FeedbackRule> definitions)
+    {
+        this.rules = rules;
+        this.definitions = definitions;
+    }
+
+    /**
+     * Compiles the rules in their order, counting each rule's hits in the adder {@code hits} hands out for its name.
+     *
+     * @throws IllegalArgumentException if a rule is incomplete, names an unknown channel or event, or shows two counts
+     */
+    public static DecisionTable compile(final List<FeedbackRule> definitions, final Function<String, LongAdder> hits)
+    {
+        var candidates = new ArrayList<List<List<Rule>>>();
+        for (var channel = 0; channel < CHANNELS.size(); channel++)
+        {
+            var perEvent = new ArrayList<List<Rule>>();
+            EVENTS.forEach(event -> perEvent.add(new ArrayList<>()));
+            candidates.add(perEvent);
+        }
+
+        var names = new HashSet<String>();
+        for (var definition : definitions)
+        {
+            var rule = compile(definition, hits);
+            if (!names.add(rule.name))
+            {
+                throw new IllegalArgumentException("Duplicate feedback rule " + rule.name);
+            }
+
+            var channel = CHANNELS.indexOf(definition.getChannel());
+            for (var event = 0; event < EVENTS.size(); event++)
+            {
+                if ((rule.events & 1 << event) != 0)
+                {
+                    candidates.get(channel).get(event).add(rule);
+                }
+            }
+        }
+
+        var rules = new Rule[CHANNELS.size()][EVENTS.size()][];
+        for (var channel = 0; channel < rules.length; channel++)
+        {
+            for (var event = 0; event < EVENTS.size(); event++)
+            {
+                rules[channel][event] = candidates.get(channel).get(event).toArray(Rule[]::new);
+            }
+        }
+        return new DecisionTable(rules, List.copyOf(definitions));
+    }
+
+    /**
+     * The first rule of the channel matching the event, with its hit counted, or {@code null} if none matches and
+     * nothing is sent.
+     */
+    public Rule decide(final int channel, final String eventType, final boolean completed, final int priorityCount,
+            final int completedCount)
+    {
+        var event = event(eventType);
+        if (event < 0)
+        {
+            return null;
+        }
+
+        for (var rule : rules[channel][event])
+        {
+            if (rule.matches(completed, priorityCount, completedCount))
+            {
+                rule.hits.increment();
+                return rule;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Whether any rule of the channel applies to the item event, whatever its counts.
+     */
+    public boolean handles(final int channel, final String eventType)
+    {
+        var event = event(eventType);
+        return event >= 0 && rules[channel][event].length > 0;
+    }
+
+    /**
+     * The rules this table was compiled from.
+     */
+    public List<FeedbackRule> definitions()
+    {
+        return definitions;
+    }
+
+    private static int event(final String eventType)
+    {
+        return switch (eventType)
+        {
+            case "item-created" -> 0;
+            case "item-updated" -> 1;
+            case "item-deleted" -> 2;
+            default -> -1;
+        };
+    }
+
+    private static Rule compile(final FeedbackRule definition, final Function<String, LongAdder> hits)
+    {
+        var name = definition.getName();
+        if (name == null || name.isBlank())
+        {
+            throw new IllegalArgumentException("Feedback rule without a name");
+        }
+        if (!CHANNELS.contains(definition.getChannel()))
+        {
+            throw new IllegalArgumentException("Feedback rule " + name + " has unknown channel "
+                    + definition.getChannel());
+        }
+        if (definition.getMessage() == null)
+        {
+            throw new IllegalArgumentException("Feedback rule " + name + " has no message");
+        }
+
+        var events = 0;
+        if (definition.getEvents() == null || definition.getEvents().isEmpty())
+        {
+            events = (1 << EVENTS.size()) - 1;
+        } else
+        {
+            for (var event : definition.getEvents())
+            {
+                if (!EVENTS.contains(event))
+                {
+                    throw new IllegalArgumentException("Feedback rule " + name + " has unknown event " + event);
+                }
+                events |= 1 << EVENTS.indexOf(event);
+            }
+        }
+
+        var message = definition.getMessage();
+        var priorityAt = message.indexOf(PRIORITY_COUNT);
+        var completedAt = message.indexOf(COMPLETED_COUNT);
+        if (priorityAt >= 0 && completedAt >= 0 || priorityAt != message.lastIndexOf(PRIORITY_COUNT)
+                || completedAt != message.lastIndexOf(COMPLETED_COUNT))
+        {
+            throw new IllegalArgumentException("Feedback rule " + name + " shows more than one count");
+        }
+
+        var count = priorityAt >= 0 ? Rule.PRIORITY_COUNT : completedAt >= 0 ? Rule.COMPLETED_COUNT : Rule.NO_COUNT;
+        var at = Math.max(priorityAt, completedAt);
+        var placeholder = count == Rule.PRIORITY_COUNT ? PRIORITY_COUNT : COMPLETED_COUNT;
+        var text = count == Rule.NO_COUNT
+                ? FeedbackEncoder.text(message)
+                : FeedbackEncoder.text(message.substring(0, at), message.substring(at + placeholder.length()));
+
+        var completed = definition.getCompleted() == null ? Rule.ANY : definition.getCompleted() ? 1 : 0;
+
+        return new Rule(name, events, completed, bound(definition.getMinPriorityCount(), Integer.MIN_VALUE),
+                bound(definition.getMaxPriorityCount(), Integer.MAX_VALUE),
+                bound(definition.getMinCompletedCount(), Integer.MIN_VALUE),
+                bound(definition.getMaxCompletedCount(), Integer.MAX_VALUE), text, count, message,
+                hits.apply(name));
+    }
+
+    private static int bound(final Integer bound, final int open)
+    {
+        return bound != null ? bound : open;
+    }
+
+    /**
+     * A compiled rule: its conditions and the feedback it sends.
+     */
+    public static final class Rule
+    {
+        static final int NO_COUNT = 0;
+        static final int PRIORITY_COUNT = 1;
+        static final int COMPLETED_COUNT = 2;
+        static final int ANY = -1;
+
+        private final String name;
+        // bit i for EVENTS.get(i)
+        private final int events;
+        // 1 completed, 0 not completed, ANY either
+        private final int completed;
+        private final int minPriorityCount;
+        private final int maxPriorityCount;
+        private final int minCompletedCount;
+        private final int maxCompletedCount;
+        private final Text text;
+        private final int count;
+        private final String message;
+        private final LongAdder hits;
+
+        private Rule(final String name, final int events, final int completed, final int minPriorityCount,
+                final int maxPriorityCount, final int minCompletedCount, final int maxCompletedCount, final Text text,
+                final int count, final String message, final LongAdder hits)
+        {
+            this.name = name;
+            this.events = events;
+            this.completed = completed;
+            this.minPriorityCount = minPriorityCount;
+            this.maxPriorityCount = maxPriorityCount;
+            this.minCompletedCount = minCompletedCount;
+            this.maxCompletedCount = maxCompletedCount;
+            this.text = text;
+            this.count = count;
+            this.message = message;
+            this.hits = Objects.requireNonNull(hits);
+        }
+
+        public String name()
+        {
+            return name;
+        }
+
+        public Text text()
+        {
+            return text;
+        }
+
+        /**
+         * The count the text shows, 0 for a constant text.
+         */
+        public int count(final int priorityCount, final int completedCount)
+        {
+            return switch (count)
+            {
+                case PRIORITY_COUNT -> priorityCount;
+                case COMPLETED_COUNT -> completedCount;
+                default -> 0;
+            };
+        }
+
+        /**
+         * What the user sees in the record, for {@link FeedbackSuppressor}: the same message with the same count is
+         * the same state, whichever rule or table it came from.
+         */
+        public Shown shown(final int priorityCount, final int completedCount)
+        {
+            return new Shown(message, count(priorityCount, completedCount));
+        }
+
+        boolean matches(final boolean completed, final int priorityCount, final int completedCount)
+        {
+            return (this.completed == ANY || this.completed == (completed ? 1 : 0))
+                    && priorityCount >= minPriorityCount && priorityCount <= maxPriorityCount
+                    && completedCount >= minCompletedCount && completedCount <= maxCompletedCount;
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package task.service.rules;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.runtime.StartupEvent;
+import io.quarkus.scheduler.Scheduled;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import task.service.models.FeedbackRule;
+import task.service.repos.FeedbackRuleRepository;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+import static task.service.services.FeedbackSuppressor.COMPLETED;
+import static task.service.services.FeedbackSuppressor.PRIORITY;
+
+/**
+ * The current {@link DecisionTable} of the feedback rules. The rules come from {@code feedback.rules.definitions}, or
+ * with {@code feedback.rules.source: mongo} from {@code feedback_rules}, which is read again every
+ * {@code feedback.rules.refresh-interval}: a changed set of rules is compiled and swapped in whole, so every decision
+ * sees either the old or the new rules. Rules that fail to compile are logged and the current ones stay. Without any
+ * configured or stored rules the built-in ones apply, which send the feedback this service always sent.
+ *
+ * <p>
+ * Each rule counts its hits under {@value #HITS_COUNTER}, tagged with the rule name; counts survive reloads.
+ */
+@ApplicationScoped
+public final class FeedbackRules
+{
+    public static final String HITS_COUNTER = "feedback.rules.hits";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(FeedbackRules.class);
+    private static final String MONGO = "mongo";
+    private static final List<String> CHANGES = List.of("item-created", "item-updated");
+
+    static final List<FeedbackRule> DEFAULTS = List.of(
+            rule("completed-total", COMPLETED, CHANGES, true, null,
+                    "Yes! You completed your task! Your total is {completedCount}"),
+            rule("encouragement", COMPLETED, CHANGES, false, null, "I believe in you! Go do stuff!"),
+            rule("priority-warning", PRIORITY, null, null, 5, "Warning! You have {priorityCount} priority items!"),
+            rule("priority-calm", PRIORITY, null, null, null, "Priority is under under control"));
+
+    @Inject
+    FeedbackRulesConfig config;
+
+    @Inject
+    FeedbackRuleRepository repository;
+
+    @Inject
+    MeterRegistry registry;
+
+    private final Map<String, LongAdder> hits = new ConcurrentHashMap<>();
+    private volatile DecisionTable table = DecisionTable.compile(DEFAULTS, this::hits);
+
+    void onStart(@Observes final StartupEvent event)
+    {
+        hits.forEach(this::register);
+        if (MONGO.equals(config.source()))
+        {
+            reload();
+        } else
+        {
+            // rules in config do not change at runtime, so broken ones stop the start
+            refresh();
+        }
+    }
+
+    public DecisionTable table()
+    {
+        return table;
+    }
+
+    @Scheduled(every = "{feedback.rules.refresh-interval}", skipExecutionIf = Scheduled.ApplicationNotRunning.class)
+    void reload()
+    {
+        if (!MONGO.equals(config.source()))
+        {
+            return;
+        }
+
+        try
+        {
+            refresh();
+        } catch (final Exception e)
+        {
+            LOGGER.error("Failed to reload the feedback rules, keeping {}", names(table), e);
+        }
+    }
+
+    /**
+     * Loads the rules and swaps in their table if they changed.
+     */
+    void refresh()
+    {
+        var definitions = load();
+        if (definitions.equals(table.definitions()))
+        {
+            return;
+        }
+
+        table = DecisionTable.compile(definitions, this::hits);
+        LOGGER.info("Feedback rules now {}", names(table));
+    }
+
+    private List<FeedbackRule> load()
+    {
+        if (MONGO.equals(config.source()))
+        {
+            var stored = repository.findAllInOrder();
+            if (!stored.isEmpty())
+            {
+                return stored;
+            }
+        }
+        return config.definitions().map(FeedbackRules::rules).orElse(DEFAULTS);
+    }
+
+    private LongAdder hits(final String rule)
+    {
+        return hits.computeIfAbsent(rule, key -> {
+            var adder = new LongAdder();
+            // the built-in rules are compiled before injection, and registered on start
+            if (registry != null)
+            {
+                register(key, adder);
+            }
+            return adder;
+        });
+    }
+
+    private void register(final String rule, final LongAdder adder)
+    {
+        FunctionCounter.builder(HITS_COUNTER, adder, LongAdder::sum).tag("rule", rule).register(registry);
+    }
+
+    private static String names(final DecisionTable table)
+    {
+        return table.definitions().stream().map(FeedbackRule::getName).collect(Collectors.joining(",", "[", "]"));
+    }
+
+    private static List<FeedbackRule> rules(final List<FeedbackRulesConfig.Definition> definitions)
+    {
+        return definitions.stream().map(definition -> new FeedbackRule(null, definition.name(), 0,
+                definition.channel(), definition.events().orElse(null), definition.completed().orElse(null),
+                definition.minPriorityCount().orElse(null), definition.maxPriorityCount().orElse(null),
+                definition.minCompletedCount().orElse(null), definition.maxCompletedCount().orElse(null),
+                definition.message())).toList();
+    }
+
+    private static FeedbackRule rule(final String name, final String channel, final List<String> events,
+            final Boolean completed, final Integer minPriorityCount, final String message)
+    {
+        return new FeedbackRule(null, name, 0, channel, events, completed, minPriorityCount, null, null, null,
+                message);
+    }
+}
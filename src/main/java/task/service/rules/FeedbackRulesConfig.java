@@ -0,0 +1,53 @@
+package task.service.rules;
+
+import io.smallrye.config.ConfigMapping;
+import io.smallrye.config.WithDefault;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * {@code feedback.rules}: where the feedback rules come from, and the rules themselves when they come from config.
+ */
+@ConfigMapping(prefix = "feedback.rules")
+public interface FeedbackRulesConfig
+{
+    /**
+     * {@code config} for {@link #definitions()}, {@code mongo} for {@code feedback_rules}.
+     */
+    @WithDefault("config")
+    String source();
+
+    @WithDefault("30s")
+    Duration refreshInterval();
+
+    /**
+     * The rules in order; without any, the built-in rules apply.
+     */
+    Optional<List<Definition>> definitions();
+
+    /**
+     * A rule as {@link task.service.models.FeedbackRule} has it, in config.
+     */
+    interface Definition
+    {
+        String name();
+
+        String channel();
+
+        Optional<List<String>> events();
+
+        Optional<Boolean> completed();
+
+        Optional<Integer> minPriorityCount();
+
+        Optional<Integer> maxPriorityCount();
+
+        Optional<Integer> minCompletedCount();
+
+        Optional<Integer> maxCompletedCount();
+
+        String message();
+    }
+}
@@ -0,0 +1,247 @@
+package task.service.services;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.runtime.ShutdownEvent;
+import io.quarkus.scheduler.Scheduled;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import task.service.rules.DecisionTable;
+import task.service.rules.FeedbackRules;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+/**
+ * Collapses a user's feedback within a window into one record per channel, decided by the rules on the newest counts,
+ * those read from the highest counters version whatever order their events arrived in, and the last event the channel
+ * has rules for.
+ * A user's pending feedback is sent once no new event arrived for {@code feedback.coalesce.window}, or at the latest
+ * {@code feedback.coalesce.max-delay} after its first event. The stage returned for every collapsed event completes
+ * when the combined records are acknowledged, so their Kafka records are only acked, and their offsets committed, once
+ * the feedback that covers them is out; it fails, and the records are nacked, if any of them failed.
+ *
+ * <p>
+ * Pending feedback is sent on shutdown and, for the users of revoked partitions, on rebalance. Disabled by default.
+ */
+@ApplicationScoped
+public final class FeedbackCoalescer
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(FeedbackCoalescer.class);
+
+    @Inject
+    FeedbackService feedbackService;
+
+    @Inject
+    FeedbackRules rules;
+
+    @Inject
+    MeterRegistry registry;
+
+    @ConfigProperty(name = "feedback.coalesce.enabled")
+    boolean enabled;
+
+    @ConfigProperty(name = "feedback.coalesce.window")
+    Duration window;
+
+    @ConfigProperty(name = "feedback.coalesce.max-delay")
+    Duration maxDelay;
+
+    private final ConcurrentHashMap<String, Pending> pending = new ConcurrentHashMap<>();
+    private Counter merged;
+
+    @PostConstruct
+    void init()
+    {
+        if (!enabled)
+        {
+            return;
+        }
+
+        merged = Counter.builder("feedback.coalescer.merged").register(registry);
+        Gauge.builder("feedback.coalescer.pending", pending, ConcurrentHashMap::size).register(registry);
+    }
+
+    public boolean isEnabled()
+    {
+        return enabled;
+    }
+
+    /**
+     * Takes the feedback for one event into the user's pending feedback. Its counts replace the pending ones unless
+     * those were read from a higher {@code countersVersion}.
+     */
+    public CompletionStage<Void> coalesce(final String userUid, final String eventType, final boolean completed,
+            final int priorityCount, final int completedCount, final long countersVersion)
+    {
+        var now = System.nanoTime();
+        var merging = new boolean[1];
+
+        var table = rules.table();
+
+        var target = pending.compute(userUid, (key, current) -> {
+            var next = current != null ? current : new Pending(now);
+            merging[0] = current != null;
+            next.merge(table, eventType, completed, priorityCount, completedCount, countersVersion, now);
+            return next;
+        });
+
+        if (merging[0])
+        {
+            merged.increment();
+        }
+        return target.done;
+    }
+
+    /**
+     * Sends the pending feedback of the matching users now, e.g. of the users whose partitions were revoked.
+     */
+    public void flush(final Predicate<String> users)
+    {
+        if (enabled)
+        {
+            flushWhere((userUid, entry) -> users.test(userUid));
+        }
+    }
+
+    void onStop(@Observes final ShutdownEvent event)
+    {
+        if (!enabled)
+        {
+            return;
+        }
+
+        LOGGER.info("Sending pending feedback of {} users", pending.size());
+        flushWhere((userUid, entry) -> true);
+    }
+
+    @Scheduled(every = "{feedback.coalesce.tick}", concurrentExecution = Scheduled.ConcurrentExecution.SKIP,
+            skipExecutionIf = Scheduled.ApplicationNotRunning.class)
+    void flushDue()
+    {
+        if (!enabled)
+        {
+            return;
+        }
+
+        try
+        {
+            var now = System.nanoTime();
+            flushWhere((userUid, entry) -> entry.isDue(now, window.toNanos(), maxDelay.toNanos()));
+        } catch (final Exception e)
+        {
+            // the entries are retried on the next tick
+            LOGGER.error("Failed to send coalesced feedback", e);
+        }
+    }
+
+    private synchronized void flushWhere(final PendingFilter filter)
+    {
+        var due = new ArrayList<String>();
+        pending.forEach((userUid, entry) -> {
+            if (filter.test(userUid, entry))
+            {
+                due.add(userUid);
+            }
+        });
+
+        for (var userUid : due)
+        {
+            // once removed, later events for the user start a new entry
+            var entry = pending.remove(userUid);
+            if (entry != null)
+            {
+                send(userUid, entry);
+            }
+        }
+    }
+
+    private void send(final String userUid, final Pending entry)
+    {
+        var sends = new ArrayList<CompletableFuture<Void>>(entry.eventTypes.length);
+        for (var channel = 0; channel < entry.eventTypes.length; channel++)
+        {
+            if (entry.eventTypes[channel] != null)
+            {
+                sends.add(feedbackService.sendFeedback(channel, userUid, entry.eventTypes[channel],
+                        entry.completed[channel], entry.priorityCount, entry.completedCount).toCompletableFuture());
+            }
+        }
+
+        CompletableFuture.allOf(sends.toArray(CompletableFuture[]::new)).whenComplete((ignored, failure) -> {
+            if (failure != null)
+            {
+                // every collapsed event is nacked and retried
+                entry.done.completeExceptionally(failure);
+            } else
+            {
+                entry.done.complete(null);
+            }
+        });
+    }
+
+    @FunctionalInterface
+    private interface PendingFilter
+    {
+        boolean test(String userUid, Pending entry);
+    }
+
+    // changed only inside ConcurrentHashMap.compute, read in full only after being removed from the map
+    private static final class Pending
+    {
+        final CompletableFuture<Void> done = new CompletableFuture<>();
+        final long firstAt;
+        // read by the scheduled flush while events still merge in
+        volatile long lastAt;
+        // by DecisionTable channel, the last event with rules on the channel and its completion, null for none
+        final String[] eventTypes = new String[DecisionTable.CHANNELS.size()];
+        final boolean[] completed = new boolean[DecisionTable.CHANNELS.size()];
+        int completedCount;
+        int priorityCount;
+        // of the counters the counts were read from
+        long countersVersion = Long.MIN_VALUE;
+
+        Pending(final long firstAt)
+        {
+            this.firstAt = firstAt;
+        }
+
+        void merge(final DecisionTable table, final String eventType, final boolean completed,
+                final int priorityCount, final int completedCount, final long countersVersion, final long now)
+        {
+            lastAt = now;
+            // events of the user processed concurrently can arrive here out of order, their counts must not go back
+            if (countersVersion >= this.countersVersion)
+            {
+                this.priorityCount = priorityCount;
+                this.completedCount = completedCount;
+                this.countersVersion = countersVersion;
+            }
+
+            // e.g. the built-in rules send no completed feedback for deletes, so a delete keeps the update before it
+            for (var channel = 0; channel < eventTypes.length; channel++)
+            {
+                if (table.handles(channel, eventType))
+                {
+                    eventTypes[channel] = eventType;
+                    this.completed[channel] = completed;
+                }
+            }
+        }
+
+        boolean isDue(final long now, final long windowNanos, final long maxDelayNanos)
+        {
+            return now - lastAt >= windowNanos || now - firstAt >= maxDelayNanos;
+        }
+    }
+}
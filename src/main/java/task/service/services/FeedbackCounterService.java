@@ -0,0 +1,193 @@
+package task.service.services;
+
+import io.smallrye.mutiny.Uni;
+import io.smallrye.mutiny.infrastructure.Infrastructure;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import task.service.cache.TaskStateCache;
+import task.service.models.TaskStatus;
+import task.service.models.UserFeedbackCounters;
+import task.service.repos.ReactiveUserFeedbackCountersRepository;
+import task.service.repos.TaskStatusRepository;
+import task.service.repos.UserFeedbackCountersRepository;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Moves users' counters by the changes of their tasks. A user without counters, e.g. one whose tasks predate the
+ * counters, is counted from the tasks on the first change instead, after the change was written, so the count
+ * includes it. So is a user whose increment failed, as it may or may not have been applied, and a user whose event is
+ * applied again: its item already shows the change, so the increment of the first attempt cannot be told from the
+ * state, only from a count.
+ *
+ * <p>
+ * Whatever counters an increment or count returns are written through to {@link TaskStateCache}, which serves the
+ * counters to readers without asking Mongo.
+ */
+@ApplicationScoped
+public final class FeedbackCounterService
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(FeedbackCounterService.class);
+    private static final int MAX_RECOUNTS = 3;
+
+    @Inject
+    UserFeedbackCountersRepository countersRepository;
+
+    @Inject
+    ReactiveUserFeedbackCountersRepository reactiveCountersRepository;
+
+    @Inject
+    TaskStatusRepository taskRepository;
+
+    @Inject
+    TaskStateCache stateCache;
+
+    /**
+     * Applies the counter change caused by a task going from {@code before} to {@code after}. Either side may be
+     * {@link Contribution#NONE} for creates and deletes.
+     */
+    public UserFeedbackCounters track(final String userUid, final Contribution before, final Contribution after)
+    {
+        UserFeedbackCounters counters;
+        try
+        {
+            counters = countersRepository.increment(userUid, after.priority() - before.priority(),
+                    after.completed() - before.completed());
+        } catch (final RuntimeException e)
+        {
+            LOGGER.warn("Failed to move counters of user {}, counting them instead", userUid, e);
+            return recount(userUid);
+        }
+        if (counters == null)
+        {
+            return recount(userUid);
+        }
+        stateCache.putCounters(counters);
+        return counters;
+    }
+
+    /**
+     * {@link #track} without blocking; the rare count of a user without counters runs on a worker thread.
+     */
+    public Uni<UserFeedbackCounters> trackAsync(final String userUid, final Contribution before,
+            final Contribution after)
+    {
+        return reactiveCountersRepository.increment(userUid, after.priority() - before.priority(),
+                after.completed() - before.completed()).onFailure().recoverWithItem(e -> {
+                    LOGGER.warn("Failed to move counters of user {}, counting them instead", userUid, e);
+                    return null;
+                }).onItem().ifNotNull().invoke(stateCache::putCounters)
+                .onItem().ifNull().switchTo(() -> recountAsync(userUid));
+    }
+
+    /**
+     * Applies the summed deltas of a whole batch, one increment per user, and returns the resulting counters. Users in
+     * {@code recounted}, e.g. those with an event applied again, are counted instead.
+     */
+    public List<UserFeedbackCounters> trackAll(final Map<String, Contribution> deltasByUser,
+            final Set<String> recounted)
+    {
+        var deltas = new ArrayList<UserFeedbackCounters>(deltasByUser.size());
+        deltasByUser.forEach((userUid, delta) -> {
+            if (!recounted.contains(userUid))
+            {
+                deltas.add(new UserFeedbackCounters(userUid, delta.priority(), delta.completed()));
+            }
+        });
+
+        var tracked = new ArrayList<UserFeedbackCounters>(deltasByUser.size());
+        try
+        {
+            tracked.addAll(countersRepository.incrementAll(deltas));
+            tracked.forEach(stateCache::putCounters);
+        } catch (final RuntimeException e)
+        {
+            LOGGER.warn("Failed to move counters of {} users, counting them instead", deltas.size(), e);
+        }
+
+        if (tracked.size() < deltasByUser.size())
+        {
+            var uncounted = new HashSet<>(deltasByUser.keySet());
+            tracked.forEach(counters -> uncounted.remove(counters.getUserUid()));
+            uncounted.forEach(userUid -> tracked.add(recount(userUid)));
+        }
+        return tracked;
+    }
+
+    /**
+     * Counts the user's tasks and stores the counts as the user's counters, for users without counters and wherever an
+     * increment may or may not have been applied. The count includes every change written before it, so it only
+     * replaces counters that no increment moved while counting; after an increment it counts again, and after
+     * {@value #MAX_RECOUNTS} counts of a user that keeps changing it leaves the counters to the increments.
+     */
+    public UserFeedbackCounters recount(final String userUid)
+    {
+        for (var attempt = 1; ; attempt++)
+        {
+            var version = countersRepository.version(userUid);
+            var counted = taskRepository.countByUserUid(userUid);
+            if (countersRepository.replaceIfUnchanged(counted, version))
+            {
+                LOGGER.debug("Counted feedback counters of user {}", userUid);
+                // the replace moved the version on by one
+                counted.setVersion(version != null ? version + 1 : 1);
+                stateCache.putCounters(counted);
+                return counted;
+            }
+
+            if (attempt == MAX_RECOUNTS)
+            {
+                LOGGER.warn("Counters of user {} kept changing while counting, leaving them as they are", userUid);
+                var stored = countersRepository.findById(userUid);
+                if (stored == null)
+                {
+                    return counted;
+                }
+                stateCache.putCounters(stored);
+                return stored;
+            }
+        }
+    }
+
+    /**
+     * {@link #recount} on a worker thread.
+     */
+    public Uni<UserFeedbackCounters> recountAsync(final String userUid)
+    {
+        return Uni.createFrom().item(() -> recount(userUid)).runSubscriptionOn(Infrastructure.getDefaultWorkerPool());
+    }
+
+    /**
+     * What a single task adds to its user's counters. Snapshot it before mutating a {@link TaskStatus} in place.
+     */
+    public record Contribution(int priority, int completed)
+    {
+        public static final Contribution NONE = new Contribution(0, 0);
+
+        public Contribution plus(final Contribution other)
+        {
+            return new Contribution(priority + other.priority, completed + other.completed);
+        }
+
+        public Contribution minus(final Contribution other)
+        {
+            return new Contribution(priority - other.priority, completed - other.completed);
+        }
+
+        public static Contribution of(final TaskStatus status)
+        {
+            if (status == null || status.isDeleted())
+            {
+                return NONE;
+            }
+
+            return new Contribution(status.isPriority() && !status.isCompleted() ? 1 : 0, status.isCompleted() ? 1 : 0);
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package task.service.services;
 
+import io.smallrye.mutiny.Uni;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
 import org.slf4j.Logger;
@@ -7,21 +8,45 @@ import org.slf4j.LoggerFactory;
 import task.service.models.TaskStatus;
 import task.service.models.messages.FeedbackEvent;
 import task.service.models.messages.ItemEvent;
+import task.service.producers.FeedbackEncoder;
 import task.service.producers.ItemFeedbackProducer;
+import task.service.rules.DecisionTable;
+import task.service.rules.DecisionTable.Rule;
+import task.service.rules.FeedbackRules;
 
-import java.util.UUID;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
+import static task.service.rules.DecisionTable.COMPLETED;
+import static task.service.rules.DecisionTable.PRIORITY;
 
 @ApplicationScoped
 public final class FeedbackService
 {
     private static final Logger LOGGER = LoggerFactory.getLogger(FeedbackService.class);
-    private static final int PRIORITY_LIMIT = 5;
     private static final String PRIORITY_ERROR_MSG = "Failed to send priority event";
     private static final String COMPLETED_ERROR_MSG = "Failed to send completed event";
+    private static final Set<String> COALESCED_EVENTS = Set.of("item-created", "item-updated", "item-deleted");
+
+    // by DecisionTable channel
+    private static final List<String> RECORD_EVENTS = List.of("feedback-completed", "feedback-priority");
+    private static final List<FeedbackEncoder> RECORDS = RECORD_EVENTS.stream()
+            .map(event -> new FeedbackEncoder(event, "task")).toList();
 
     @Inject
     ItemFeedbackProducer itemFeedbackProducer;
 
+    @Inject
+    FeedbackCoalescer coalescer;
+
+    @Inject
+    FeedbackSuppressor suppressor;
+
+    @Inject
+    FeedbackRules rules;
+
     public TaskStatus createStatus(final ItemEvent event)
     {
         LOGGER.debug("Creating status for item: {} and user {}", event.getItemUid(), event.getUserUid());
@@ -32,12 +57,12 @@ public final class FeedbackService
         status.setUid(event.getItemUid());
         status.setUserUid(event.getUserUid());
         status.setType(event.getType());
-        status.setPriority(content.containsKey("priority") && (boolean) content.get("priority"));
-        status.setCompleted(content.containsKey("completed") && (boolean) content.get("completed"));
+        status.setPriority(content.isPriority());
+        status.setCompleted(content.isCompleted());
         status.setCreatedAt(event.getTime());
         status.setUpdatedAt(event.getTime());
 
-        if (content.containsKey("completed") && (boolean) content.get("completed"))
+        if (content.isCompleted())
         {
             status.setCompletedAt(event.getTime());
         }
@@ -51,11 +76,11 @@ public final class FeedbackService
 
         var content = event.getContent();
 
-        prevStatus.setPriority(content.containsKey("priority") && (boolean) content.get("priority"));
-        prevStatus.setCompleted(content.containsKey("completed") && (boolean) content.get("completed"));
-        prevStatus.setUpdatedAt(content.containsKey("time") ? (long) content.get("time") : event.getTime());
+        prevStatus.setPriority(content.isPriority());
+        prevStatus.setCompleted(content.isCompleted());
+        prevStatus.setUpdatedAt(updatedAt(event));
 
-        if (content.containsKey("completed") && (boolean) content.get("completed"))
+        if (content.isCompleted())
         {
             prevStatus.setCompletedAt(event.getTime());
         }
@@ -63,86 +88,142 @@ public final class FeedbackService
         return prevStatus;
     }
 
-    public void feedback(final String userUid, final String eventType, final boolean completed, final int priorityCount,
-            final int completedCount)
+    /**
+     * The time an update event changed its item at, which {@link #updateStatus(ItemEvent, TaskStatus)} stores as the
+     * item's updatedAt.
+     */
+    public static long updatedAt(final ItemEvent event)
     {
-        switch (eventType)
-        {
-            case "item-created", "item-updated" -> {
-                sendCompletedFeedback(userUid, completed, completedCount);
-                sendPriorityFeedback(userUid, priorityCount);
-            }
-            case "item-deleted" -> sendPriorityFeedback(userUid, priorityCount);
-        }
+        var time = event.getContent().getTime();
+        return time != null ? time : event.getTime();
     }
 
-    // package-private for tests
-    FeedbackEvent buildCompletedEvent(final boolean completed, final int completedCount, final String userUid)
+    /**
+     * Whether a change made at {@code changedAt} is older than the stored item. Such an event arrived late or was
+     * replayed: applying it would roll the item back. An event as old as the stored item is not stale, so a redelivery
+     * of the last change is still applied, idempotently, unless the stored item is a tombstone: a change as old as the
+     * delete would bring the item back.
+     */
+    public static boolean isStale(final TaskStatus stored, final long changedAt)
     {
-        var event = new FeedbackEvent();
-        event.setEvent("feedback-completed");
-        event.setFeedbackUid(UUID.randomUUID().toString());
-        event.setType("task");
-        event.setUserUid(userUid);
+        return stored != null && (changedAt < stored.getUpdatedAt()
+                || stored.isDeleted() && changedAt == stored.getUpdatedAt());
+    }
 
-        if (completed)
-        {
-            event.setFeedback("Yes! You completed your task! Your total is " + completedCount);
-        } else
+    /**
+     * Whether the stored item already shows a change made at {@code changedAt}: the event, or one as old, was applied
+     * before, e.g. by an attempt that failed afterwards, and only a count tells whether its counters moved too.
+     */
+    public static boolean isApplied(final TaskStatus stored, final long changedAt)
+    {
+        return stored != null && !stored.isDeleted() && changedAt == stored.getUpdatedAt();
+    }
+
+    /**
+     * Sends the feedback the rules decide for an event and completes once every feedback record is acknowledged. It
+     * fails if a record was rejected or found no room in the producer in time, so the item record is nacked and the
+     * event retried rather than acked without its feedback. With coalescing on, the feedback joins the user's pending
+     * feedback in {@link FeedbackCoalescer} instead, where {@code countersVersion}, the version of the counters the
+     * counts were read from, decides which counts it sends.
+     */
+    public CompletionStage<Void> feedback(final String userUid, final String eventType, final boolean completed,
+            final int priorityCount, final int completedCount, final long countersVersion)
+    {
+        if (coalescer.isEnabled() && COALESCED_EVENTS.contains(eventType))
         {
-            event.setFeedback("I believe in you! Go do stuff!");
+            return coalescer.coalesce(userUid, eventType, completed, priorityCount, completedCount, countersVersion);
         }
 
-        event.setTime(System.currentTimeMillis());
-
-        return event;
+        // both channels decide on the same rules, even if they are swapped in between
+        var table = rules.table();
+        return CompletableFuture.allOf(
+                sendFeedback(table, COMPLETED, userUid, eventType, completed, priorityCount, completedCount)
+                        .toCompletableFuture(),
+                sendFeedback(table, PRIORITY, userUid, eventType, completed, priorityCount, completedCount)
+                        .toCompletableFuture());
     }
 
-    // package-private for tests
-    FeedbackEvent buildPriorityEvent(final String userUid, final int priorityCount)
+    /**
+     * {@link #feedback(String, String, boolean, int, int, long)} as a lazy {@link Uni} for the reactive pipeline.
+     */
+    public Uni<Void> feedbackAsync(final String userUid, final String eventType, final boolean completed,
+            final int priorityCount, final int completedCount, final long countersVersion)
     {
-        var event = new FeedbackEvent();
-        event.setEvent("feedback-priority");
-        event.setFeedbackUid(UUID.randomUUID().toString());
-        event.setType("task");
-        event.setUserUid(userUid);
+        return Uni.createFrom().completionStage(
+                () -> feedback(userUid, eventType, completed, priorityCount, completedCount, countersVersion));
+    }
 
-        if (priorityCount >= PRIORITY_LIMIT)
-        {
-            event.setFeedback("Warning! You have " + priorityCount + " priority items!");
-        } else
+    /**
+     * The record the rules decide on a {@link DecisionTable} channel for the event, or {@code null} if none. Public for
+     * the streams topology, which writes its records itself.
+     */
+    public FeedbackEvent buildEvent(final int channel, final String userUid, final String eventType,
+            final boolean completed, final int priorityCount, final int completedCount)
+    {
+        var rule = rules.table().decide(channel, eventType, completed, priorityCount, completedCount);
+        if (rule == null)
         {
-            event.setFeedback("Priority is under under control");
+            return null;
         }
 
-        event.setTime(System.currentTimeMillis());
+        return new FeedbackEvent(RECORD_EVENTS.get(channel), FeedbackEncoder.randomUuid(), userUid, "task",
+                rule.text().render(rule.count(priorityCount, completedCount)), System.currentTimeMillis());
+    }
 
-        return event;
+    /**
+     * {@link #buildEvent} encoded for the wire, as the producer sends it.
+     */
+    public byte[] encodeEvent(final int channel, final String userUid, final String eventType, final boolean completed,
+            final int priorityCount, final int completedCount)
+    {
+        var rule = rules.table().decide(channel, eventType, completed, priorityCount, completedCount);
+        return rule != null ? encode(channel, rule, userUid, priorityCount, completedCount) : null;
     }
 
-    private void sendCompletedFeedback(final String userUid, final boolean completed, final int completedCount)
+    // package-private for FeedbackCoalescer
+    CompletionStage<Void> sendFeedback(final int channel, final String userUid, final String eventType,
+            final boolean completed, final int priorityCount, final int completedCount)
     {
-        var event = buildCompletedEvent(completed, completedCount, userUid);
+        return sendFeedback(rules.table(), channel, userUid, eventType, completed, priorityCount, completedCount);
+    }
 
-        try
-        {
-            itemFeedbackProducer.sendItemCompletedEvent(userUid, event);
-        } catch (final Exception e)
+    private CompletionStage<Void> sendFeedback(final DecisionTable table, final int channel, final String userUid,
+            final String eventType, final boolean completed, final int priorityCount, final int completedCount)
+    {
+        var rule = table.decide(channel, eventType, completed, priorityCount, completedCount);
+        if (rule == null)
         {
-            LOGGER.error(COMPLETED_ERROR_MSG, e);
+            return CompletableFuture.completedFuture(null);
         }
+
+        var suppressed = DecisionTable.CHANNELS.get(channel);
+        var shown = rule.shown(priorityCount, completedCount);
+        return suppressor.shouldSend(suppressed, userUid, shown).thenCompose(send -> {
+            if (!send)
+            {
+                return CompletableFuture.<Void>completedFuture(null);
+            }
+
+            var record = encode(channel, rule, userUid, priorityCount, completedCount);
+            var sent = channel == COMPLETED
+                    ? itemFeedbackProducer.sendItemCompletedEvent(userUid, record)
+                    : itemFeedbackProducer.sendItemPriorityEvent(userUid, record);
+
+            // the failure goes on to the caller, which nacks the item record so the event is retried
+            return sent.whenComplete((ignored, failure) -> {
+                if (failure != null)
+                {
+                    LOGGER.error(channel == COMPLETED ? COMPLETED_ERROR_MSG : PRIORITY_ERROR_MSG, failure);
+                    suppressor.sendFailed(suppressed, userUid, shown);
+                }
+            });
+        });
     }
 
-    private void sendPriorityFeedback(final String userUid, final int priorityCount)
+    private static byte[] encode(final int channel, final Rule rule, final String userUid, final int priorityCount,
+            final int completedCount)
     {
-        var event = buildPriorityEvent(userUid, priorityCount);
-
-        try
-        {
-            itemFeedbackProducer.sendItemPriorityEvent(userUid, event);
-        } catch (final Exception e)
-        {
-            LOGGER.error(PRIORITY_ERROR_MSG, e);
-        }
+        return RECORDS.get(channel).encode(userUid, rule.text(), rule.count(priorityCount, completedCount),
+                System.currentTimeMillis());
     }
 }
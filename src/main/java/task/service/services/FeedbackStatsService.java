@@ -0,0 +1,83 @@
+package task.service.services;
+
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.Uni;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import task.service.cache.TaskStateCache;
+import task.service.models.UserFeedbackCounters;
+import task.service.repos.ReactiveUserFeedbackCountersRepository;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Users' counters for the read API, without blocking. The counters of the users this instance consumes come from
+ * {@link TaskStateCache}, as the last increment returned them, without asking Mongo. Only the others are looked up
+ * through the reactive client, a batch in queries of {@code feedback.stats.batch-size} users, and not kept, as no
+ * increment of this instance would keep them current. Users without counters have zero of both.
+ */
+@ApplicationScoped
+public final class FeedbackStatsService
+{
+    @Inject
+    TaskStateCache stateCache;
+
+    @Inject
+    ReactiveUserFeedbackCountersRepository repository;
+
+    @ConfigProperty(name = "feedback.stats.batch-size")
+    int batchSize;
+
+    public Uni<UserFeedbackCounters> stats(final String userUid)
+    {
+        var cached = stateCache.counters(userUid);
+        if (cached != null)
+        {
+            return Uni.createFrom().item(cached);
+        }
+        return repository.findById(userUid).map(found -> orNone(userUid, found));
+    }
+
+    /**
+     * The counters of every given user, those at hand first.
+     */
+    public Multi<UserFeedbackCounters> stats(final List<String> userUids)
+    {
+        var hits = new ArrayList<UserFeedbackCounters>();
+        var misses = new ArrayList<String>();
+        for (var userUid : userUids)
+        {
+            var cached = stateCache.counters(userUid);
+            if (cached != null)
+            {
+                hits.add(cached);
+            } else
+            {
+                misses.add(userUid);
+            }
+        }
+
+        var chunks = new ArrayList<List<String>>();
+        for (var from = 0; from < misses.size(); from += batchSize)
+        {
+            chunks.add(misses.subList(from, Math.min(misses.size(), from + batchSize)));
+        }
+
+        return Multi.createBy().concatenating().streams(Multi.createFrom().iterable(hits),
+                Multi.createFrom().iterable(chunks).onItem().transformToMultiAndConcatenate(this::lookUp));
+    }
+
+    private Multi<UserFeedbackCounters> lookUp(final List<String> userUids)
+    {
+        return repository.findByUsers(userUids).collect().asMap(UserFeedbackCounters::getUserUid)
+                .onItem().transformToMulti(found -> Multi.createFrom().iterable(userUids)
+                        .map(userUid -> orNone(userUid, found.get(userUid))));
+    }
+
+    private static UserFeedbackCounters orNone(final String userUid, final UserFeedbackCounters found)
+    {
+        return found != null ? found : new UserFeedbackCounters(userUid, 0, 0);
+    }
+}
@@ -0,0 +1,124 @@
+package task.service.services;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import task.service.metrics.PipelineMetrics;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Predicate;
+
+/**
+ * Remembers, per user and feedback channel, what the user was last shown, and tells {@link FeedbackService} to skip a
+ * record that would show the same thing again. What is shown is the rule's message and the count it fills in, so a
+ * skipped record is one the user would not have noticed.
+ *
+ * <p>
+ * A user's records are sent by the instance owning the user's partitions, so the state is kept in process, bounded by
+ * {@code feedback.suppress.max-entries}, and checked and set without any round trip. The entries of users whose
+ * partitions are revoked are dropped, as the new owner sends their records from then on. A user this instance does not
+ * remember, evicted or newly assigned, is sent the next record, which at worst repeats the last one. Each channel is
+ * switched on separately.
+ */
+@ApplicationScoped
+public final class FeedbackSuppressor
+{
+    public static final String COMPLETED = "completed";
+    public static final String PRIORITY = "priority";
+
+    private static final CompletionStage<Boolean> SEND = CompletableFuture.completedFuture(true);
+    private static final CompletionStage<Boolean> SKIP = CompletableFuture.completedFuture(false);
+
+    @Inject
+    PipelineMetrics metrics;
+
+    @Inject
+    MeterRegistry registry;
+
+    @ConfigProperty(name = "feedback.suppress.completed")
+    boolean completedEnabled;
+
+    @ConfigProperty(name = "feedback.suppress.priority")
+    boolean priorityEnabled;
+
+    @ConfigProperty(name = "feedback.suppress.max-entries")
+    long maxEntries;
+
+    private Cache<LastShown, Shown> lastShown;
+
+    @PostConstruct
+    void init()
+    {
+        lastShown = Caffeine.newBuilder().maximumSize(maxEntries).recordStats().build();
+        CaffeineCacheMetrics.monitor(registry, lastShown, "feedback-shown");
+    }
+
+    /**
+     * Whether to send a record showing {@code shown} on the channel, recording it as shown if so.
+     */
+    public CompletionStage<Boolean> shouldSend(final String channel, final String userUid, final Shown shown)
+    {
+        if (!isEnabled(channel))
+        {
+            return SEND;
+        }
+
+        var repeat = new boolean[1];
+        lastShown.asMap().compute(new LastShown(userUid, channel), (key, before) -> {
+            repeat[0] = shown.equals(before);
+            return shown;
+        });
+        if (repeat[0])
+        {
+            metrics.suppressed(channel).increment();
+            return SKIP;
+        }
+        return SEND;
+    }
+
+    /**
+     * Undoes {@link #shouldSend} after the record failed, so the retried event sends it again.
+     */
+    public void sendFailed(final String channel, final String userUid, final Shown shown)
+    {
+        if (isEnabled(channel))
+        {
+            lastShown.asMap().remove(new LastShown(userUid, channel), shown);
+        }
+    }
+
+    /**
+     * Forgets what the matching users were shown, e.g. those of revoked partitions.
+     */
+    public void forget(final Predicate<String> users)
+    {
+        lastShown.asMap().keySet().removeIf(key -> users.test(key.userUid()));
+    }
+
+    private boolean isEnabled(final String channel)
+    {
+        return switch (channel)
+        {
+            case COMPLETED -> completedEnabled;
+            case PRIORITY -> priorityEnabled;
+            default -> false;
+        };
+    }
+
+    /**
+     * The message template of a record and the count it shows, 0 for a constant text.
+     */
+    public record Shown(String message, int count)
+    {
+    }
+
+    private record LastShown(String userUid, String channel)
+    {
+    }
+}
@@ -0,0 +1,198 @@
+package task.service.services;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import task.service.metrics.PipelineMetrics;
+import task.service.models.TaskStatus;
+import task.service.models.messages.ItemEvent;
+import task.service.repos.TaskStatusRepository;
+import task.service.services.FeedbackCounterService.Contribution;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Applies a whole poll of item events with a fixed number of Mongo round trips: one read of the touched items, one bulk
+ * write of their final states, and one bulk increment plus read of the touched users' counters. Events are folded in
+ * arrival order, so every item still goes through its changes in the order they were produced; a create or update older
+ * than the item's state at that point is dropped as stale, and the bulk write will not overwrite an item stored by a
+ * newer event in the meantime. Users with an event the stored item already shows, as in a retried batch, are counted
+ * rather than incremented, see {@link FeedbackCounterService}.
+ *
+ * <p>
+ * Like {@link ItemEventProcessor}, deletes leave tombstones, which the read returns like items, and creates and
+ * updates of deleted items are dropped as stale. Updates of items that are neither stored nor deleted, or newer than
+ * the delete, are not applied but handed back, for their records to be retried. The returned stage completes with
+ * them once the feedback records of the batch are acknowledged.
+ */
+@ApplicationScoped
+public final class ItemEventBatchProcessor
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(ItemEventBatchProcessor.class);
+
+    @Inject
+    FeedbackService feedbackService;
+
+    @Inject
+    FeedbackCounterService counterService;
+
+    @Inject
+    TaskStatusRepository repository;
+
+    @Inject
+    PipelineMetrics metrics;
+
+    public CompletionStage<List<ItemEvent>> process(final List<ItemEvent> events)
+    {
+        if (events.isEmpty())
+        {
+            return CompletableFuture.completedFuture(List.of());
+        }
+
+        // a poll comes from a single topic, its stage timers cover the whole batch
+        var stages = metrics.stages(events.get(0).getEvent());
+
+        // read rather than cached: the items' other topics may be consumed, and the items changed, elsewhere
+        var uids = events.stream().map(ItemEvent::getItemUid).collect(Collectors.toSet());
+        var current = stages.persist().record(() -> repository.findByUids(uids)).stream()
+                .collect(Collectors.toMap(TaskStatus::getUid, Function.identity(), (first, second) -> first,
+                        HashMap::new));
+        var stored = new HashMap<>(current);
+
+        var finalStates = new HashMap<String, TaskStatus>();
+        var deltasByUser = new HashMap<String, Contribution>();
+        var recounted = new HashSet<String>();
+        var parked = new ArrayList<ItemEvent>();
+        var lastByUser = new LinkedHashMap<String, UserFeedback>();
+        var applied = new ArrayList<ItemEvent>(events.size());
+
+        for (var event : events)
+        {
+            var prevStatus = current.get(event.getItemUid());
+            var before = Contribution.of(prevStatus);
+
+            TaskStatus nextStatus;
+            boolean completed;
+
+            switch (event.getEvent())
+            {
+                case "item-created" -> {
+                    if (FeedbackService.isStale(prevStatus, event.getTime()))
+                    {
+                        stale(event);
+                        continue;
+                    }
+                    if (FeedbackService.isApplied(prevStatus, event.getTime()))
+                    {
+                        recounted.add(event.getUserUid());
+                    }
+                    nextStatus = feedbackService.createStatus(event);
+                    completed = nextStatus.isCompleted();
+                }
+                case "item-updated" -> {
+                    var changedAt = FeedbackService.updatedAt(event);
+                    if (FeedbackService.isStale(prevStatus, changedAt))
+                    {
+                        stale(event);
+                        continue;
+                    }
+                    if (prevStatus == null || prevStatus.isDeleted())
+                    {
+                        // its create may still be on the way, e.g. through the retry topics
+                        parked.add(event);
+                        continue;
+                    }
+                    if (FeedbackService.isApplied(prevStatus, changedAt))
+                    {
+                        recounted.add(event.getUserUid());
+                    }
+                    nextStatus = feedbackService.updateStatus(event, prevStatus);
+                    completed = nextStatus.isCompleted();
+                }
+                case "item-deleted" -> {
+                    if (prevStatus == null || prevStatus.isDeleted())
+                    {
+                        if (prevStatus == null)
+                        {
+                            LOGGER.warn("Skipping delete of unknown item {}", event.getItemUid());
+                            // still leaves its tombstone, as the single event path does
+                            var tombstone = TaskStatus.tombstone(event.getItemUid(), event.getTime());
+                            current.put(event.getItemUid(), tombstone);
+                            finalStates.put(event.getItemUid(), tombstone);
+                        } else if (prevStatus == stored.get(event.getItemUid())
+                                && prevStatus.getUpdatedAt() == event.getTime())
+                        {
+                            // deleted by an attempt that failed before moving the counters; no feedback again
+                            deltasByUser.putIfAbsent(event.getUserUid(), Contribution.NONE);
+                            recounted.add(event.getUserUid());
+                        }
+                        metrics.stages(event.getEvent()).skipped().increment();
+                        continue;
+                    }
+                    if (FeedbackService.isStale(prevStatus, event.getTime()))
+                    {
+                        stale(event);
+                        continue;
+                    }
+                    nextStatus = TaskStatus.tombstone(event.getItemUid(), event.getTime());
+                    completed = prevStatus.isCompleted();
+                }
+                default -> {
+                    LOGGER.warn("Skipping unknown event type {}", event.getEvent());
+                    metrics.stages(event.getEvent()).skipped().increment();
+                    continue;
+                }
+            }
+
+            current.put(event.getItemUid(), nextStatus);
+            finalStates.put(event.getItemUid(), nextStatus);
+            deltasByUser.merge(event.getUserUid(), Contribution.of(nextStatus).minus(before), Contribution::plus);
+            lastByUser.put(event.getUserUid(), new UserFeedback(event.getEvent(), completed));
+            applied.add(event);
+        }
+
+        stages.persist().record(() -> repository.bulkApply(finalStates, uids));
+
+        LOGGER.debug("Applied {} events to {} items of {} users", events.size(), finalStates.size(),
+                lastByUser.size());
+
+        var userCounters = stages.count().record(() -> counterService.trackAll(deltasByUser, recounted));
+
+        // one feedback per user and batch, reflecting the user's last event in it
+        var acks = new ArrayList<CompletableFuture<Void>>(userCounters.size());
+        stages.emit().record(() -> {
+            for (var counters : userCounters)
+            {
+                var last = lastByUser.get(counters.getUserUid());
+                if (last != null)
+                {
+                    acks.add(feedbackService.feedback(counters.getUserUid(), last.eventType(), last.completed(),
+                            counters.getPriorityCount(), counters.getCompletedCount(), counters.getVersion())
+                            .toCompletableFuture());
+                }
+            }
+        });
+
+        applied.forEach(event -> metrics.stages(event.getEvent()).processed().increment());
+        return CompletableFuture.allOf(acks.toArray(new CompletableFuture<?>[0])).thenApply(ignored -> parked);
+    }
+
+    private void stale(final ItemEvent event)
+    {
+        LOGGER.debug("Dropping stale {} of item {}", event.getEvent(), event.getItemUid());
+        metrics.stages(event.getEvent()).stale().increment();
+    }
+
+    private record UserFeedback(String eventType, boolean completed)
+    {
+    }
+}
@@ -0,0 +1,204 @@
+package task.service.services;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import task.service.cache.TaskStateCache;
+import task.service.metrics.PipelineMetrics;
+import task.service.metrics.PipelineMetrics.Stages;
+import task.service.models.TaskStatus;
+import task.service.models.UserFeedbackCounters;
+import task.service.models.messages.ItemEvent;
+import task.service.repos.TaskStatusRepository;
+import task.service.services.FeedbackCounterService.Contribution;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Supplier;
+
+/**
+ * Blocking processing of a single item event, shared by the consumers that hand over one record at a time. Each event
+ * costs two Mongo round trips: one that changes the item and returns its previous state, and one that moves the
+ * user's counters and returns the new counts. With the previous state in {@link TaskStateCache}, an update does not
+ * have to return anything: it only applies while the stored item is still as cached, and otherwise falls back to the
+ * returning update.
+ *
+ * <p>
+ * Creates and updates older than the stored item are dropped as stale: against the cached state without any round
+ * trip, otherwise by the write itself, which only applies where the stored item is not newer. One as old as the stored
+ * item was applied before, e.g. by an attempt that failed before moving the counters, so it counts the user's tasks
+ * instead of moving them.
+ *
+ * <p>
+ * Deleted items leave a tombstone in their place, so that a create or update of a deleted item arriving late, e.g.
+ * from a retry topic, is dropped as stale by the same write. An update of an item that is neither stored nor deleted
+ * fails, as does one newer than the delete, so its record goes to the retry topics until the item's create has
+ * arrived.
+ *
+ * <p>
+ * The Mongo work is done when a method returns; the returned stage completes once the feedback records are
+ * acknowledged, which is when the event's record may be acked.
+ */
+@ApplicationScoped
+public final class ItemEventProcessor
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(ItemEventProcessor.class);
+
+    @Inject
+    FeedbackService feedbackService;
+
+    @Inject
+    FeedbackCounterService counterService;
+
+    @Inject
+    TaskStatusRepository repository;
+
+    @Inject
+    TaskStateCache stateCache;
+
+    @Inject
+    PipelineMetrics metrics;
+
+    public CompletionStage<Void> created(final ItemEvent event)
+    {
+        var stages = metrics.stages(event.getEvent());
+        var taskStatus = feedbackService.createStatus(event);
+        if (FeedbackService.isStale(stateCache.item(event.getItemUid()), event.getTime()))
+        {
+            return stale(stages, event);
+        }
+
+        var prevStatus = write(stages, event, () -> repository.upsertReturningPrevious(taskStatus));
+        if (FeedbackService.isStale(prevStatus, event.getTime()))
+        {
+            stateCache.putItem(prevStatus);
+            return stale(stages, event);
+        }
+        stateCache.putItem(taskStatus);
+
+        var counters = counters(stages, event.getUserUid(), Contribution.of(prevStatus),
+                Contribution.of(taskStatus), FeedbackService.isApplied(prevStatus, event.getTime()));
+
+        return feedback(stages, event, taskStatus.isCompleted(), counters);
+    }
+
+    public CompletionStage<Void> updated(final ItemEvent event)
+    {
+        var stages = metrics.stages(event.getEvent());
+        var changes = feedbackService.updateStatus(event, new TaskStatus());
+        var changedAt = FeedbackService.updatedAt(event);
+        var prevStatus = stateCache.item(event.getItemUid());
+
+        if (FeedbackService.isStale(prevStatus, changedAt))
+        {
+            return stale(stages, event);
+        }
+
+        if (prevStatus != null && !prevStatus.isDeleted())
+        {
+            var expected = prevStatus;
+            if (!write(stages, event, () -> repository.updateIfUnchanged(expected, changes)))
+            {
+                // gone, archived, or changed by an event the cache has not seen: the item itself tells which
+                prevStatus = null;
+            }
+        }
+
+        if (prevStatus == null || prevStatus.isDeleted())
+        {
+            prevStatus = write(stages, event, () -> repository.updateReturningPrevious(event.getItemUid(), changes));
+            if (FeedbackService.isStale(prevStatus, changedAt))
+            {
+                stateCache.putItem(prevStatus);
+                return stale(stages, event);
+            }
+        }
+
+        if (prevStatus == null || prevStatus.isDeleted())
+        {
+            stateCache.invalidateItem(event.getItemUid());
+            // its create may still be on the way, e.g. through the retry topics
+            throw new IllegalStateException("Update of unknown item " + event.getItemUid());
+        }
+
+        var before = Contribution.of(prevStatus);
+        var applied = FeedbackService.isApplied(prevStatus, changedAt);
+        // the cached status may be read by others meanwhile
+        var updatedStatus = feedbackService.updateStatus(event, prevStatus.copy());
+        stateCache.putItem(updatedStatus);
+
+        var counters = counters(stages, event.getUserUid(), before, Contribution.of(updatedStatus), applied);
+
+        return feedback(stages, event, updatedStatus.isCompleted(), counters);
+    }
+
+    public CompletionStage<Void> deleted(final ItemEvent event)
+    {
+        var stages = metrics.stages(event.getEvent());
+        var statusToBeDeleted = write(stages, event,
+                () -> repository.deleteReturningPrevious(event.getItemUid(), event.getTime()));
+        stateCache.invalidateItem(event.getItemUid());
+
+        if (statusToBeDeleted == null || statusToBeDeleted.isDeleted())
+        {
+            if (statusToBeDeleted != null && statusToBeDeleted.getUpdatedAt() == event.getTime())
+            {
+                // deleted by an attempt that failed before moving the counters; its feedback is not sent again
+                stages.count().record(() -> counterService.recount(event.getUserUid()));
+            } else
+            {
+                LOGGER.warn("Skipping delete of unknown item {}", event.getItemUid());
+            }
+            stages.skipped().increment();
+            return CompletableFuture.completedFuture(null);
+        }
+        if (FeedbackService.isStale(statusToBeDeleted, event.getTime()))
+        {
+            // the item was changed after the delete, e.g. recreated, and is kept
+            return stale(stages, event);
+        }
+
+        var counters = counters(stages, event.getUserUid(), Contribution.of(statusToBeDeleted), Contribution.NONE,
+                false);
+
+        return feedback(stages, event, statusToBeDeleted.isCompleted(), counters);
+    }
+
+    private static CompletionStage<Void> stale(final Stages stages, final ItemEvent event)
+    {
+        LOGGER.debug("Dropping stale {} of item {}", event.getEvent(), event.getItemUid());
+        stages.stale().increment();
+        return CompletableFuture.completedFuture(null);
+    }
+
+    private CompletionStage<Void> feedback(final Stages stages, final ItemEvent event, final boolean completed,
+            final UserFeedbackCounters counters)
+    {
+        var acked = stages.emit().record(() -> feedbackService.feedback(event.getUserUid(), event.getEvent(),
+                completed, counters.getPriorityCount(), counters.getCompletedCount(), counters.getVersion()));
+        stages.processed().increment();
+        return acked;
+    }
+
+    // an event applied again may have failed before its increment last time, so its user is counted
+    private UserFeedbackCounters counters(final Stages stages, final String userUid, final Contribution before,
+            final Contribution after, final boolean applied)
+    {
+        return stages.count().record(() -> applied ? counterService.recount(userUid)
+                : counterService.track(userUid, before, after));
+    }
+
+    private <T> T write(final Stages stages, final ItemEvent event, final Supplier<T> write)
+    {
+        try
+        {
+            return stages.persist().record(write);
+        } catch (final RuntimeException e)
+        {
+            // the write may or may not have been applied
+            stateCache.invalidateItem(event.getItemUid());
+            throw e;
+        }
+    }
+}
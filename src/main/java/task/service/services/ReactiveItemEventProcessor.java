@@ -0,0 +1,137 @@
+package task.service.services;
+
+import io.smallrye.mutiny.Uni;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import task.service.metrics.PipelineMetrics;
+import task.service.metrics.PipelineMetrics.Stages;
+import task.service.models.TaskStatus;
+import task.service.models.UserFeedbackCounters;
+import task.service.models.messages.ItemEvent;
+import task.service.repos.ReactiveTaskStatusRepository;
+import task.service.services.FeedbackCounterService.Contribution;
+
+import static task.service.metrics.PipelineMetrics.time;
+
+/**
+ * Non-blocking counterpart of {@link ItemEventProcessor}: the same two round trips per event, composed on
+ * {@link ReactiveTaskStatusRepository} so no thread waits on Mongo or on the feedback acks, and the same tombstones.
+ * Without a cache in front, stale events are only recognised by the conditional write.
+ */
+@ApplicationScoped
+public final class ReactiveItemEventProcessor
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(ReactiveItemEventProcessor.class);
+
+    @Inject
+    FeedbackService feedbackService;
+
+    @Inject
+    FeedbackCounterService counterService;
+
+    @Inject
+    ReactiveTaskStatusRepository repository;
+
+    @Inject
+    PipelineMetrics metrics;
+
+    public Uni<Void> created(final ItemEvent event)
+    {
+        var stages = metrics.stages(event.getEvent());
+        var taskStatus = feedbackService.createStatus(event);
+
+        return time(stages.persist(), () -> repository.upsertReturningPrevious(taskStatus))
+                .chain(prevStatus -> {
+                    if (FeedbackService.isStale(prevStatus, event.getTime()))
+                    {
+                        return stale(stages, event);
+                    }
+
+                    return counters(stages, event.getUserUid(), Contribution.of(prevStatus),
+                            Contribution.of(taskStatus), FeedbackService.isApplied(prevStatus, event.getTime()))
+                            .chain(counters -> feedback(stages, event, taskStatus.isCompleted(), counters));
+                });
+    }
+
+    public Uni<Void> updated(final ItemEvent event)
+    {
+        var stages = metrics.stages(event.getEvent());
+        var changes = feedbackService.updateStatus(event, new TaskStatus());
+
+        return time(stages.persist(), () -> repository.updateReturningPrevious(event.getItemUid(), changes))
+                .chain(prevStatus -> {
+                    if (FeedbackService.isStale(prevStatus, changes.getUpdatedAt()))
+                    {
+                        return stale(stages, event);
+                    }
+                    if (prevStatus == null || prevStatus.isDeleted())
+                    {
+                        // its create may still be on the way, e.g. through the retry topics
+                        return Uni.createFrom()
+                                .failure(new IllegalStateException("Update of unknown item " + event.getItemUid()));
+                    }
+
+                    var before = Contribution.of(prevStatus);
+                    var applied = FeedbackService.isApplied(prevStatus, changes.getUpdatedAt());
+                    var updatedStatus = feedbackService.updateStatus(event, prevStatus);
+
+                    return counters(stages, event.getUserUid(), before, Contribution.of(updatedStatus), applied)
+                            .chain(counters -> feedback(stages, event, updatedStatus.isCompleted(), counters));
+                });
+    }
+
+    public Uni<Void> deleted(final ItemEvent event)
+    {
+        var stages = metrics.stages(event.getEvent());
+
+        return time(stages.persist(), () -> repository.deleteReturningPrevious(event.getItemUid(), event.getTime()))
+                .chain(statusToBeDeleted -> {
+                    if (statusToBeDeleted == null || statusToBeDeleted.isDeleted())
+                    {
+                        stages.skipped().increment();
+                        if (statusToBeDeleted != null && statusToBeDeleted.getUpdatedAt() == event.getTime())
+                        {
+                            // deleted by an attempt that failed before moving the counters
+                            return time(stages.count(), () -> counterService.recountAsync(event.getUserUid()))
+                                    .replaceWithVoid();
+                        }
+                        LOGGER.warn("Skipping delete of unknown item {}", event.getItemUid());
+                        return Uni.createFrom().voidItem();
+                    }
+                    if (FeedbackService.isStale(statusToBeDeleted, event.getTime()))
+                    {
+                        // the item was changed after the delete, e.g. recreated, and is kept
+                        return stale(stages, event);
+                    }
+
+                    return time(stages.count(), () -> counterService.trackAsync(event.getUserUid(),
+                            Contribution.of(statusToBeDeleted), Contribution.NONE))
+                            .chain(counters -> feedback(stages, event, statusToBeDeleted.isCompleted(), counters));
+                });
+    }
+
+    private static Uni<Void> stale(final Stages stages, final ItemEvent event)
+    {
+        LOGGER.debug("Dropping stale {} of item {}", event.getEvent(), event.getItemUid());
+        stages.stale().increment();
+        return Uni.createFrom().voidItem();
+    }
+
+    // an event applied again may have failed before its increment last time, so its user is counted
+    private Uni<UserFeedbackCounters> counters(final Stages stages, final String userUid, final Contribution before,
+            final Contribution after, final boolean applied)
+    {
+        return time(stages.count(), () -> applied ? counterService.recountAsync(userUid)
+                : counterService.trackAsync(userUid, before, after));
+    }
+
+    private Uni<Void> feedback(final Stages stages, final ItemEvent event, final boolean completed,
+            final UserFeedbackCounters counters)
+    {
+        return time(stages.emit(), () -> feedbackService.feedbackAsync(event.getUserUid(), event.getEvent(),
+                completed, counters.getPriorityCount(), counters.getCompletedCount(), counters.getVersion()))
+                .invoke(() -> stages.processed().increment());
+    }
+}
@@ -0,0 +1,165 @@
+package task.service.streams;
+
+import org.apache.kafka.streams.processor.api.Processor;
+import org.apache.kafka.streams.processor.api.ProcessorContext;
+import org.apache.kafka.streams.processor.api.Record;
+import org.apache.kafka.streams.state.KeyValueStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import task.service.metrics.PipelineMetrics;
+import task.service.metrics.PipelineMetrics.Stages;
+import task.service.models.TaskStatus;
+import task.service.models.UserFeedbackCounters;
+import task.service.models.messages.FeedbackEvent;
+import task.service.models.messages.ItemEvent;
+import task.service.rules.DecisionTable;
+import task.service.services.FeedbackCounterService.Contribution;
+import task.service.services.FeedbackService;
+
+/**
+ * Applies item events, keyed by user, to the item and counter stores of the task and forwards the resulting feedback
+ * records, keyed by user. The same rules as {@link task.service.services.ItemEventProcessor}: updates and deletes of
+ * unknown items are skipped, creates and updates older than the stored item are dropped as stale, and deletes only
+ * move the priority feedback.
+ */
+final class ItemEventStreamProcessor implements Processor<String, ItemEvent, String, FeedbackEvent>
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(ItemEventStreamProcessor.class);
+
+    private final FeedbackService feedbackService;
+    private final MongoStateSink sink;
+    private final PipelineMetrics metrics;
+
+    private ProcessorContext<String, FeedbackEvent> context;
+    private KeyValueStore<String, TaskStatus> items;
+    private KeyValueStore<String, UserFeedbackCounters> counters;
+
+    ItemEventStreamProcessor(final FeedbackService feedbackService, final MongoStateSink sink,
+            final PipelineMetrics metrics)
+    {
+        this.feedbackService = feedbackService;
+        this.sink = sink;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void init(final ProcessorContext<String, FeedbackEvent> context)
+    {
+        this.context = context;
+        this.items = context.getStateStore(ItemEventTopology.ITEMS_STORE);
+        this.counters = context.getStateStore(ItemEventTopology.COUNTERS_STORE);
+    }
+
+    @Override
+    public void process(final Record<String, ItemEvent> record)
+    {
+        var event = record.value();
+        var stages = metrics.stages(event.getEvent());
+        var prevStatus = items.get(event.getItemUid());
+        var before = Contribution.of(prevStatus);
+
+        TaskStatus nextStatus;
+        boolean completed;
+
+        switch (event.getEvent())
+        {
+            case "item-created" -> {
+                if (FeedbackService.isStale(prevStatus, event.getTime()))
+                {
+                    stale(stages, event);
+                    return;
+                }
+                nextStatus = feedbackService.createStatus(event);
+                completed = nextStatus.isCompleted();
+            }
+            case "item-updated" -> {
+                if (prevStatus == null)
+                {
+                    skip(stages, "Skipping update of unknown item {}", event);
+                    return;
+                }
+                if (FeedbackService.isStale(prevStatus, FeedbackService.updatedAt(event)))
+                {
+                    stale(stages, event);
+                    return;
+                }
+                // stores hand out copies, so the stored status is only changed by the put below
+                nextStatus = feedbackService.updateStatus(event, prevStatus);
+                completed = nextStatus.isCompleted();
+            }
+            case "item-deleted" -> {
+                if (prevStatus == null)
+                {
+                    skip(stages, "Skipping delete of unknown item {}", event);
+                    return;
+                }
+                nextStatus = null;
+                completed = prevStatus.isCompleted();
+            }
+            default -> {
+                skip(stages, "Skipping unknown event type of item {}", event);
+                return;
+            }
+        }
+
+        if (nextStatus == null)
+        {
+            items.delete(event.getItemUid());
+        } else
+        {
+            items.put(event.getItemUid(), nextStatus);
+        }
+        sink.item(event.getItemUid(), nextStatus);
+
+        var userCounters = track(event.getUserUid(), before, Contribution.of(nextStatus));
+
+        for (var channel = 0; channel < DecisionTable.CHANNELS.size(); channel++)
+        {
+            var feedback = feedbackService.buildEvent(channel, event.getUserUid(), event.getEvent(), completed,
+                    userCounters.getPriorityCount(), userCounters.getCompletedCount());
+            if (feedback != null)
+            {
+                forward(record, feedback);
+            }
+        }
+
+        stages.processed().increment();
+    }
+
+    private UserFeedbackCounters track(final String userUid, final Contribution before, final Contribution after)
+    {
+        var userCounters = counters.get(userUid);
+        if (userCounters == null)
+        {
+            userCounters = new UserFeedbackCounters(userUid, 0, 0);
+        }
+
+        var delta = after.minus(before);
+        if (!delta.equals(Contribution.NONE))
+        {
+            userCounters.setPriorityCount(userCounters.getPriorityCount() + delta.priority());
+            userCounters.setCompletedCount(userCounters.getCompletedCount() + delta.completed());
+            counters.put(userUid, userCounters);
+            sink.counters(userCounters);
+        }
+
+        return userCounters;
+    }
+
+    private void forward(final Record<String, ItemEvent> record, final FeedbackEvent feedback)
+    {
+        context.forward(record.withKey(feedback.getUserUid()).withValue(feedback));
+    }
+
+    private static void stale(final Stages stages, final ItemEvent event)
+    {
+        LOGGER.debug("Dropping stale {} of item {}", event.getEvent(), event.getItemUid());
+        stages.stale().increment();
+    }
+
+    private static void skip(final Stages stages, final String message, final ItemEvent event)
+    {
+        LOGGER.warn(message, event.getItemUid());
+        stages.skipped().increment();
+    }
+}
@@ -0,0 +1,87 @@
+package task.service.streams;
+
+import io.quarkus.arc.properties.IfBuildProperty;
+import io.quarkus.kafka.client.serialization.ObjectMapperDeserializer;
+import io.quarkus.kafka.client.serialization.ObjectMapperSerde;
+import io.quarkus.kafka.client.serialization.ObjectMapperSerializer;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.inject.Produces;
+import jakarta.inject.Inject;
+import org.apache.kafka.common.serialization.Serde;
+import org.apache.kafka.common.serialization.Serdes;
+import org.apache.kafka.streams.StreamsBuilder;
+import org.apache.kafka.streams.Topology;
+import org.apache.kafka.streams.kstream.Consumed;
+import org.apache.kafka.streams.kstream.Named;
+import org.apache.kafka.streams.kstream.Produced;
+import org.apache.kafka.streams.kstream.Repartitioned;
+import org.apache.kafka.streams.state.Stores;
+import task.service.consumers.ItemEventDeserializer;
+import task.service.metrics.PipelineMetrics;
+import task.service.models.TaskStatus;
+import task.service.models.UserFeedbackCounters;
+import task.service.models.messages.FeedbackEvent;
+import task.service.models.messages.ItemEvent;
+import task.service.producers.FeedbackEncoder;
+import task.service.services.FeedbackService;
+
+import java.util.List;
+
+/**
+ * The {@code streams} consumer mode: a Kafka Streams topology instead of the {@code @Incoming} consumers. Item events
+ * of all three topics are re-keyed by user, so each task owns all items and the counters of its users. The items are a
+ * table per item uid in the {@value #ITEMS_STORE} store and the counters live in the {@value #COUNTERS_STORE} store,
+ * both local and backed by changelog topics. Nothing reads Mongo: {@link MongoStateSink} copies the state there
+ * behind the stream threads. Feedback records go to {@code feedback-completed} and {@code feedback-priority} as part
+ * of the topology's output, keyed by user.
+ *
+ * <p>
+ * The stores start out empty. Moving a running deployment to this mode means loading them first, e.g. by replaying
+ * the item topics from the start with a new application id.
+ */
+@ApplicationScoped
+@IfBuildProperty(name = "feedback.consumer.mode", stringValue = "streams")
+public final class ItemEventTopology
+{
+    public static final String ITEMS_STORE = "task-items";
+    public static final String COUNTERS_STORE = "user-counters";
+
+    static final List<String> ITEM_TOPICS = List.of("item-created", "item-updated", "item-deleted");
+
+    @Inject
+    FeedbackService feedbackService;
+
+    @Inject
+    MongoStateSink sink;
+
+    @Inject
+    PipelineMetrics metrics;
+
+    @Produces
+    public Topology buildTopology()
+    {
+        Serde<ItemEvent> itemEvents = Serdes.serdeFrom(new ObjectMapperSerializer<>(), new ItemEventDeserializer());
+        // written like the producer writes its records
+        Serde<FeedbackEvent> feedback = Serdes.serdeFrom((topic, event) -> FeedbackEncoder.encode(event),
+                new ObjectMapperDeserializer<>(FeedbackEvent.class));
+
+        var builder = new StreamsBuilder();
+        builder.addStateStore(Stores.keyValueStoreBuilder(Stores.persistentKeyValueStore(ITEMS_STORE),
+                Serdes.String(), new ObjectMapperSerde<>(TaskStatus.class)));
+        builder.addStateStore(Stores.keyValueStoreBuilder(Stores.persistentKeyValueStore(COUNTERS_STORE),
+                Serdes.String(), new ObjectMapperSerde<>(UserFeedbackCounters.class)));
+
+        builder.stream(ITEM_TOPICS, Consumed.with(Serdes.String(), itemEvents))
+                .filter((key, event) -> event != null && event.getUserUid() != null && event.getItemUid() != null,
+                        Named.as("known-events"))
+                .selectKey((key, event) -> event.getUserUid(), Named.as("by-user"))
+                .repartition(Repartitioned.with(Serdes.String(), itemEvents).withName("events-by-user"))
+                .process(() -> new ItemEventStreamProcessor(feedbackService, sink, metrics), Named.as("apply"),
+                        ITEMS_STORE, COUNTERS_STORE)
+                // each feedback record names its topic
+                .to((userUid, feedback, context) -> feedback.getEvent(),
+                        Produced.with(Serdes.String(), feedback));
+
+        return builder.build();
+    }
+}
@@ -0,0 +1,144 @@
+package task.service.streams;
+
+import io.quarkus.arc.properties.IfBuildProperty;
+import io.quarkus.runtime.ShutdownEvent;
+import io.quarkus.scheduler.Scheduled;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import task.service.models.TaskStatus;
+import task.service.models.UserFeedbackCounters;
+import task.service.repos.TaskStatusRepository;
+import task.service.repos.UserFeedbackCountersRepository;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Copies the state kept by the streams topology to Mongo behind the stream threads. Changes are collected per item and
+ * per user, so only the latest state of each is written, and flushed every {@code feedback.streams.sink.interval} as
+ * one bulk write per collection. A stream thread only flushes itself when more than
+ * {@code feedback.streams.sink.max-pending} items are waiting, which bounds the memory a slow Mongo can take.
+ *
+ * <p>
+ * In streams mode Mongo is a read model: the topology never reads it, and its state stores, backed by changelog
+ * topics, are the source of truth. Changes still pending here when the process dies are written once the item or user
+ * changes again; the counters reconciliation repairs the counters before that.
+ */
+@ApplicationScoped
+@IfBuildProperty(name = "feedback.consumer.mode", stringValue = "streams")
+public final class MongoStateSink
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(MongoStateSink.class);
+
+    @Inject
+    TaskStatusRepository taskRepository;
+
+    @Inject
+    UserFeedbackCountersRepository countersRepository;
+
+    @ConfigProperty(name = "feedback.streams.sink.max-pending")
+    int maxPending;
+
+    // held while writing, so an older state never lands after a newer one
+    private final Object writing = new Object();
+
+    // a null status deletes the item
+    private Map<String, TaskStatus> items = new HashMap<>();
+    private Map<String, UserFeedbackCounters> counters = new HashMap<>();
+
+    /**
+     * Queues the latest state of an item, {@code null} once it is deleted.
+     */
+    public void item(final String uid, final TaskStatus status)
+    {
+        boolean full;
+        synchronized (this)
+        {
+            items.put(uid, status);
+            full = items.size() > maxPending;
+        }
+
+        if (full)
+        {
+            LOGGER.debug("Mongo sink has more than {} pending items, flushing on the stream thread", maxPending);
+            flush();
+        }
+    }
+
+    public synchronized void counters(final UserFeedbackCounters userCounters)
+    {
+        counters.put(userCounters.getUserUid(), userCounters);
+    }
+
+    @Scheduled(every = "{feedback.streams.sink.interval}", skipExecutionIf = Scheduled.ApplicationNotRunning.class)
+    void scheduledFlush()
+    {
+        flush();
+    }
+
+    void onStop(@Observes final ShutdownEvent event)
+    {
+        flush();
+    }
+
+    /**
+     * Writes what is pending. A failed write is queued again, unless a newer state arrived in the meantime.
+     */
+    public void flush()
+    {
+        synchronized (writing)
+        {
+            Map<String, TaskStatus> pendingItems;
+            Map<String, UserFeedbackCounters> pendingCounters;
+            synchronized (this)
+            {
+                if (items.isEmpty() && counters.isEmpty())
+                {
+                    return;
+                }
+                pendingItems = items;
+                pendingCounters = counters;
+                items = new HashMap<>();
+                counters = new HashMap<>();
+            }
+
+            try
+            {
+                taskRepository.bulkApply(pendingItems);
+            } catch (final Exception e)
+            {
+                LOGGER.error("Failed to write {} items to Mongo, retrying with the next flush", pendingItems.size(), e);
+                synchronized (this)
+                {
+                    // not putIfAbsent: a pending delete maps to null
+                    pendingItems.forEach((uid, status) -> {
+                        if (!items.containsKey(uid))
+                        {
+                            items.put(uid, status);
+                        }
+                    });
+                }
+            }
+
+            try
+            {
+                if (!pendingCounters.isEmpty())
+                {
+                    countersRepository.persistOrUpdate(pendingCounters.values());
+                }
+            } catch (final Exception e)
+            {
+                LOGGER.error("Failed to write counters of {} users to Mongo, retrying with the next flush",
+                        pendingCounters.size(), e);
+                synchronized (this)
+                {
+                    pendingCounters.forEach(counters::putIfAbsent);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package task.service.consumers;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.smallrye.mutiny.Uni;
+import io.smallrye.reactive.messaging.kafka.KafkaClientService;
+import io.smallrye.reactive.messaging.kafka.KafkaConsumer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.*;
+
+public class AdaptiveConcurrencyTest
+{
+    private static final long SLOW = Duration.ofSeconds(1).toNanos();
+
+    private AdaptiveConcurrency concurrency;
+    private KafkaConsumer<Object, Object> consumer;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setup()
+    {
+        consumer = mock(KafkaConsumer.class);
+        when(consumer.pause()).thenReturn(Uni.createFrom().item(Set.of()));
+        when(consumer.resume()).thenReturn(Uni.createFrom().voidItem());
+
+        var kafka = mock(KafkaClientService.class);
+        when(kafka.getConsumer(anyString())).thenReturn(consumer);
+
+        concurrency = new AdaptiveConcurrency();
+        concurrency.kafka = kafka;
+        concurrency.registry = new SimpleMeterRegistry();
+        concurrency.enabled = true;
+        concurrency.minLimit = 2;
+        concurrency.maxLimit = 10;
+        concurrency.persistLatency = Duration.ofMillis(250);
+        concurrency.ackLatency = Duration.ofSeconds(2);
+        concurrency.backoff = 0.5;
+    }
+
+    @Test
+    void shrinksWhileMongoIsSlowAndGrowsBackOneByOne()
+    {
+        concurrency.init();
+
+        record(SLOW);
+        concurrency.adapt();
+        assertEquals(5, concurrency.limit());
+
+        record(SLOW);
+        concurrency.adapt();
+        assertEquals(2, concurrency.limit());
+
+        record(0);
+        concurrency.adapt();
+        assertEquals(3, concurrency.limit());
+
+        // no records, no change
+        concurrency.adapt();
+        assertEquals(3, concurrency.limit());
+    }
+
+    @Test
+    void pausesAtTheLimitAndResumesBelowIt()
+    {
+        concurrency.maxLimit = 2;
+        concurrency.init();
+
+        var first = concurrency.started();
+        concurrency.started();
+
+        assertTrue(concurrency.isPaused());
+        verify(consumer, times(AdaptiveConcurrency.CHANNELS.size())).pause();
+
+        concurrency.acked(concurrency.persisted(first));
+        concurrency.adapt();
+
+        assertFalse(concurrency.isPaused());
+        verify(consumer, times(AdaptiveConcurrency.CHANNELS.size())).resume();
+        assertEquals(1, concurrency.inFlight());
+    }
+
+    @Test
+    void pausesWhileStillSlowAtTheLowestLimit()
+    {
+        concurrency.maxLimit = 2;
+        concurrency.init();
+
+        record(SLOW);
+        concurrency.adapt();
+
+        assertEquals(0, concurrency.inFlight());
+        assertTrue(concurrency.isPaused());
+
+        // nothing came in while paused, so probe again
+        concurrency.adapt();
+        assertFalse(concurrency.isPaused());
+    }
+
+    private void record(final long persistNanos)
+    {
+        var startedAt = concurrency.started();
+        concurrency.acked(concurrency.persisted(startedAt - persistNanos));
+    }
+}
@@ -0,0 +1,33 @@
+package task.service.consumers;
+
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class DeadLetterReplayTest
+{
+    @Test
+    void replayDropsOnlyTheFailureHeaders()
+    {
+        var headers = new RecordHeaders();
+        headers.add("trace-id", bytes("abc"));
+        headers.add("dead-letter-reason", bytes("Mongo timed out"));
+        headers.add("dead-letter-topic", bytes("item-updated"));
+        headers.add("delayed-retry-topic.retry-count", bytes("2"));
+
+        var replayed = DeadLetterReplay.replayHeaders(headers).toArray();
+
+        assertEquals(1, replayed.length);
+        assertEquals("trace-id", replayed[0].key());
+        assertArrayEquals(bytes("abc"), replayed[0].value());
+    }
+
+    private static byte[] bytes(final String value)
+    {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
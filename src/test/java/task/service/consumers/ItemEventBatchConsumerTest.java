@@ -0,0 +1,136 @@
+package task.service.consumers;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.smallrye.reactive.messaging.kafka.KafkaRecord;
+import io.smallrye.reactive.messaging.kafka.KafkaRecordBatch;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import task.service.metrics.PipelineMetrics;
+import task.service.models.messages.ItemContent;
+import task.service.models.messages.ItemEvent;
+import task.service.services.ItemEventBatchProcessor;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@SuppressWarnings("unchecked")
+public class ItemEventBatchConsumerTest
+{
+    private ItemEventBatchConsumer consumer;
+    private ItemEventBatchProcessor batchProcessor;
+    private RedeliveryFilter redeliveries;
+    private AdaptiveConcurrency concurrency;
+
+    @BeforeEach
+    void setup()
+    {
+        batchProcessor = mock(ItemEventBatchProcessor.class);
+        redeliveries = mock(RedeliveryFilter.class);
+        concurrency = mock(AdaptiveConcurrency.class);
+
+        consumer = new ItemEventBatchConsumer();
+        consumer.batchProcessor = batchProcessor;
+        consumer.redeliveries = redeliveries;
+        consumer.concurrency = concurrency;
+        consumer.metrics = new PipelineMetrics(new SimpleMeterRegistry());
+    }
+
+    @Test
+    void processedBatchIsAcked()
+    {
+        var record = record(1, event("item1"));
+        var batch = batch(record);
+        when(batchProcessor.process(any())).thenReturn(CompletableFuture.completedFuture(List.of()));
+
+        consumer.consumeCreated(batch);
+
+        verify(batch).ack();
+        verify(record, never()).nack(any());
+        verify(redeliveries).processed("item-created", 0, 1);
+        verify(concurrency).started(1);
+        verify(concurrency).acked(anyLong(), eq(1));
+    }
+
+    @Test
+    void batchWhoseFeedbackFailsIsNackedRecordByRecord()
+    {
+        var record = record(1, event("item1"));
+        var malformed = record(2, null);
+        var batch = batch(record, malformed);
+        var failure = new IllegalStateException("No room for feedback record");
+        when(batchProcessor.process(any())).thenReturn(CompletableFuture.failedFuture(failure));
+
+        consumer.consumeCreated(batch);
+
+        verify(record).nack(failure);
+        verify(record, never()).ack();
+        verify(malformed).ack();
+        verify(batch, never()).ack();
+        verify(redeliveries).processed("item-created", 0, 1);
+    }
+
+    @Test
+    void updatesOfUnknownItemsAreNackedAndTheRestAcked()
+    {
+        var unknownUpdate = event("item2");
+        var applied = record(1, event("item1"));
+        var unknown = record(2, unknownUpdate);
+        var batch = batch(applied, unknown);
+        when(batchProcessor.process(any())).thenReturn(CompletableFuture.completedFuture(List.of(unknownUpdate)));
+
+        consumer.consumeUpdated(batch);
+
+        verify(applied).ack();
+        verify(applied, never()).nack(any());
+        verify(unknown).nack(any(IllegalStateException.class));
+        verify(unknown, never()).ack();
+        verify(redeliveries).processed("item-created", 0, 1);
+        verify(redeliveries).processed("item-created", 0, 2);
+    }
+
+    @Test
+    void batchThatFailsToProcessIsNacked()
+    {
+        var first = record(1, event("item1"));
+        var second = record(2, event("item2"));
+        var batch = batch(first, second);
+        var failure = new IllegalStateException("Mongo timed out");
+        when(batchProcessor.process(any())).thenThrow(failure);
+
+        consumer.consumeCreated(batch);
+
+        verify(first).nack(failure);
+        verify(second).nack(failure);
+        verify(batch, never()).ack();
+    }
+
+    private static KafkaRecordBatch<String, ItemEvent> batch(final KafkaRecord<String, ItemEvent>... records)
+    {
+        KafkaRecordBatch<String, ItemEvent> batch = mock(KafkaRecordBatch.class);
+        when(batch.getRecords()).thenReturn(List.of(records));
+        when(batch.ack()).thenReturn(CompletableFuture.completedFuture(null));
+        return batch;
+    }
+
+    private static KafkaRecord<String, ItemEvent> record(final long offset, final ItemEvent event)
+    {
+        KafkaRecord<String, ItemEvent> record = mock(KafkaRecord.class);
+        when(record.getPayload()).thenReturn(event);
+        when(record.getTopic()).thenReturn("item-created");
+        when(record.getPartition()).thenReturn(0);
+        when(record.getOffset()).thenReturn(offset);
+        when(record.ack()).thenReturn(CompletableFuture.completedFuture(null));
+        when(record.nack(any())).thenReturn(CompletableFuture.completedFuture(null));
+        return record;
+    }
+
+    private static ItemEvent event(final String itemUid)
+    {
+        return new ItemEvent("item-created", itemUid, "user1", "task", new ItemContent(), 1000);
+    }
+}
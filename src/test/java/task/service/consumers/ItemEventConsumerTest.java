@@ -0,0 +1,92 @@
+package task.service.consumers;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.eclipse.microprofile.reactive.messaging.Message;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import task.service.metrics.PipelineMetrics;
+import task.service.models.messages.ItemContent;
+import task.service.models.messages.ItemEvent;
+import task.service.services.ItemEventProcessor;
+
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@SuppressWarnings("unchecked")
+public class ItemEventConsumerTest
+{
+    private ItemEventConsumer consumer;
+    private ItemEventProcessor processor;
+    private RedeliveryFilter redeliveries;
+
+    @BeforeEach
+    void setup()
+    {
+        processor = mock(ItemEventProcessor.class);
+        redeliveries = mock(RedeliveryFilter.class);
+
+        consumer = new ItemEventConsumer();
+        consumer.processor = processor;
+        consumer.redeliveries = redeliveries;
+        consumer.concurrency = mock(AdaptiveConcurrency.class);
+        consumer.metrics = new PipelineMetrics(new SimpleMeterRegistry());
+    }
+
+    @Test
+    void processedEventIsAcked()
+    {
+        var message = message(event("item-created"));
+        when(processor.created(any())).thenReturn(CompletableFuture.completedFuture(null));
+
+        consumer.consumeCreated(message);
+
+        verify(message).ack();
+        verify(message, never()).nack(any());
+        verify(redeliveries).processed(message);
+    }
+
+    @Test
+    void eventThatFailsIsNackedNotAcked()
+    {
+        var message = message(event("item-updated"));
+        var failure = new IllegalStateException("Update of unknown item item1");
+        when(processor.updated(any())).thenThrow(failure);
+
+        consumer.consumeUpdated(message);
+
+        verify(message).nack(failure);
+        verify(message, never()).ack();
+        verify(redeliveries).processed(message);
+        assertEquals(1.0, consumer.metrics.stages("item-updated").failed().count());
+    }
+
+    @Test
+    void eventWhoseFeedbackFailsIsNackedNotAcked()
+    {
+        var message = message(event("item-deleted"));
+        var failure = new IllegalStateException("No room for feedback record");
+        when(processor.deleted(any())).thenReturn(CompletableFuture.failedFuture(failure));
+
+        consumer.consumeDeleted(message);
+
+        verify(message).nack(failure);
+        verify(message, never()).ack();
+    }
+
+    private static Message<ItemEvent> message(final ItemEvent event)
+    {
+        Message<ItemEvent> message = mock(Message.class);
+        when(message.getPayload()).thenReturn(event);
+        when(message.ack()).thenReturn(CompletableFuture.completedFuture(null));
+        when(message.nack(any())).thenReturn(CompletableFuture.completedFuture(null));
+        return message;
+    }
+
+    private static ItemEvent event(final String type)
+    {
+        return new ItemEvent(type, "item1", "user1", "task", new ItemContent(), 1000);
+    }
+}
@@ -0,0 +1,100 @@
+package task.service.consumers;
+
+import io.quarkus.kafka.client.serialization.ObjectMapperSerializer;
+import org.apache.kafka.common.errors.SerializationException;
+import org.junit.jupiter.api.Test;
+import task.service.models.messages.ItemEvent;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ItemEventDeserializerTest
+{
+    private final ItemEventDeserializer deserializer = new ItemEventDeserializer();
+
+    @Test
+    void deserializeUpdateEvent()
+    {
+        var json = "{\"event\":\"item-updated\",\"itemUid\":\"item123\",\"userUid\":\"user456\",\"type\":\"task\","
+                + "\"content\":{\"title\":\"Buy milk\",\"priority\":true,\"completed\":false,\"time\":1621234567999,"
+                + "\"tags\":[\"a\",{\"b\":1}]},\"time\":1621234567890}";
+
+        var event = deserializer.deserialize("item-updated", bytes(json));
+
+        assertSame("item-updated", event.getEvent()); // known values are shared constants
+        assertEquals("item123", event.getItemUid());
+        assertEquals("user456", event.getUserUid());
+        assertEquals("task", event.getType());
+        assertEquals(1621234567890L, event.getTime());
+        assertTrue(event.getContent().isPriority());
+        assertFalse(event.getContent().isCompleted());
+        assertEquals(1621234567999L, event.getContent().getTime());
+    }
+
+    @Test
+    void readsBackWhatTheDeadLetterTopicHolds()
+    {
+        var json = "{\"event\":\"item-updated\",\"itemUid\":\"item123\",\"userUid\":\"user456\",\"type\":\"task\","
+                + "\"content\":{\"title\":\"Buy milk\",\"priority\":true,\"time\":1621234567999},"
+                + "\"time\":1621234567890}";
+        var event = deserializer.deserialize("item-updated", bytes(json));
+
+        // the failure strategies write the parsed event with the channel's serializer, not the original bytes
+        try (var serializer = new ObjectMapperSerializer<ItemEvent>())
+        {
+            var deadLetter = serializer.serialize("item-updated-dlq", event);
+
+            assertEquals(event, deserializer.deserialize("item-updated", deadLetter));
+        }
+    }
+
+    @Test
+    void missingContentFieldsDefaultToFalse()
+    {
+        var json = "{\"event\":\"item-deleted\",\"itemUid\":\"item123\",\"userUid\":\"user456\",\"time\":1}";
+
+        var event = deserializer.deserialize("item-deleted", bytes(json));
+
+        assertFalse(event.getContent().isPriority());
+        assertFalse(event.getContent().isCompleted());
+        assertNull(event.getContent().getTime());
+        assertNull(event.getType());
+    }
+
+    @Test
+    void structuredFlagsAreFalseAndSkipped()
+    {
+        var json = "{\"event\":\"item-updated\",\"content\":{\"priority\":{\"completed\":true},"
+                + "\"completed\":[true],\"time\":5},\"itemUid\":\"item123\",\"time\":1}";
+
+        var event = deserializer.deserialize("item-updated", bytes(json));
+
+        assertFalse(event.getContent().isPriority());
+        assertFalse(event.getContent().isCompleted());
+        assertEquals(5L, event.getContent().getTime());
+        assertEquals("item123", event.getItemUid());
+        assertEquals(1L, event.getTime());
+    }
+
+    @Test
+    void malformedRecordThrows()
+    {
+        assertThrows(SerializationException.class, () -> deserializer.deserialize("item-created", bytes("[1,2]")));
+        assertThrows(SerializationException.class,
+                () -> deserializer.deserialize("item-created", bytes("{\"event\":\"item-created\"")));
+        assertThrows(SerializationException.class,
+                () -> deserializer.deserialize("item-created", bytes("{\"time\":\"yesterday\"}")));
+    }
+
+    @Test
+    void nullRecordIsNull()
+    {
+        assertNull(deserializer.deserialize("item-created", null));
+    }
+
+    private static byte[] bytes(final String json)
+    {
+        return json.getBytes(StandardCharsets.UTF_8);
+    }
+}
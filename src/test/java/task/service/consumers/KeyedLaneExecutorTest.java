@@ -0,0 +1,119 @@
+package task.service.consumers;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class KeyedLaneExecutorTest
+{
+    // lanes are only started, never run, until runAll() is called
+    private final List<Runnable> started = new ArrayList<>();
+
+    @Test
+    void sameKeyRunsInOrderOnOneLane()
+    {
+        var executor = new KeyedLaneExecutor(started::add, () -> 4);
+        var order = new ArrayList<String>();
+
+        executor.submit("user1", () -> order.add("create"));
+        executor.submit("user1", () -> order.add("update"));
+        executor.submit("user1", () -> order.add("delete"));
+
+        assertEquals(1, started.size());
+        runAll();
+
+        assertEquals(List.of("create", "update", "delete"), order);
+        assertEquals(0, executor.keysInFlight());
+    }
+
+    @Test
+    void newKeyWaitsWhileAllLanesAreBusy()
+    {
+        var executor = new KeyedLaneExecutor(started::add, () -> 1);
+        var order = new ArrayList<String>();
+
+        var first = executor.submit("user1", () -> order.add("user1"));
+        var second = executor.submit("user2", () -> order.add("user2"));
+        var sameKey = executor.submit("user1", () -> order.add("user1 again"));
+
+        assertTrue(first.toCompletableFuture().isDone());
+        assertFalse(second.toCompletableFuture().isDone());
+        assertTrue(sameKey.toCompletableFuture().isDone()); // joins the existing lane
+
+        runAll();
+
+        assertTrue(second.toCompletableFuture().isDone());
+        assertEquals(List.of("user1", "user1 again", "user2"), order);
+    }
+
+    @Test
+    void taskQueuesBehindAWaitingTaskOfItsKey()
+    {
+        var executor = new KeyedLaneExecutor(started::add, () -> 1);
+        var order = new ArrayList<String>();
+
+        executor.submit("user1", () -> order.add("user1"));
+        executor.submit("user2", () -> order.add("user2 create"));
+        executor.submit("user3", () -> order.add("user3"));
+        executor.submit("user2", () -> order.add("user2 update"));
+
+        // user1 hands its lane to user2, while user2's update still waits behind user3
+        started.remove(0).run();
+        var delete = executor.submit("user2", () -> order.add("user2 delete"));
+
+        assertFalse(delete.toCompletableFuture().isDone());
+        runAll();
+
+        assertEquals(List.of("user1", "user2 create", "user3", "user2 update", "user2 delete"), order);
+        assertEquals(0, executor.keysInFlight());
+    }
+
+    @Test
+    void admitsNewKeysByTheCurrentLimit()
+    {
+        var limit = new AtomicInteger(2);
+        var executor = new KeyedLaneExecutor(started::add, limit::get);
+
+        executor.submit("user1", () -> {
+        });
+        limit.set(1);
+        var lowered = executor.submit("user2", () -> {
+        });
+        assertFalse(lowered.toCompletableFuture().isDone());
+
+        runAll();
+        assertTrue(lowered.toCompletableFuture().isDone());
+    }
+
+    @Test
+    void throwingTaskLeavesItsLaneRunning()
+    {
+        var executor = new KeyedLaneExecutor(started::add, () -> 1);
+        var order = new ArrayList<String>();
+
+        executor.submit("user1", () -> {
+            throw new IllegalStateException("failed");
+        });
+        executor.submit("user1", () -> order.add("user1 again"));
+        var other = executor.submit("user2", () -> order.add("user2"));
+
+        assertThrows(IllegalStateException.class, () -> started.remove(0).run());
+        runAll();
+
+        assertTrue(other.toCompletableFuture().isDone());
+        assertEquals(List.of("user1 again", "user2"), order);
+        assertEquals(0, executor.keysInFlight());
+    }
+
+    private void runAll()
+    {
+        while (!started.isEmpty())
+        {
+            started.remove(0).run();
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package task.service.consumers;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PartitionProgressTest
+{
+    @Test
+    void watermarkFollowsReceivedOrderAcrossGaps()
+    {
+        var progress = new PartitionProgress(-1, List.of());
+        assertTrue(progress.receive(10));
+        assertTrue(progress.receive(12)); // 11 was a transaction marker
+        assertTrue(progress.receive(13));
+
+        progress.done(12);
+        assertEquals(-1, progress.watermark());
+
+        progress.done(10);
+        assertEquals(12, progress.watermark());
+
+        progress.done(13);
+        assertEquals(13, progress.watermark());
+    }
+
+    @Test
+    void recognizesRedeliveriesFromStoredProgress()
+    {
+        var stored = new PartitionProgress(-1, List.of());
+        stored.receive(0);
+        stored.receive(1);
+        stored.receive(2);
+        stored.done(0);
+        stored.done(2);
+        var snapshot = stored.takeChanges("item-created-0");
+
+        assertEquals(0, snapshot.getWatermark());
+        assertEquals(List.of(2L), snapshot.getAhead());
+        assertNull(stored.takeChanges("item-created-0"));
+
+        // the next owner replays from the committed offset
+        var loaded = new PartitionProgress(snapshot.getWatermark(), snapshot.getAhead());
+        assertFalse(loaded.receive(0));
+        assertTrue(loaded.receive(1));
+        assertFalse(loaded.receive(2));
+        assertTrue(loaded.receive(3));
+
+        loaded.done(1);
+        loaded.done(3);
+        assertEquals(3, loaded.watermark());
+        assertEquals(List.of(), loaded.takeChanges("item-created-0").getAhead());
+    }
+}
@@ -0,0 +1,61 @@
+package task.service.consumers;
+
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import task.service.models.ProcessedOffsets;
+import task.service.repos.ProcessedOffsetsRepository;
+
+import java.util.Collection;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.*;
+
+public class RedeliveryFilterTest
+{
+    private static final TopicPartition PARTITION = new TopicPartition("item-created", 0);
+
+    private RedeliveryFilter filter;
+    private ProcessedOffsetsRepository repository;
+
+    @BeforeEach
+    void setup()
+    {
+        repository = mock(ProcessedOffsetsRepository.class);
+        when(repository.findByPartitions(anyCollection())).thenReturn(List.of());
+
+        filter = new RedeliveryFilter();
+        filter.repository = repository;
+        filter.enabled = true;
+    }
+
+    @Test
+    void recognizesProcessedRecordsOfHeldPartitions()
+    {
+        filter.assigned(List.of(PARTITION));
+
+        assertFalse(filter.isRedelivery("item-created", 0, 5));
+        filter.processed("item-created", 0, 5);
+
+        assertTrue(filter.isRedelivery("item-created", 0, 5));
+    }
+
+    @Test
+    void recordsFinishingAfterRevocationAreNeitherTrackedNorSaved()
+    {
+        filter.assigned(List.of(PARTITION));
+        assertFalse(filter.isRedelivery("item-created", 0, 5));
+        filter.revoked(List.of(PARTITION));
+
+        filter.processed("item-created", 0, 5);
+        filter.persist();
+
+        // the next owner's progress is left alone
+        assertFalse(filter.isRedelivery("item-created", 0, 5));
+        verify(repository, never()).saveAll(argThat((Collection<ProcessedOffsets> saved) -> !saved.isEmpty()));
+    }
+}
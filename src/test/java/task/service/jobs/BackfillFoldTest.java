@@ -0,0 +1,114 @@
+package task.service.jobs;
+
+import org.junit.jupiter.api.Test;
+import task.service.models.TaskStatus;
+import task.service.models.messages.ItemContent;
+import task.service.models.messages.ItemEvent;
+import task.service.services.FeedbackService;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class BackfillFoldTest
+{
+    private final BackfillFold fold = new BackfillFold(new FeedbackService());
+
+    @Test
+    void foldsEventsIntoFinalStateByEventTime()
+    {
+        fold.apply(event("item-created", "item1", new ItemContent(true, false, null), 1000));
+        fold.apply(event("item-updated", "item1", new ItemContent(false, true, null), 3000));
+        fold.apply(event("item-updated", "item1", new ItemContent(true, false, null), 2000));
+
+        var item = fold.drain().get("item1");
+        assertTrue(item.isCompleted());
+        assertFalse(item.isPriority());
+        assertEquals(3000, item.getUpdatedAt());
+        assertEquals(1, fold.stale());
+        assertEquals(0, fold.size());
+    }
+
+    @Test
+    void updateArrivingBeforeItsCreateIsAppliedOnCreate()
+    {
+        var update = event("item-updated", "item1", new ItemContent(false, true, null), 2000);
+        assertEquals(Set.of("item1"), fold.misses(List.of(update)));
+        fold.known(Set.of("item1"), List.of());
+
+        fold.apply(update);
+        assertEquals(1, fold.orphans());
+
+        fold.apply(event("item-created", "item1", new ItemContent(true, false, null), 1000));
+
+        var item = fold.drain().get("item1");
+        assertTrue(item.isCompleted());
+        assertEquals(1000, item.getCreatedAt());
+        assertEquals(0, fold.orphans());
+    }
+
+    @Test
+    void deleteKeepsLateCreateFromBringingItemBack()
+    {
+        fold.known(Set.of("item1"), List.of());
+        fold.apply(event("item-deleted", "item1", new ItemContent(), 2000));
+        fold.apply(event("item-created", "item1", new ItemContent(), 1000));
+
+        var finalStates = fold.drain();
+        assertTrue(finalStates.get("item1").isDeleted());
+        assertEquals(2000, finalStates.get("item1").getUpdatedAt());
+        assertEquals(1, fold.stale());
+    }
+
+    @Test
+    void deleteOutlivesItsChunk()
+    {
+        fold.known(Set.of("item1"), List.of());
+        fold.apply(event("item-deleted", "item1", new ItemContent(), 2000));
+        fold.drain();
+
+        var lateCreate = event("item-created", "item1", new ItemContent(), 2000);
+        var lateUpdate = event("item-updated", "item1", new ItemContent(true, false, null), 1500);
+        assertTrue(fold.misses(List.of(lateCreate, lateUpdate)).isEmpty());
+        fold.apply(lateCreate);
+        fold.apply(lateUpdate);
+
+        assertTrue(fold.drain().isEmpty());
+        assertEquals(2, fold.stale());
+        assertEquals(0, fold.orphans());
+    }
+
+    @Test
+    void storedTombstoneCountsAsDeleted()
+    {
+        fold.known(Set.of("item1"), List.of(TaskStatus.tombstone("item1", 2000)));
+        fold.apply(event("item-updated", "item1", new ItemContent(true, false, null), 3000));
+
+        assertTrue(fold.drain().isEmpty());
+        assertEquals(1, fold.skipped());
+        assertEquals(0, fold.orphans());
+    }
+
+    @Test
+    void onlyChangedItemsAreWritten()
+    {
+        var stored = new TaskStatus();
+        stored.setUid("item1");
+        stored.setUpdatedAt(5000L);
+        fold.known(Set.of("item1", "item2"), List.of(stored));
+
+        fold.apply(event("item-updated", "item1", new ItemContent(true, true, null), 4000));
+
+        assertTrue(fold.drain().isEmpty());
+        assertEquals(1, fold.stale());
+    }
+
+    private static ItemEvent event(final String type, final String itemUid, final ItemContent content,
+            final long time)
+    {
+        return new ItemEvent(type, itemUid, "user1", "task", content, time);
+    }
+}
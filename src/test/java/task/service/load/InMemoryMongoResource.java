@@ -0,0 +1,36 @@
+package task.service.load;
+
+import de.bwaldvogel.mongo.MongoServer;
+import de.bwaldvogel.mongo.backend.memory.MemoryBackend;
+import io.quarkus.test.common.QuarkusTestResourceLifecycleManager;
+
+import java.util.Map;
+
+/**
+ * Stands in for MongoDB with an in-process server speaking the wire protocol on a loopback port, so the real
+ * repositories run without a database or network access.
+ */
+public final class InMemoryMongoResource implements QuarkusTestResourceLifecycleManager
+{
+    private MongoServer server;
+
+    @Override
+    public Map<String, String> start()
+    {
+        server = new MongoServer(new MemoryBackend());
+        var address = server.bind();
+
+        return Map.of("quarkus.mongodb.connection-string",
+                "mongodb://" + address.getHostString() + ":" + address.getPort(), "quarkus.mongodb.database",
+                "feedback-load");
+    }
+
+    @Override
+    public void stop()
+    {
+        if (server != null)
+        {
+            server.shutdown();
+        }
+    }
+}
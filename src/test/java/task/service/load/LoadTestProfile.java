@@ -0,0 +1,48 @@
+package task.service.load;
+
+import io.quarkus.test.junit.QuarkusTestProfile;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Runs the application with every channel on the in-memory connector and MongoDB replaced by
+ * {@link InMemoryMongoResource}. Nothing in this profile needs a broker, a container or the network.
+ */
+public final class LoadTestProfile implements QuarkusTestProfile
+{
+    @Override
+    public Map<String, String> getConfigOverrides()
+    {
+        var config = new HashMap<String, String>();
+
+        for (var channel : List.of("created", "updated", "deleted"))
+        {
+            config.put("mp.messaging.incoming." + channel + ".connector", "smallrye-in-memory");
+        }
+        for (var channel : List.of("completed", "priority"))
+        {
+            config.put("mp.messaging.outgoing." + channel + ".connector", "smallrye-in-memory");
+        }
+
+        config.put("quarkus.http.port", "0");
+        config.put("quarkus.http.test-port", "0");
+        config.put("quarkus.kafka.devservices.enabled", "false");
+        config.put("quarkus.mongodb.devservices.enabled", "false");
+        config.put("kafka.bootstrap.servers", "localhost:9092");
+        config.put("quarkus.log.category.\"task.service\".level", "WARN");
+
+        // the stand-in server neither explains queries nor knows partial indexes
+        config.put("feedback.indexes.create", "false");
+        config.put("feedback.indexes.verify-plans", "false");
+
+        return config;
+    }
+
+    @Override
+    public List<TestResourceEntry> testResources()
+    {
+        return List.of(new TestResourceEntry(InMemoryMongoResource.class));
+    }
+}
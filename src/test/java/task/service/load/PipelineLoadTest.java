@@ -0,0 +1,115 @@
+package task.service.load;
+
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.junit.TestProfile;
+import io.smallrye.reactive.messaging.annotations.Connector;
+import io.smallrye.reactive.messaging.memory.InMemoryConnector;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.reactive.messaging.Message;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import task.service.models.messages.ItemEvent;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Drives a synthetic workload through the consumers and reports throughput and end-to-end latency, measured from
+ * handing a record to its channel until the record is acked, which happens once it is fully processed and its
+ * feedback sent. Excluded from {@code test}; run it with {@code ./gradlew loadTest}, tuning the workload with
+ * {@code -Pload.<setting>=<value>}.
+ */
+@QuarkusTest
+@TestProfile(LoadTestProfile.class)
+@Tag("load")
+public class PipelineLoadTest
+{
+    private static final int CLEAR_SINKS_EVERY = 1_000;
+
+    @Inject
+    @Connector("smallrye-in-memory")
+    InMemoryConnector connector;
+
+    @Test
+    void drive() throws InterruptedException
+    {
+        var events = Integer.getInteger("load.events", 100_000);
+        var warmup = Integer.getInteger("load.warmup", events / 10);
+        var users = Integer.getInteger("load.users", 1_000);
+        var tasksPerUser = Integer.getInteger("load.tasks-per-user", 50);
+        var mix = System.getProperty("load.mix", "20:75:5");
+        var skew = Double.parseDouble(System.getProperty("load.skew", "1.0"));
+        var timeoutSeconds = Long.getLong("load.timeout-seconds", 600);
+
+        var workload = new SyntheticWorkload(Long.getLong("load.seed", 42), users, tasksPerUser, mix, skew);
+        var sources = Map.of("item-created", connector.<Message<ItemEvent>>source("created"), "item-updated",
+                connector.<Message<ItemEvent>>source("updated"), "item-deleted",
+                connector.<Message<ItemEvent>>source("deleted"));
+
+        var latencies = new long[events];
+        var warmedUp = new CountDownLatch(warmup);
+        var measured = new CountDownLatch(events);
+        var failures = new AtomicInteger();
+        var startedAt = 0L;
+
+        for (var i = 0; i < warmup + events; i++)
+        {
+            if (i == warmup)
+            {
+                assertTrue(warmedUp.await(timeoutSeconds, TimeUnit.SECONDS), "warmup did not finish");
+                startedAt = System.nanoTime();
+            }
+
+            var event = workload.next();
+            var index = i - warmup;
+            var sentAt = System.nanoTime();
+            var done = index < 0 ? warmedUp : measured;
+
+            var message = Message.of(event).withAck(() -> {
+                if (index >= 0)
+                {
+                    latencies[index] = System.nanoTime() - sentAt;
+                }
+                done.countDown();
+                return CompletableFuture.completedFuture(null);
+            }).withNack(failure -> {
+                failures.incrementAndGet();
+                done.countDown();
+                return CompletableFuture.completedFuture(null);
+            });
+            sources.get(event.getEvent()).send(message);
+
+            if (i % CLEAR_SINKS_EVERY == 0)
+            {
+                connector.sink("completed").clear();
+                connector.sink("priority").clear();
+            }
+        }
+
+        assertTrue(measured.await(timeoutSeconds, TimeUnit.SECONDS), "workload did not finish");
+        var elapsedNanos = System.nanoTime() - startedAt;
+
+        Arrays.sort(latencies);
+        System.out.printf("%n=== load test: %d events, %d users, %d tasks/user, mix %s, skew %.2f ===%n", events, users,
+                tasksPerUser, mix, skew);
+        System.out.printf("throughput  %,.0f events/s%n", events / (elapsedNanos / 1e9));
+        System.out.printf("latency p50 %,.1f us | p99 %,.1f us | p999 %,.1f us | max %,.1f us%n",
+                percentile(latencies, 0.50), percentile(latencies, 0.99), percentile(latencies, 0.999),
+                latencies[latencies.length - 1] / 1e3);
+
+        assertEquals(0, failures.get(), "events failed");
+    }
+
+    private static double percentile(final long[] sorted, final double quantile)
+    {
+        var index = (int) Math.ceil(quantile * sorted.length) - 1;
+        return sorted[Math.max(0, index)] / 1e3;
+    }
+}
@@ -0,0 +1,89 @@
+package task.service.load;
+
+import task.service.models.messages.ItemContent;
+import task.service.models.messages.ItemEvent;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates a valid stream of item events: updates and deletes only target items that were created before. Users are
+ * picked from a Zipf distribution, so with a skew above 0 a few users produce most of the traffic, as in production.
+ */
+final class SyntheticWorkload
+{
+    private final Random random;
+    private final int tasksPerUser;
+    private final int createWeight;
+    private final int updateWeight;
+    private final int deleteWeight;
+    private final double[] userCdf;
+    private final List<List<String>> itemsByUser;
+    private long nextItem;
+    private long clock = 1_700_000_000_000L;
+
+    SyntheticWorkload(final long seed, final int users, final int tasksPerUser, final String mix, final double skew)
+    {
+        this.random = new Random(seed);
+        this.tasksPerUser = tasksPerUser;
+
+        var weights = mix.split(":");
+        this.createWeight = Integer.parseInt(weights[0]);
+        this.updateWeight = Integer.parseInt(weights[1]);
+        this.deleteWeight = Integer.parseInt(weights[2]);
+
+        this.userCdf = new double[users];
+        var sum = 0.0;
+        for (var i = 0; i < users; i++)
+        {
+            sum += 1.0 / Math.pow(i + 1, skew);
+            userCdf[i] = sum;
+        }
+        for (var i = 0; i < users; i++)
+        {
+            userCdf[i] /= sum;
+        }
+
+        this.itemsByUser = new ArrayList<>(users);
+        for (var i = 0; i < users; i++)
+        {
+            itemsByUser.add(new ArrayList<>());
+        }
+    }
+
+    ItemEvent next()
+    {
+        var user = pickUser();
+        var items = itemsByUser.get(user);
+        var userUid = "user-" + user;
+        clock += 1 + random.nextInt(5);
+
+        var roll = random.nextInt(createWeight + updateWeight + deleteWeight);
+        if (items.isEmpty() || (roll < createWeight && items.size() < tasksPerUser))
+        {
+            var itemUid = "item-" + nextItem++;
+            items.add(itemUid);
+            return event("item-created", itemUid, userUid);
+        }
+        if (roll < createWeight + updateWeight || items.size() == 1)
+        {
+            return event("item-updated", items.get(random.nextInt(items.size())), userUid);
+        }
+
+        return event("item-deleted", items.remove(random.nextInt(items.size())), userUid);
+    }
+
+    private ItemEvent event(final String type, final String itemUid, final String userUid)
+    {
+        var content = new ItemContent(random.nextInt(4) == 0, random.nextInt(3) == 0, null);
+        return new ItemEvent(type, itemUid, userUid, "task", content, clock);
+    }
+
+    private int pickUser()
+    {
+        var index = Arrays.binarySearch(userCdf, random.nextDouble());
+        return Math.min(index >= 0 ? index : -index - 1, userCdf.length - 1);
+    }
+}
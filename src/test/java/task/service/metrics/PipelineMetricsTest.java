@@ -0,0 +1,45 @@
+package task.service.metrics;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.smallrye.mutiny.Uni;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class PipelineMetricsTest
+{
+    private SimpleMeterRegistry registry;
+    private PipelineMetrics metrics;
+
+    @BeforeEach
+    void setup()
+    {
+        registry = new SimpleMeterRegistry();
+        metrics = new PipelineMetrics(registry);
+    }
+
+    @Test
+    void unknownTopicsShareOneSetOfMeters()
+    {
+        metrics.stages("item-renamed").skipped().increment();
+        metrics.stages(null).skipped().increment();
+
+        assertSame(metrics.stages("item-renamed"), metrics.stages("anything-else"));
+        assertEquals(2, registry.get(PipelineMetrics.EVENTS_COUNTER).tag("topic", PipelineMetrics.OTHER)
+                .tag("outcome", "skipped").counter().count());
+    }
+
+    @Test
+    void timesUniUntilItFails()
+    {
+        var timer = metrics.stages("item-created").persist();
+        var failing = PipelineMetrics.time(timer, () -> Uni.createFrom().failure(new IllegalStateException()));
+
+        assertEquals(0, timer.count());
+        assertThrows(IllegalStateException.class, () -> failing.await().indefinitely());
+        assertEquals(1, timer.count());
+    }
+}
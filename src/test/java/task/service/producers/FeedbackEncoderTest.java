@@ -0,0 +1,67 @@
+package task.service.producers;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import task.service.models.messages.FeedbackEvent;
+
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FeedbackEncoderTest
+{
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void writesWhatJacksonWrites() throws Exception
+    {
+        var encoder = new FeedbackEncoder("feedback-priority", "task");
+        var text = FeedbackEncoder.text("Warning! You have ", " priority items!");
+
+        for (var userUid : new String[] {"user-1", "quote\"back\\slash", "tab\tnew\nline\u0001", "Jürgen €",
+                "emoji 😀", "", null})
+        {
+            var encoded = encoder.encode(userUid, text, 7, 1718000000456L);
+
+            // the feedback id is random, so take the encoder's
+            var feedbackUid = objectMapper.readTree(encoded).get("feedbackUid").asText();
+            var expected = objectMapper.writeValueAsBytes(new FeedbackEvent("feedback-priority", feedbackUid, userUid,
+                    "task", "Warning! You have 7 priority items!", 1718000000456L));
+
+            assertEquals(new String(expected, StandardCharsets.UTF_8), new String(encoded, StandardCharsets.UTF_8));
+            assertArrayEquals(expected, encoded);
+        }
+    }
+
+    @Test
+    void writesConstantTextsAndNegativeNumbers() throws Exception
+    {
+        var encoder = new FeedbackEncoder("feedback-completed", "task");
+        var encoded = encoder.encode("user-1", FeedbackEncoder.text("I believe in you! Go do stuff!"), 3, -42);
+
+        var event = objectMapper.readValue(encoded, FeedbackEvent.class);
+        assertEquals("I believe in you! Go do stuff!", event.getFeedback());
+        assertEquals(-42, event.getTime());
+    }
+
+    @Test
+    void encodesAnyEventLikeJackson() throws Exception
+    {
+        var event = new FeedbackEvent("feedback-completed", "fb-1", "user-é", null, "Yes! \"Done\"", Long.MIN_VALUE);
+
+        assertArrayEquals(objectMapper.writeValueAsBytes(event), FeedbackEncoder.encode(event));
+    }
+
+    @Test
+    void feedbackIdsAreVersion4Uuids()
+    {
+        var first = FeedbackEncoder.randomUuid();
+        var uuid = UUID.fromString(first);
+
+        assertEquals(first, uuid.toString());
+        assertEquals(4, uuid.version());
+        assertEquals(2, uuid.variant());
+        assertNotEquals(first, FeedbackEncoder.randomUuid());
+    }
+}
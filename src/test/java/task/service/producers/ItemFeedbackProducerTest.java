@@ -1,16 +1,23 @@
 package task.service.producers;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import io.smallrye.reactive.messaging.kafka.KafkaRecord;
 import org.eclipse.microprofile.reactive.messaging.Emitter;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
-import task.service.models.messages.FeedbackEvent;
+import task.service.metrics.PipelineMetrics;
 
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.*;
 
 @SuppressWarnings("unchecked")
@@ -18,9 +25,8 @@ public class ItemFeedbackProducerTest
 {
 
     private ItemFeedbackProducer producer;
-    private Emitter<String> itemCompletedEmitterMock;
-    private Emitter<String> itemPriorityEmitterMock;
-    private ObjectMapper objectMapperMock;
+    private Emitter<byte[]> itemCompletedEmitterMock;
+    private Emitter<byte[]> itemPriorityEmitterMock;
 
     @BeforeEach
     void setUp()
@@ -29,97 +35,147 @@ public class ItemFeedbackProducerTest
 
         itemCompletedEmitterMock = mock(Emitter.class);
         itemPriorityEmitterMock = mock(Emitter.class);
-        objectMapperMock = mock(ObjectMapper.class);
 
         producer.setItemCompletedEmitter(itemCompletedEmitterMock);
         producer.setItemPriorityEmitter(itemPriorityEmitterMock);
-        producer.setObjectMapper(objectMapperMock);
+        producer.setMetrics(new PipelineMetrics(new SimpleMeterRegistry()));
+        producer.setMaxInFlight(1);
+        producer.setSendTimeout(Duration.ofMillis(10));
     }
 
     @Test
-    void sendItemCompletedEvent() throws JsonProcessingException
+    void sendItemCompletedEvent()
     {
-        // verify serialization and being sent correctly
+        // verify the record being sent as it is
 
         // Arrange
         var key = "completedKey";
-        var event = new FeedbackEvent("completed", "fb-123-456", "user-123", "task", "Completed!",
-                System.currentTimeMillis());
-
-        var serializedEvent = "{\"event\":\"completed\",\"feedbackUid\":\"fb-123-456\",\"userUid\":\"user-789\",\"type\":\"task\",\"feedback\":\"Completed!\",\"time\":1621234567890}";
-
-        when(objectMapperMock.writeValueAsString(event)).thenReturn(serializedEvent);
+        var serializedEvent = bytes("{\"event\":\"completed\",\"feedbackUid\":\"fb-123-456\",\"userUid\":\"user-789\","
+                + "\"type\":\"task\",\"feedback\":\"Completed!\",\"time\":1621234567890}");
 
         // Act
-        producer.sendItemCompletedEvent(key, event);
+        var sent = producer.sendItemCompletedEvent(key, serializedEvent).toCompletableFuture();
 
         // Assert
-        ArgumentCaptor<KafkaRecord<String, String>> recordCaptor = ArgumentCaptor.forClass(KafkaRecord.class);
+        ArgumentCaptor<KafkaRecord<String, byte[]>> recordCaptor = ArgumentCaptor.forClass(KafkaRecord.class);
         verify(itemCompletedEmitterMock).send(recordCaptor.capture());
 
-        KafkaRecord<String, String> capturedRecord = recordCaptor.getValue();
+        KafkaRecord<String, byte[]> capturedRecord = recordCaptor.getValue();
         assertEquals(key, capturedRecord.getKey());
-        assertEquals(serializedEvent, capturedRecord.getPayload());
+        assertArrayEquals(serializedEvent, capturedRecord.getPayload());
 
+        // completes with the Kafka ack
+        assertFalse(sent.isDone());
+        capturedRecord.ack();
+        assertTrue(sent.isDone());
+        assertFalse(sent.isCompletedExceptionally());
     }
 
     @Test
-    void sendItemCompletedEvent_shouldThrow() throws JsonProcessingException
+    void sendItemCompletedEvent_shouldFail()
     {
         // Arrange
         var key = "completedKey";
-        FeedbackEvent event = new FeedbackEvent("completed", "fb-123-456", "user-234", "task", "Feedback",
-                System.currentTimeMillis());
-
-        when(objectMapperMock.writeValueAsString(event)).thenThrow(new JsonProcessingException("Test exception") {
-        });
+        doThrow(new IllegalStateException("Channel terminated")).when(itemCompletedEmitterMock)
+                .send(any(KafkaRecord.class));
 
         // Act & Assert
-        assertThrows(RuntimeException.class, () -> producer.sendItemCompletedEvent(key, event));
+        assertTrue(producer.sendItemCompletedEvent(key, bytes("{}")).toCompletableFuture().isCompletedExceptionally());
 
-        verify(itemCompletedEmitterMock, never()).send(any(KafkaRecord.class));
+        // the rejected record gives its slot back
+        assertEquals(0, producer.inFlight());
     }
 
     @Test
-    void sendItemPriorityEvent() throws JsonProcessingException
+    void sendItemPriorityEvent()
     {
-        // verify serialization and being sent correctly
+        // verify the record being sent as it is
 
         // Arrange
         var key = "priorityKey";
-        FeedbackEvent event = new FeedbackEvent("priority", "fb-789-012", "user-345", "priority", "High priority",
-                System.currentTimeMillis());
-
-        var serializedEvent = "{\"event\":\"priority\",\"feedbackUid\":\"fb-789-012\",\"userUid\":\"user-345\",\"type\":\"priority\",\"feedback\":\"High priority\",\"time\":1621234567890}";
-
-        when(objectMapperMock.writeValueAsString(event)).thenReturn(serializedEvent);
+        var serializedEvent = bytes("{\"event\":\"priority\",\"feedbackUid\":\"fb-789-012\",\"userUid\":\"user-345\","
+                + "\"type\":\"priority\",\"feedback\":\"High priority\",\"time\":1621234567890}");
 
         // Act
-        producer.sendItemPriorityEvent(key, event);
+        var sent = producer.sendItemPriorityEvent(key, serializedEvent).toCompletableFuture();
 
         // Assert
-        ArgumentCaptor<KafkaRecord<String, String>> recordCaptor = ArgumentCaptor.forClass(KafkaRecord.class);
+        ArgumentCaptor<KafkaRecord<String, byte[]>> recordCaptor = ArgumentCaptor.forClass(KafkaRecord.class);
         verify(itemPriorityEmitterMock).send(recordCaptor.capture());
 
-        KafkaRecord<String, String> capturedRecord = recordCaptor.getValue();
+        KafkaRecord<String, byte[]> capturedRecord = recordCaptor.getValue();
         assertEquals(key, capturedRecord.getKey());
-        assertEquals(serializedEvent, capturedRecord.getPayload());
+        assertArrayEquals(serializedEvent, capturedRecord.getPayload());
+
+        // fails with the Kafka nack
+        capturedRecord.nack(new IllegalStateException("rejected"));
+        assertTrue(sent.isCompletedExceptionally());
     }
 
     @Test
-    void sendItemPriorityEvent_shouldThrow() throws JsonProcessingException
+    void sendItemPriorityEvent_shouldFail()
     {
         // Arrange
         var key = "priorityKey";
-        FeedbackEvent event = new FeedbackEvent("priority", "fb-123-456", "user-456", "task", "Feedback",
-                System.currentTimeMillis());
+        doThrow(new IllegalStateException("Buffer full")).when(itemPriorityEmitterMock).send(any(KafkaRecord.class));
+
+        // Act & Assert
+        assertTrue(producer.sendItemPriorityEvent(key, bytes("{}")).toCompletableFuture().isCompletedExceptionally());
+        assertEquals(0, producer.inFlight());
+    }
+
+    @Test
+    void sendWaitsForRoomWithoutBlocking()
+    {
+        // Arrange
+        var event = bytes("{}");
+        producer.setSendTimeout(Duration.ofSeconds(30));
 
-        when(objectMapperMock.writeValueAsString(event)).thenThrow(new JsonProcessingException("Test exception") {
-        });
+        ArgumentCaptor<KafkaRecord<String, byte[]>> recordCaptor = ArgumentCaptor.forClass(KafkaRecord.class);
+        producer.sendItemPriorityEvent("key", event);
+
+        // Act
+        var waiting = producer.sendItemPriorityEvent("key", event).toCompletableFuture();
+
+        // Assert: returned at once, the record goes out when the first one is acked
+        verify(itemPriorityEmitterMock, times(1)).send(recordCaptor.capture());
+        assertFalse(waiting.isDone());
+
+        recordCaptor.getValue().ack();
+        verify(itemPriorityEmitterMock, times(2)).send(recordCaptor.capture());
+        assertEquals(1, producer.inFlight());
+
+        recordCaptor.getValue().ack();
+        assertTrue(waiting.isDone());
+        assertFalse(waiting.isCompletedExceptionally());
+        assertEquals(0, producer.inFlight());
+    }
+
+    @Test
+    void sendFailsWhenNoRoomFreesUpInTime()
+    {
+        // Arrange
+        var event = bytes("{}");
+
+        ArgumentCaptor<KafkaRecord<String, byte[]>> recordCaptor = ArgumentCaptor.forClass(KafkaRecord.class);
+        producer.sendItemPriorityEvent("key", event);
+        verify(itemPriorityEmitterMock).send(recordCaptor.capture());
 
         // Act & Assert
-        assertThrows(RuntimeException.class, () -> producer.sendItemCompletedEvent(key, event));
+        var waiting = producer.sendItemPriorityEvent("key", event).toCompletableFuture();
+        var failure = assertThrows(CompletionException.class, waiting::join);
+        assertInstanceOf(IllegalStateException.class, failure.getCause());
+        assertEquals(1, producer.inFlight());
+
+        // the timed out send neither went out nor takes the freed slot
+        recordCaptor.getValue().ack();
+        verify(itemPriorityEmitterMock, times(1)).send(any(KafkaRecord.class));
+        assertEquals(0, producer.inFlight());
+        assertFalse(producer.sendItemPriorityEvent("key", event).toCompletableFuture().isCompletedExceptionally());
+    }
 
-        verify(itemCompletedEmitterMock, never()).send(any(KafkaRecord.class));
+    private static byte[] bytes(final String json)
+    {
+        return json.getBytes(StandardCharsets.UTF_8);
     }
 }
@@ -0,0 +1,97 @@
+package task.service.repos;
+
+import org.bson.BsonDocument;
+import org.bson.BsonDocumentReader;
+import org.bson.BsonDocumentWriter;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.junit.jupiter.api.Test;
+import task.service.models.TaskStatus;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TaskStatusCodecTest
+{
+    private final TaskStatusCodec codec = new TaskStatusCodec();
+
+    @Test
+    void writesCompactLayoutWithoutDefaults()
+    {
+        var status = new TaskStatus();
+        status.setUid("item1");
+        status.setUserUid("user1");
+        status.setType("task");
+        status.setPriority(true);
+        status.setCreatedAt(1000);
+        status.setUpdatedAt(2000);
+
+        var document = encode(status);
+
+        assertEquals(BsonDocument.parse("{u: 'item1', uu: 'user1', p: true, c: false, ca: {$numberLong: '1000'},"
+                + " ua: {$numberLong: '2000'}}"), document);
+
+        var decoded = decode(document);
+        assertEquals("item1", decoded.getUid());
+        assertEquals("user1", decoded.getUserUid());
+        assertEquals("task", decoded.getType());
+        assertTrue(decoded.isPriority());
+        assertFalse(decoded.isCompleted());
+        assertEquals(2000, decoded.getUpdatedAt());
+        assertEquals(0, decoded.getCompletedAt());
+    }
+
+    @Test
+    void readsLegacyLayout()
+    {
+        var decoded = decode(BsonDocument.parse("{_id: {$oid: '65f000000000000000000001'}, uid: 'item1',"
+                + " userUid: 'user1', type: 'note', priority: false, completed: true, createdAt: 1000,"
+                + " updatedAt: {$numberLong: '3000'}, completedAt: 3000.0}"));
+
+        assertEquals("65f000000000000000000001", decoded.getId());
+        assertEquals("item1", decoded.getUid());
+        assertEquals("note", decoded.getType());
+        assertTrue(decoded.isCompleted());
+        assertEquals(1000, decoded.getCreatedAt());
+        assertEquals(3000, decoded.getUpdatedAt());
+        assertEquals(3000, decoded.getCompletedAt());
+    }
+
+    @Test
+    void readsTombstone()
+    {
+        var decoded = decode(BsonDocument.parse("{u: 'item1', ua: {$numberLong: '4000'}, d: true,"
+                + " e: {$date: '2026-01-01T00:00:00Z'}}"));
+
+        assertEquals("item1", decoded.getUid());
+        assertTrue(decoded.isDeleted());
+        assertEquals(4000, decoded.getUpdatedAt());
+        assertNull(decoded.getUserUid());
+    }
+
+    @Test
+    void compactFieldWinsOverLegacyOne()
+    {
+        // an item updated by this service before the migration reached it
+        var decoded = decode(BsonDocument.parse("{uid: 'item1', updatedAt: 1000, completed: false, ua: 2000, c: true,"
+                + " completedAt: null}"));
+
+        assertEquals(2000, decoded.getUpdatedAt());
+        assertTrue(decoded.isCompleted());
+        assertEquals(0, decoded.getCompletedAt());
+
+        decoded = decode(BsonDocument.parse("{ua: 2000, updatedAt: 1000}"));
+        assertEquals(2000, decoded.getUpdatedAt());
+    }
+
+    private BsonDocument encode(final TaskStatus status)
+    {
+        var document = new BsonDocument();
+        codec.encode(new BsonDocumentWriter(document), status, EncoderContext.builder().build());
+        return document;
+    }
+
+    private TaskStatus decode(final BsonDocument document)
+    {
+        return codec.decode(new BsonDocumentReader(document), DecoderContext.builder().build());
+    }
+}
@@ -0,0 +1,79 @@
+package task.service.repos;
+
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TaskStatusIndexManagerTest
+{
+    @Test
+    void everyHotQueryHasAnIndex()
+    {
+        // an index can serve a query if the query pins its leading key and implies its partial filter; pinning a
+        // field implies that it exists
+        TaskStatusIndexManager.HOT_QUERIES.forEach((name, filter) -> {
+            var served = TaskStatusIndexManager.INDEXES.stream()
+                    .anyMatch(index -> filter.containsKey(index.keys().keySet().iterator().next())
+                            && (index.partialFilter() == null || index.partialFilter().entrySet().stream()
+                                    .allMatch(condition -> implies(filter, condition))));
+
+            assertTrue(served, "no index serves query '" + name + "'");
+        });
+    }
+
+    private static boolean implies(final Document filter, final Map.Entry<String, Object> condition)
+    {
+        return condition.getValue().equals(filter.get(condition.getKey()))
+                || new Document("$exists", true).equals(condition.getValue()) && filter.containsKey(condition.getKey());
+    }
+
+    @Test
+    void uidIndexIsUnique()
+    {
+        var uidIndex = TaskStatusIndexManager.INDEXES.stream()
+                .filter(index -> index.keySignature().equals(TaskStatusFields.UID + ":1")).findFirst();
+
+        assertTrue(uidIndex.isPresent());
+        assertTrue(uidIndex.get().unique());
+    }
+
+    @Test
+    void detectsCollectionScanInFindPlan()
+    {
+        var explain = Document.parse("{queryPlanner: {winningPlan: {stage: 'COLLSCAN', filter: {uid: {$eq: 'a'}}}}}");
+
+        assertTrue(QueryPlans.scansCollection(explain));
+    }
+
+    @Test
+    void acceptsIndexScanBelowFetch()
+    {
+        var explain = Document.parse(
+                "{queryPlanner: {winningPlan: {stage: 'FETCH', inputStage: {stage: 'IXSCAN', indexName: 'uid_unique'}},"
+                        + " rejectedPlans: [{stage: 'COLLSCAN'}]}}");
+
+        assertFalse(QueryPlans.scansCollection(explain)); // rejected plans do not count
+    }
+
+    @Test
+    void detectsCollectionScanInAggregatePlan()
+    {
+        var explain = Document
+                .parse("{stages: [{$cursor: {queryPlanner: {winningPlan: {stage: 'COLLSCAN'}}}}, {$group: {}}]}");
+
+        assertTrue(QueryPlans.scansCollection(explain));
+    }
+
+    @Test
+    void reportsDifferingIndexOptions()
+    {
+        var spec = new IndexSpec("uid_unique", new Document("uid", 1), true, null);
+        var existing = new Document("name", "uid_1").append("key", new Document("uid", 1));
+
+        assertEquals("unique=false instead of true", spec.differenceTo(existing));
+        assertNull(spec.differenceTo(existing.append("unique", true)));
+    }
+}
@@ -0,0 +1,149 @@
+package task.service.rules;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import task.service.models.FeedbackRule;
+import task.service.repos.FeedbackRuleRepository;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static task.service.rules.DecisionTable.COMPLETED;
+import static task.service.rules.DecisionTable.PRIORITY;
+
+public class FeedbackRulesTest
+{
+    private static final String PRIORITY_CHANNEL = DecisionTable.CHANNELS.get(PRIORITY);
+
+    private FeedbackRules rules;
+    private FeedbackRuleRepository repository;
+    private SimpleMeterRegistry registry;
+
+    @BeforeEach
+    void setup()
+    {
+        repository = mock(FeedbackRuleRepository.class);
+        registry = new SimpleMeterRegistry();
+
+        var config = mock(FeedbackRulesConfig.class);
+        when(config.source()).thenReturn("mongo");
+        when(config.definitions()).thenReturn(Optional.empty());
+
+        rules = new FeedbackRules();
+        rules.config = config;
+        rules.repository = repository;
+        rules.registry = registry;
+        // nothing stored yet, so this only registers the hit counters of the built-in rules
+        rules.onStart(null);
+    }
+
+    @Test
+    void builtInRulesDecideAsBefore()
+    {
+        var table = rules.table();
+
+        assertEquals("Yes! You completed your task! Your total is 5", render(table, COMPLETED, "item-created", true));
+        assertEquals("I believe in you! Go do stuff!", render(table, COMPLETED, "item-updated", false));
+        assertNull(table.decide(COMPLETED, "item-deleted", true, 4, 5));
+        assertFalse(table.handles(COMPLETED, "item-deleted"));
+
+        assertEquals("Priority is under under control", table.decide(PRIORITY, "item-deleted", false, 4, 5).text()
+                .render(0));
+        var warning = table.decide(PRIORITY, "item-deleted", false, 5, 0);
+        assertEquals("Warning! You have 5 priority items!", warning.text().render(warning.count(5, 0)));
+        assertNull(table.decide(PRIORITY, "item-archived", false, 5, 0));
+    }
+
+    @Test
+    void sameMessageAndCountIsTheSameState()
+    {
+        var table = rules.table();
+        var calm = table.decide(PRIORITY, "item-created", false, 1, 0);
+
+        assertEquals(calm.shown(1, 0), table.decide(PRIORITY, "item-created", false, 4, 9).shown(4, 9));
+        var warning = table.decide(PRIORITY, "item-created", false, 6, 0);
+        assertNotEquals(warning.shown(6, 0), table.decide(PRIORITY, "item-created", false, 7, 0).shown(7, 0));
+        assertNotEquals(calm.shown(1, 0), warning.shown(6, 0));
+    }
+
+    @Test
+    void swapsInChangedRulesAndKeepsCountingHits()
+    {
+        rules.table().decide(PRIORITY, "item-created", false, 1, 0);
+        var before = rules.table();
+
+        when(repository.findAllInOrder()).thenReturn(List.of(
+                rule("priority-calm", PRIORITY, null, 3, "Only {priorityCount} priority items"),
+                rule("silence", PRIORITY, 4, null, "Busy")));
+        rules.reload();
+        var after = rules.table();
+
+        assertNotSame(before, after);
+        var calm = after.decide(PRIORITY, "item-deleted", false, 2, 0);
+        assertEquals("Only 2 priority items", calm.text().render(calm.count(2, 0)));
+        assertEquals("silence", after.decide(PRIORITY, "item-deleted", false, 4, 0).name());
+        assertFalse(after.handles(COMPLETED, "item-created"));
+        assertEquals(2, registry.get(FeedbackRules.HITS_COUNTER).tag("rule", "priority-calm").functionCounter()
+                .count());
+
+        // unchanged rules keep the table
+        rules.reload();
+        assertSame(after, rules.table());
+    }
+
+    @Test
+    void keepsTheRulesWhenNewOnesDoNotCompile()
+    {
+        var before = rules.table();
+        when(repository.findAllInOrder()).thenReturn(List.of(rule("broken", "sms", null, null, "Hi")));
+
+        rules.reload();
+
+        assertSame(before, rules.table());
+    }
+
+    @Test
+    void fallsBackToBuiltInRulesWithoutStoredOnes()
+    {
+        when(repository.findAllInOrder()).thenReturn(List.of(rule("silence", PRIORITY_CHANNEL, null, null, "-")));
+        rules.reload();
+        when(repository.findAllInOrder()).thenReturn(List.of());
+        rules.reload();
+
+        assertEquals(FeedbackRules.DEFAULTS, rules.table().definitions());
+    }
+
+    @Test
+    void rejectsMessagesShowingTwoCounts()
+    {
+        var twice = rule("twice", PRIORITY_CHANNEL, null, null, "{priorityCount} of {completedCount}");
+
+        assertThrows(IllegalArgumentException.class,
+                () -> DecisionTable.compile(List.of(twice), name -> new LongAdder()));
+    }
+
+    private static String render(final DecisionTable table, final int channel, final String eventType,
+            final boolean completed)
+    {
+        var rule = table.decide(channel, eventType, completed, 0, 5);
+        return rule.text().render(rule.count(0, 5));
+    }
+
+    private static FeedbackRule rule(final String name, final int channel, final Integer minPriorityCount,
+            final Integer maxPriorityCount, final String message)
+    {
+        return rule(name, DecisionTable.CHANNELS.get(channel), minPriorityCount, maxPriorityCount, message);
+    }
+
+    private static FeedbackRule rule(final String name, final String channel, final Integer minPriorityCount,
+            final Integer maxPriorityCount, final String message)
+    {
+        return new FeedbackRule(null, name, 0, channel, null, null, minPriorityCount, maxPriorityCount, null, null,
+                message);
+    }
+}
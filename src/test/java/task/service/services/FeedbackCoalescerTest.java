@@ -0,0 +1,120 @@
+package task.service.services;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import task.service.rules.FeedbackRules;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+import static task.service.rules.DecisionTable.COMPLETED;
+import static task.service.rules.DecisionTable.PRIORITY;
+
+public class FeedbackCoalescerTest
+{
+    private FeedbackCoalescer coalescer;
+
+    @Mock
+    FeedbackService feedbackService;
+
+    private AutoCloseable mocks;
+
+    @BeforeEach
+    void setup()
+    {
+        mocks = MockitoAnnotations.openMocks(this);
+        coalescer = new FeedbackCoalescer();
+        coalescer.feedbackService = feedbackService;
+        coalescer.rules = new FeedbackRules();
+        coalescer.registry = new SimpleMeterRegistry();
+        coalescer.enabled = true;
+        // long enough that only explicit flushes send anything
+        coalescer.window = Duration.ofHours(1);
+        coalescer.maxDelay = Duration.ofHours(1);
+        coalescer.init();
+
+        when(feedbackService.sendFeedback(anyInt(), anyString(), anyString(), anyBoolean(), anyInt(), anyInt()))
+                .thenReturn(CompletableFuture.completedFuture(null));
+    }
+
+    @AfterEach
+    void tearDown() throws Exception
+    {
+        mocks.close();
+    }
+
+    @Test
+    void sendsLatestCountsOncePerType()
+    {
+        var first = coalescer.coalesce("user1", "item-created", false, 1, 0, 1);
+        var second = coalescer.coalesce("user1", "item-updated", true, 0, 1, 2);
+        var third = coalescer.coalesce("user1", "item-deleted", true, 2, 3, 3);
+
+        assertSame(first, second);
+        assertSame(first, third);
+        assertFalse(first.toCompletableFuture().isDone());
+        verifyNoInteractions(feedbackService);
+
+        coalescer.flush(userUid -> true);
+
+        // the delete has no completed rules, so that channel keeps the update
+        verify(feedbackService).sendFeedback(PRIORITY, "user1", "item-deleted", true, 2, 3);
+        verify(feedbackService).sendFeedback(COMPLETED, "user1", "item-updated", true, 2, 3);
+        verifyNoMoreInteractions(feedbackService);
+        assertTrue(first.toCompletableFuture().isDone());
+    }
+
+    @Test
+    void keepsCountsOfHighestVersionWhateverTheArrivalOrder()
+    {
+        coalescer.coalesce("user1", "item-created", false, 2, 0, 2);
+        // read before the create's increment, but processed after it
+        coalescer.coalesce("user1", "item-updated", true, 1, 1, 1);
+
+        coalescer.flush(userUid -> true);
+
+        verify(feedbackService).sendFeedback(PRIORITY, "user1", "item-updated", true, 2, 0);
+        verify(feedbackService).sendFeedback(COMPLETED, "user1", "item-updated", true, 2, 0);
+    }
+
+    @Test
+    void deletesAloneOnlySendPriorityFeedback()
+    {
+        coalescer.coalesce("user1", "item-deleted", false, 4, 1, 1);
+
+        coalescer.flush(userUid -> true);
+
+        verify(feedbackService).sendFeedback(PRIORITY, "user1", "item-deleted", false, 4, 1);
+        verify(feedbackService, never())
+                .sendFeedback(eq(COMPLETED), anyString(), anyString(), anyBoolean(), anyInt(), anyInt());
+    }
+
+    @Test
+    void flushesOnlyMatchingUsersAndStartsFreshAfterwards()
+    {
+        var revoked = coalescer.coalesce("user1", "item-created", false, 1, 0, 1);
+        var kept = coalescer.coalesce("user2", "item-created", false, 1, 0, 1);
+
+        coalescer.flush("user1"::equals);
+
+        assertTrue(revoked.toCompletableFuture().isDone());
+        assertFalse(kept.toCompletableFuture().isDone());
+        verify(feedbackService, never())
+                .sendFeedback(anyInt(), eq("user2"), anyString(), anyBoolean(), anyInt(), anyInt());
+
+        var next = coalescer.coalesce("user1", "item-updated", true, 0, 1, 2);
+        assertFalse(next.toCompletableFuture().isDone());
+    }
+}
@@ -0,0 +1,182 @@
+package task.service.services;
+
+import com.mongodb.MongoException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import task.service.cache.TaskStateCache;
+import task.service.models.TaskStatus;
+import task.service.models.UserFeedbackCounters;
+import task.service.repos.TaskStatusRepository;
+import task.service.repos.UserFeedbackCountersRepository;
+import task.service.services.FeedbackCounterService.Contribution;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class FeedbackCounterServiceTest
+{
+    private FeedbackCounterService counterService;
+
+    @Mock
+    UserFeedbackCountersRepository countersRepository;
+
+    @Mock
+    TaskStatusRepository taskRepository;
+
+    @Mock
+    TaskStateCache stateCache;
+
+    private AutoCloseable mocks;
+
+    @BeforeEach
+    void setup()
+    {
+        mocks = MockitoAnnotations.openMocks(this);
+        counterService = new FeedbackCounterService();
+        counterService.countersRepository = countersRepository;
+        counterService.taskRepository = taskRepository;
+        counterService.stateCache = stateCache;
+    }
+
+    @AfterEach
+    void tearDown() throws Exception
+    {
+        mocks.close();
+    }
+
+    @Test
+    void contributionOfOpenPriorityTask()
+    {
+        var contribution = Contribution.of(status(true, false));
+
+        assertEquals(1, contribution.priority());
+        assertEquals(0, contribution.completed());
+    }
+
+    @Test
+    void contributionOfCompletedPriorityTask()
+    {
+        var contribution = Contribution.of(status(true, true));
+
+        assertEquals(0, contribution.priority()); // completed tasks no longer count as open priority
+        assertEquals(1, contribution.completed());
+    }
+
+    @Test
+    void contributionOfMissingTask()
+    {
+        assertEquals(Contribution.NONE, Contribution.of(null));
+    }
+
+    @Test
+    void trackCompletingPriorityTask()
+    {
+        var before = Contribution.of(status(true, false));
+        var after = Contribution.of(status(true, true));
+
+        counterService.track("user123", before, after);
+
+        verify(countersRepository).increment("user123", -1, 1);
+    }
+
+    @Test
+    void trackDeletedTask()
+    {
+        counterService.track("user123", Contribution.of(status(false, true)), Contribution.NONE);
+
+        verify(countersRepository).increment("user123", 0, -1);
+    }
+
+    @Test
+    void userWithoutCountersIsCountedFromTasks()
+    {
+        var counted = new UserFeedbackCounters("user123", 3, 40);
+        when(countersRepository.increment("user123", 0, 1)).thenReturn(null);
+        when(taskRepository.countByUserUid("user123")).thenReturn(counted);
+        when(countersRepository.replaceIfUnchanged(counted, null)).thenReturn(true);
+
+        var counters = counterService.track("user123", Contribution.NONE, Contribution.of(status(false, true)));
+
+        // the count already includes the change
+        assertEquals(counted, counters);
+    }
+
+    @Test
+    void userWhoseIncrementFailedIsCountedFromTasks()
+    {
+        var counted = new UserFeedbackCounters("user123", 3, 40);
+        when(countersRepository.increment("user123", 0, 1)).thenThrow(new MongoException("timed out"));
+        when(countersRepository.version("user123")).thenReturn(7L);
+        when(taskRepository.countByUserUid("user123")).thenReturn(counted);
+        when(countersRepository.replaceIfUnchanged(counted, 7L)).thenReturn(true);
+
+        // the increment may have been applied, the count is right either way
+        var counters = counterService.track("user123", Contribution.NONE, Contribution.of(status(false, true)));
+
+        assertEquals(counted, counters);
+    }
+
+    @Test
+    void trackAllCountsRecountedUsersInsteadOfIncrementing()
+    {
+        var incremented = new UserFeedbackCounters("user1", 1, 0);
+        var counted = new UserFeedbackCounters("user2", 0, 5);
+        when(countersRepository.incrementAll(List.of(new UserFeedbackCounters("user1", 1, 0))))
+                .thenReturn(List.of(incremented));
+        when(taskRepository.countByUserUid("user2")).thenReturn(counted);
+        when(countersRepository.replaceIfUnchanged(counted, null)).thenReturn(true);
+
+        var tracked = counterService.trackAll(Map.of("user1", new Contribution(1, 0), "user2", new Contribution(0, 1)),
+                Set.of("user2"));
+
+        assertEquals(Set.of(incremented, counted), Set.copyOf(tracked));
+    }
+
+    @Test
+    void recountCountsAgainWhenAnIncrementLandedMeanwhile()
+    {
+        var first = new UserFeedbackCounters("user123", 3, 40);
+        var second = new UserFeedbackCounters("user123", 2, 41);
+        when(countersRepository.version("user123")).thenReturn(7L, 8L);
+        when(taskRepository.countByUserUid("user123")).thenReturn(first, second);
+        when(countersRepository.replaceIfUnchanged(first, 7L)).thenReturn(false);
+        when(countersRepository.replaceIfUnchanged(second, 8L)).thenReturn(true);
+
+        assertEquals(second, counterService.recount("user123"));
+        verify(taskRepository, times(2)).countByUserUid("user123");
+    }
+
+    @Test
+    void countersAreWrittenThroughWithTheirVersion()
+    {
+        var incremented = new UserFeedbackCounters("user1", 1, 0, 9);
+        when(countersRepository.increment("user1", 1, 0)).thenReturn(incremented);
+        var counted = new UserFeedbackCounters("user2", 0, 5);
+        when(countersRepository.version("user2")).thenReturn(7L);
+        when(taskRepository.countByUserUid("user2")).thenReturn(counted);
+        when(countersRepository.replaceIfUnchanged(counted, 7L)).thenReturn(true);
+
+        counterService.track("user1", Contribution.NONE, new Contribution(1, 0));
+        counterService.recount("user2");
+
+        verify(stateCache).putCounters(incremented);
+        verify(stateCache).putCounters(new UserFeedbackCounters("user2", 0, 5, 8));
+    }
+
+    private static TaskStatus status(final boolean priority, final boolean completed)
+    {
+        var status = new TaskStatus();
+        status.setPriority(priority);
+        status.setCompleted(completed);
+        return status;
+    }
+}
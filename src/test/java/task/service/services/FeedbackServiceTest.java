@@ -6,16 +6,22 @@ import org.junit.jupiter.api.Test;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import task.service.models.TaskStatus;
-import task.service.models.messages.FeedbackEvent;
+import task.service.models.messages.ItemContent;
 import task.service.models.messages.ItemEvent;
 import task.service.producers.ItemFeedbackProducer;
+import task.service.rules.DecisionTable;
+import task.service.rules.FeedbackRules;
 
-import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 public class FeedbackServiceTest
 {
@@ -32,6 +38,14 @@ public class FeedbackServiceTest
         mocks = MockitoAnnotations.openMocks(this);
         feedbackService = new FeedbackService();
         feedbackService.itemFeedbackProducer = itemFeedbackProducer;
+        feedbackService.coalescer = mock(FeedbackCoalescer.class);
+        feedbackService.suppressor = new FeedbackSuppressor();
+        feedbackService.rules = new FeedbackRules();
+
+        when(itemFeedbackProducer.sendItemCompletedEvent(anyString(), any()))
+                .thenReturn(CompletableFuture.completedFuture(null));
+        when(itemFeedbackProducer.sendItemPriorityEvent(anyString(), any()))
+                .thenReturn(CompletableFuture.completedFuture(null));
     }
 
     @AfterEach
@@ -49,7 +63,7 @@ public class FeedbackServiceTest
         event.setUserUid("user456");
         event.setType("completed");
         event.setTime(now);
-        event.setContent(Map.of("priority", true, "completed", true));
+        event.setContent(new ItemContent(true, true, null));
 
         var status = feedbackService.createStatus(event);
 
@@ -72,7 +86,7 @@ public class FeedbackServiceTest
         event.setUserUid("userDEF");
         event.setType("task");
         event.setTime(now);
-        event.setContent(Map.of("priority", true, "completed", false));
+        event.setContent(new ItemContent(true, false, null));
 
         var status = feedbackService.createStatus(event);
 
@@ -83,7 +97,7 @@ public class FeedbackServiceTest
         assertFalse(status.isCompleted());
         assertEquals(now, status.getCreatedAt());
         assertEquals(now, status.getUpdatedAt());
-        assertNull(status.getCompletedAt()); // should be null if not completed
+        assertEquals(0, status.getCompletedAt()); // should be unset if not completed
     }
 
     @Test
@@ -94,7 +108,7 @@ public class FeedbackServiceTest
         event.setItemUid("item123");
         event.setUserUid("user456");
         event.setTime(now);
-        event.setContent(Map.of("priority", false, "completed", true));
+        event.setContent(new ItemContent(false, true, null));
 
         var prevStatus = new TaskStatus();
         prevStatus.setUid("item123");
@@ -122,7 +136,7 @@ public class FeedbackServiceTest
         event.setItemUid("item789");
         event.setUserUid("userXYZ");
         event.setTime(eventTime);
-        event.setContent(Map.of("priority", true, "completed", false, "time", customTime));
+        event.setContent(new ItemContent(true, false, customTime));
 
         var prevStatus = new TaskStatus();
         prevStatus.setUid("item789");
@@ -137,7 +151,7 @@ public class FeedbackServiceTest
         assertTrue(updated.isPriority());
         assertFalse(updated.isCompleted());
         assertEquals(customTime, updated.getUpdatedAt());
-        assertNull(updated.getCompletedAt());
+        assertEquals(0, updated.getCompletedAt());
     }
 
     @Test
@@ -149,10 +163,28 @@ public class FeedbackServiceTest
         var completedCount = 6; // over current priority limit
         var priorityCount = 3;
 
-        feedbackService.feedback(userUid, eventType, completed, priorityCount, completedCount);
+        feedbackService.feedback(userUid, eventType, completed, priorityCount, completedCount, 1L);
 
-        verify(itemFeedbackProducer).sendItemCompletedEvent(eq(userUid), any(FeedbackEvent.class));
-        verify(itemFeedbackProducer).sendItemPriorityEvent(eq(userUid), any(FeedbackEvent.class));
+        verify(itemFeedbackProducer).sendItemCompletedEvent(eq(userUid), any(byte[].class));
+        verify(itemFeedbackProducer).sendItemPriorityEvent(eq(userUid), any(byte[].class));
+    }
+
+    @Test
+    void feedbackFailsWhenARecordFails()
+    {
+        var completedAck = new CompletableFuture<Void>();
+        var priorityAck = new CompletableFuture<Void>();
+        when(itemFeedbackProducer.sendItemCompletedEvent(anyString(), any())).thenReturn(completedAck);
+        when(itemFeedbackProducer.sendItemPriorityEvent(anyString(), any())).thenReturn(priorityAck);
+
+        var feedback = feedbackService.feedback("user123", "item-created", true, 1, 1, 1L).toCompletableFuture();
+
+        completedAck.complete(null);
+        assertFalse(feedback.isDone());
+
+        // a failed record fails the feedback, so the item record is nacked
+        priorityAck.completeExceptionally(new IllegalStateException("nack"));
+        assertTrue(feedback.isCompletedExceptionally());
     }
 
     @Test
@@ -164,10 +196,10 @@ public class FeedbackServiceTest
         int completedCount = 3;
         int priorityCount = 2;
 
-        feedbackService.feedback(userUid, eventType, completed, priorityCount, completedCount);
+        feedbackService.feedback(userUid, eventType, completed, priorityCount, completedCount, 1L);
 
-        verify(itemFeedbackProducer).sendItemCompletedEvent(eq(userUid), any(FeedbackEvent.class));
-        verify(itemFeedbackProducer).sendItemPriorityEvent(eq(userUid), any(FeedbackEvent.class));
+        verify(itemFeedbackProducer).sendItemCompletedEvent(eq(userUid), any(byte[].class));
+        verify(itemFeedbackProducer).sendItemPriorityEvent(eq(userUid), any(byte[].class));
     }
 
     @Test
@@ -177,7 +209,8 @@ public class FeedbackServiceTest
         var completedCount = 5;
         var userUid = "user123";
 
-        var event = feedbackService.buildCompletedEvent(completed, completedCount, userUid);
+        var event = feedbackService.buildEvent(DecisionTable.COMPLETED, userUid, "item-updated", completed, 0,
+                completedCount);
 
         assertNotNull(event);
         assertEquals("feedback-completed", event.getEvent());
@@ -192,7 +225,8 @@ public class FeedbackServiceTest
         var completedCount = 3;
         var userUid = "user123";
 
-        var event = feedbackService.buildCompletedEvent(completed, completedCount, userUid);
+        var event = feedbackService.buildEvent(DecisionTable.COMPLETED, userUid, "item-created", completed, 0,
+                completedCount);
 
         assertNotNull(event);
         assertEquals("feedback-completed", event.getEvent());
@@ -207,8 +241,10 @@ public class FeedbackServiceTest
         var priorityCountLow = 2; // under limit
         var priorityCountHigh = 5; // over limit
 
-        var eventLow = feedbackService.buildPriorityEvent(userUid, priorityCountLow);
-        var eventHigh = feedbackService.buildPriorityEvent(userUid, priorityCountHigh);
+        var eventLow = feedbackService.buildEvent(DecisionTable.PRIORITY, userUid, "item-updated", false,
+                priorityCountLow, 0);
+        var eventHigh = feedbackService.buildEvent(DecisionTable.PRIORITY, userUid, "item-deleted", false,
+                priorityCountHigh, 0);
 
         assertNotNull(eventLow);
         assertEquals("feedback-priority", eventLow.getEvent());
@@ -218,4 +254,20 @@ public class FeedbackServiceTest
         assertEquals("feedback-priority", eventHigh.getEvent());
         assertEquals("Warning! You have 5 priority items!", eventHigh.getFeedback());
     }
+
+    @Test
+    void buildEventWithoutMatchingRule()
+    {
+        assertNull(feedbackService.buildEvent(DecisionTable.COMPLETED, "user123", "item-deleted", true, 1, 1));
+        assertNull(feedbackService.buildEvent(DecisionTable.PRIORITY, "user123", "item-archived", true, 1, 1));
+    }
+
+    @Test
+    void feedbackItemDeletedOnlySendsPriority()
+    {
+        feedbackService.feedback("user123", "item-deleted", false, 1, 1, 1L);
+
+        verify(itemFeedbackProducer, never()).sendItemCompletedEvent(anyString(), any());
+        verify(itemFeedbackProducer).sendItemPriorityEvent(eq("user123"), any(byte[].class));
+    }
 }
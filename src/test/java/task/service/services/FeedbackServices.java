@@ -0,0 +1,20 @@
+package task.service.services;
+
+import task.service.rules.FeedbackRules;
+
+/**
+ * {@link FeedbackService}s for tests of other packages, wired with the built-in feedback rules.
+ */
+public final class FeedbackServices
+{
+    private FeedbackServices()
+    {
+    }
+
+    public static FeedbackService withBuiltInRules()
+    {
+        var feedbackService = new FeedbackService();
+        feedbackService.rules = new FeedbackRules();
+        return feedbackService;
+    }
+}
@@ -0,0 +1,80 @@
+package task.service.services;
+
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.Uni;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import task.service.cache.TaskStateCache;
+import task.service.models.UserFeedbackCounters;
+import task.service.repos.ReactiveUserFeedbackCountersRepository;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.*;
+
+public class FeedbackStatsServiceTest
+{
+    private FeedbackStatsService service;
+    private TaskStateCache stateCache;
+    private ReactiveUserFeedbackCountersRepository repository;
+
+    @BeforeEach
+    void setup()
+    {
+        stateCache = mock(TaskStateCache.class);
+        repository = mock(ReactiveUserFeedbackCountersRepository.class);
+
+        service = new FeedbackStatsService();
+        service.stateCache = stateCache;
+        service.repository = repository;
+        service.batchSize = 2;
+    }
+
+    @Test
+    void cachedCountersAreServedWithoutMongo()
+    {
+        when(stateCache.counters("user-1")).thenReturn(new UserFeedbackCounters("user-1", 1, 2));
+
+        var counters = service.stats("user-1").await().indefinitely();
+
+        assertEquals(new UserFeedbackCounters("user-1", 1, 2), counters);
+        verifyNoInteractions(repository);
+    }
+
+    @Test
+    void missesAreLookedUpInMongo()
+    {
+        when(repository.findById("user-1")).thenReturn(Uni.createFrom().item(new UserFeedbackCounters("user-1", 1, 2)));
+
+        assertEquals(new UserFeedbackCounters("user-1", 1, 2), service.stats("user-1").await().indefinitely());
+        verify(repository).findById("user-1");
+    }
+
+    @Test
+    void usersWithoutCountersHaveNone()
+    {
+        when(repository.findById("user-1")).thenReturn(Uni.createFrom().nullItem());
+
+        assertEquals(new UserFeedbackCounters("user-1", 0, 0), service.stats("user-1").await().indefinitely());
+    }
+
+    @Test
+    void batchesLookUpTheMissesInChunks()
+    {
+        when(stateCache.counters("known")).thenReturn(new UserFeedbackCounters("known", 5, 6));
+        when(repository.findByUsers(anyCollection())).thenReturn(
+                Multi.createFrom().item(new UserFeedbackCounters("user-2", 1, 1)),
+                Multi.createFrom().item(new UserFeedbackCounters("user-3", 2, 2)));
+
+        var counters = service.stats(List.of("user-1", "known", "user-2", "user-3")).collect().asList().await()
+                .indefinitely();
+
+        assertEquals(List.of(new UserFeedbackCounters("known", 5, 6), new UserFeedbackCounters("user-1", 0, 0),
+                new UserFeedbackCounters("user-2", 1, 1), new UserFeedbackCounters("user-3", 2, 2)), counters);
+        verify(repository).findByUsers(List.of("user-1", "user-2"));
+        verify(repository).findByUsers(List.of("user-3"));
+        verifyNoMoreInteractions(repository);
+    }
+}
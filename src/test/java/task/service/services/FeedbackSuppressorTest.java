@@ -0,0 +1,75 @@
+package task.service.services;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import task.service.metrics.PipelineMetrics;
+import task.service.services.FeedbackSuppressor.Shown;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class FeedbackSuppressorTest
+{
+    private static final Shown WARNING = new Shown("Warning! You have {priorityCount} priority items!", 6);
+
+    private FeedbackSuppressor suppressor;
+    private PipelineMetrics metrics;
+
+    @BeforeEach
+    void setup()
+    {
+        var registry = new SimpleMeterRegistry();
+        metrics = new PipelineMetrics(registry);
+        suppressor = new FeedbackSuppressor();
+        suppressor.metrics = metrics;
+        suppressor.registry = registry;
+        suppressor.priorityEnabled = true;
+        suppressor.maxEntries = 100;
+        suppressor.init();
+    }
+
+    @Test
+    void skipsWhatTheUserWasShownLast()
+    {
+        assertTrue(shouldSend(FeedbackSuppressor.PRIORITY, WARNING));
+        assertFalse(shouldSend(FeedbackSuppressor.PRIORITY, WARNING));
+        assertTrue(shouldSend(FeedbackSuppressor.PRIORITY, new Shown(WARNING.message(), 7)));
+
+        assertEquals(1, metrics.suppressed(FeedbackSuppressor.PRIORITY).count());
+    }
+
+    @Test
+    void forgetsWhatAFailedRecordShowed()
+    {
+        assertTrue(shouldSend(FeedbackSuppressor.PRIORITY, WARNING));
+        suppressor.sendFailed(FeedbackSuppressor.PRIORITY, "user1", WARNING);
+
+        assertTrue(shouldSend(FeedbackSuppressor.PRIORITY, WARNING));
+    }
+
+    @Test
+    void forgetsUsersOfRevokedPartitions()
+    {
+        assertTrue(shouldSend(FeedbackSuppressor.PRIORITY, WARNING));
+        suppressor.forget("user1"::equals);
+
+        // the new owner may have shown the user something else meanwhile
+        assertTrue(shouldSend(FeedbackSuppressor.PRIORITY, WARNING));
+    }
+
+    @Test
+    void disabledChannelAlwaysSends()
+    {
+        assertTrue(shouldSend(FeedbackSuppressor.COMPLETED, WARNING));
+        assertTrue(shouldSend(FeedbackSuppressor.COMPLETED, WARNING));
+
+        assertEquals(0, metrics.suppressed(FeedbackSuppressor.COMPLETED).count());
+    }
+
+    private boolean shouldSend(final String channel, final Shown shown)
+    {
+        return suppressor.shouldSend(channel, "user1", shown).toCompletableFuture().join();
+    }
+}
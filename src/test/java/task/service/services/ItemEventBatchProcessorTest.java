@@ -0,0 +1,187 @@
+package task.service.services;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import task.service.metrics.PipelineMetrics;
+import task.service.models.TaskStatus;
+import task.service.models.UserFeedbackCounters;
+import task.service.models.messages.ItemContent;
+import task.service.models.messages.ItemEvent;
+import task.service.repos.TaskStatusRepository;
+import task.service.services.FeedbackCounterService.Contribution;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@SuppressWarnings("unchecked")
+public class ItemEventBatchProcessorTest
+{
+    private ItemEventBatchProcessor batchProcessor;
+
+    @Mock
+    FeedbackService feedbackService;
+
+    @Mock
+    FeedbackCounterService counterService;
+
+    @Mock
+    TaskStatusRepository repository;
+
+    private AutoCloseable mocks;
+
+    @BeforeEach
+    void setup()
+    {
+        mocks = MockitoAnnotations.openMocks(this);
+        batchProcessor = new ItemEventBatchProcessor();
+        batchProcessor.feedbackService = feedbackService;
+        batchProcessor.counterService = counterService;
+        batchProcessor.repository = repository;
+        batchProcessor.metrics = new PipelineMetrics(new SimpleMeterRegistry());
+
+        var realService = new FeedbackService();
+        when(feedbackService.createStatus(any())).thenAnswer(i -> realService.createStatus(i.getArgument(0)));
+        when(feedbackService.updateStatus(any(), any()))
+                .thenAnswer(i -> realService.updateStatus(i.getArgument(0), i.getArgument(1)));
+        when(feedbackService.feedback(anyString(), anyString(), anyBoolean(), anyInt(), anyInt(), anyLong()))
+                .thenReturn(CompletableFuture.completedFuture(null));
+    }
+
+    @AfterEach
+    void tearDown() throws Exception
+    {
+        mocks.close();
+    }
+
+    @Test
+    void foldsEventsPerItemAndFeedsBackOncePerUser()
+    {
+        var created = event("item-created", "item1", "user1", new ItemContent(true, false, null), 1000);
+        var updated = event("item-updated", "item1", "user1", new ItemContent(true, true, null), 2000);
+
+        when(repository.findByUids(any())).thenReturn(List.of());
+        when(counterService.trackAll(any(), any())).thenReturn(List.of(new UserFeedbackCounters("user1", 0, 1)));
+
+        batchProcessor.process(List.of(created, updated));
+
+        ArgumentCaptor<Map<String, TaskStatus>> statesCaptor = ArgumentCaptor.forClass(Map.class);
+        verify(repository).bulkApply(statesCaptor.capture(), eq(Set.of("item1")));
+        var finalState = statesCaptor.getValue().get("item1");
+        assertTrue(finalState.isCompleted());
+        assertEquals(2000, finalState.getUpdatedAt());
+
+        ArgumentCaptor<Map<String, Contribution>> deltasCaptor = ArgumentCaptor.forClass(Map.class);
+        verify(counterService).trackAll(deltasCaptor.capture(), eq(Set.of()));
+        assertEquals(new Contribution(0, 1), deltasCaptor.getValue().get("user1"));
+
+        verify(feedbackService, times(1)).feedback("user1", "item-updated", true, 0, 1, 0L);
+    }
+
+    @Test
+    void deletesKnownItemAndHandsBackUnknownUpdate()
+    {
+        var existing = new TaskStatus();
+        existing.setUid("item1");
+        existing.setUserUid("user1");
+        existing.setCompleted(true);
+
+        when(repository.findByUids(any())).thenReturn(List.of(existing));
+        when(counterService.trackAll(any(), any())).thenReturn(List.of(new UserFeedbackCounters("user1", 0, 0)));
+
+        var unknown = event("item-updated", "item2", "user2", new ItemContent(false, true, null), 1000);
+        var parked = batchProcessor.process(List.of(event("item-deleted", "item1", "user1", new ItemContent(), 1000),
+                unknown));
+
+        assertEquals(List.of(unknown), parked.toCompletableFuture().join());
+
+        ArgumentCaptor<Map<String, TaskStatus>> statesCaptor = ArgumentCaptor.forClass(Map.class);
+        verify(repository).bulkApply(statesCaptor.capture(), eq(Set.of("item1", "item2")));
+        assertEquals(1, statesCaptor.getValue().size());
+        assertTrue(statesCaptor.getValue().get("item1").isDeleted());
+        assertEquals(1000L, statesCaptor.getValue().get("item1").getUpdatedAt());
+
+        verify(feedbackService).feedback(eq("user1"), eq("item-deleted"), eq(true), anyInt(), anyInt(), anyLong());
+        verify(feedbackService, never())
+                .feedback(eq("user2"), anyString(), anyBoolean(), anyInt(), anyInt(), anyLong());
+    }
+
+    @Test
+    void dropsCreateOfItemDeletedLater()
+    {
+        when(repository.findByUids(any())).thenReturn(List.of(TaskStatus.tombstone("item1", 2000)));
+        when(counterService.trackAll(any(), any())).thenReturn(List.of());
+
+        var parked = batchProcessor.process(List.of(event("item-created", "item1", "user1",
+                new ItemContent(true, false, null), 1000), event("item-updated", "item1", "user1",
+                new ItemContent(true, true, null), 1500)));
+
+        ArgumentCaptor<Map<String, TaskStatus>> statesCaptor = ArgumentCaptor.forClass(Map.class);
+        verify(repository).bulkApply(statesCaptor.capture(), eq(Set.of("item1")));
+        assertTrue(statesCaptor.getValue().isEmpty());
+        assertTrue(parked.toCompletableFuture().join().isEmpty());
+        verify(feedbackService, never())
+                .feedback(anyString(), anyString(), anyBoolean(), anyInt(), anyInt(), anyLong());
+    }
+
+    @Test
+    void dropsUpdateOlderThanStoredItem()
+    {
+        var existing = new TaskStatus();
+        existing.setUid("item1");
+        existing.setUserUid("user1");
+        existing.setUpdatedAt(5000L);
+
+        when(repository.findByUids(any())).thenReturn(List.of(existing));
+        when(counterService.trackAll(any(), any())).thenReturn(List.of());
+
+        batchProcessor.process(List.of(event("item-updated", "item1", "user1", new ItemContent(true, true, 4000L),
+                6000)));
+
+        ArgumentCaptor<Map<String, TaskStatus>> statesCaptor = ArgumentCaptor.forClass(Map.class);
+        verify(repository).bulkApply(statesCaptor.capture(), eq(Set.of("item1")));
+        assertTrue(statesCaptor.getValue().isEmpty());
+        assertEquals(5000, existing.getUpdatedAt());
+        verify(feedbackService, never())
+                .feedback(anyString(), anyString(), anyBoolean(), anyInt(), anyInt(), anyLong());
+    }
+
+    @Test
+    void countsUsersOfEventsTheStoredItemsAlreadyShow()
+    {
+        var existing = new TaskStatus();
+        existing.setUid("item1");
+        existing.setUserUid("user1");
+        existing.setUpdatedAt(2000L);
+
+        when(repository.findByUids(any())).thenReturn(List.of(existing));
+        when(counterService.trackAll(any(), any())).thenReturn(List.of(new UserFeedbackCounters("user1", 0, 1)));
+
+        // retried after the first attempt wrote the item but failed before the increment
+        batchProcessor.process(List.of(event("item-updated", "item1", "user1", new ItemContent(false, true, null),
+                2000)));
+
+        verify(counterService).trackAll(any(), eq(Set.of("user1")));
+    }
+
+    private static ItemEvent event(final String type, final String itemUid, final String userUid,
+            final ItemContent content, final long time)
+    {
+        return new ItemEvent(type, itemUid, userUid, "task", content, time);
+    }
+}
@@ -0,0 +1,299 @@
+package task.service.services;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import task.service.cache.TaskStateCache;
+import task.service.metrics.PipelineMetrics;
+import task.service.models.TaskStatus;
+import task.service.models.UserFeedbackCounters;
+import task.service.models.messages.ItemContent;
+import task.service.models.messages.ItemEvent;
+import task.service.repos.TaskStatusRepository;
+import task.service.services.FeedbackCounterService.Contribution;
+
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class ItemEventProcessorTest
+{
+    private ItemEventProcessor processor;
+
+    @Mock
+    FeedbackService feedbackService;
+
+    @Mock
+    FeedbackCounterService counterService;
+
+    @Mock
+    TaskStatusRepository repository;
+
+    @Mock
+    TaskStateCache stateCache;
+
+    private AutoCloseable mocks;
+
+    @BeforeEach
+    void setup()
+    {
+        mocks = MockitoAnnotations.openMocks(this);
+        processor = new ItemEventProcessor();
+        processor.feedbackService = feedbackService;
+        processor.counterService = counterService;
+        processor.repository = repository;
+        processor.stateCache = stateCache;
+        processor.metrics = new PipelineMetrics(new SimpleMeterRegistry());
+
+        var realService = new FeedbackService();
+        when(feedbackService.createStatus(any())).thenAnswer(i -> realService.createStatus(i.getArgument(0)));
+        when(feedbackService.updateStatus(any(), any()))
+                .thenAnswer(i -> realService.updateStatus(i.getArgument(0), i.getArgument(1)));
+        when(feedbackService.feedback(anyString(), anyString(), anyBoolean(), anyInt(), anyInt(), anyLong()))
+                .thenReturn(CompletableFuture.completedFuture(null));
+    }
+
+    @AfterEach
+    void tearDown() throws Exception
+    {
+        mocks.close();
+    }
+
+    @Test
+    void updateUsesPreviousStateFromSingleRoundTrip()
+    {
+        var event = new ItemEvent("item-updated", "item1", "user1", "task",
+                new ItemContent(true, true, null), 2000);
+
+        var previous = new TaskStatus();
+        previous.setUid("item1");
+        previous.setPriority(true);
+
+        when(repository.updateReturningPrevious(eq("item1"), any())).thenReturn(previous);
+        when(counterService.track(eq("user1"), any(), any())).thenReturn(new UserFeedbackCounters("user1", 2, 7, 12));
+
+        processor.updated(event);
+
+        verify(counterService).track("user1", new Contribution(1, 0), new Contribution(0, 1));
+        verify(feedbackService).feedback("user1", "item-updated", true, 2, 7, 12L);
+        verify(repository, never()).findByUid(anyString());
+    }
+
+    @Test
+    void createCountsRedeliveryAgainstStoredItem()
+    {
+        var event = new ItemEvent("item-created", "item1", "user1", "task",
+                new ItemContent(true, false, null), 1000);
+
+        var stored = new TaskStatus();
+        stored.setUid("item1");
+        stored.setPriority(true);
+
+        when(repository.upsertReturningPrevious(any())).thenReturn(stored);
+        when(counterService.track(eq("user1"), any(), any())).thenReturn(new UserFeedbackCounters("user1", 1, 0));
+
+        processor.created(event);
+
+        verify(counterService).track("user1", new Contribution(1, 0), new Contribution(1, 0));
+    }
+
+    @Test
+    void updateTheItemAlreadyShowsCountsTheUser()
+    {
+        var event = new ItemEvent("item-updated", "item1", "user1", "task",
+                new ItemContent(true, true, null), 2000);
+
+        // written by an attempt that failed before moving the counters
+        var previous = new TaskStatus();
+        previous.setUid("item1");
+        previous.setCompleted(true);
+        previous.setUpdatedAt(2000L);
+
+        when(repository.updateReturningPrevious(eq("item1"), any())).thenReturn(previous);
+        when(counterService.recount("user1")).thenReturn(new UserFeedbackCounters("user1", 0, 3));
+
+        processor.updated(event);
+
+        verify(counterService, never()).track(anyString(), any(), any());
+        verify(feedbackService).feedback("user1", "item-updated", true, 0, 3, 0L);
+    }
+
+    @Test
+    void deleteOfUnknownItemIsSkipped()
+    {
+        var event = new ItemEvent("item-deleted", "item1", "user1", "task", new ItemContent(), 1000);
+
+        when(repository.deleteReturningPrevious("item1", 1000)).thenReturn(null);
+
+        processor.deleted(event);
+
+        verify(counterService, never()).track(anyString(), any(), any());
+        verify(feedbackService, never())
+                .feedback(anyString(), anyString(), anyBoolean(), anyInt(), anyInt(), anyLong());
+    }
+
+    @Test
+    void createOfAnItemDeletedLaterIsDropped()
+    {
+        // e.g. retried from a delay topic after the item's delete went through
+        var event = new ItemEvent("item-created", "item1", "user1", "task",
+                new ItemContent(true, false, null), 1000);
+
+        // the conditional write left the tombstone as it is
+        when(repository.upsertReturningPrevious(any())).thenReturn(TaskStatus.tombstone("item1", 2000));
+
+        processor.created(event);
+
+        verify(counterService, never()).track(anyString(), any(), any());
+        assertEquals(1.0, processor.metrics.stages("item-created").stale().count());
+    }
+
+    @Test
+    void updateOfAnItemNeitherStoredNorDeletedFails()
+    {
+        var event = new ItemEvent("item-updated", "item1", "user1", "task",
+                new ItemContent(true, false, null), 2000);
+
+        when(repository.updateReturningPrevious(eq("item1"), any())).thenReturn(null);
+
+        // nacked into the retry topics, until the item's create has arrived
+        assertThrows(IllegalStateException.class, () -> processor.updated(event));
+        verify(counterService, never()).track(anyString(), any(), any());
+    }
+
+    @Test
+    void updateNewerThanTheDeleteFails()
+    {
+        var event = new ItemEvent("item-updated", "item1", "user1", "task",
+                new ItemContent(true, false, null), 2000);
+
+        // e.g. of an item recreated after the delete, whose create has not arrived yet
+        when(repository.updateReturningPrevious(eq("item1"), any())).thenReturn(TaskStatus.tombstone("item1", 1000));
+
+        assertThrows(IllegalStateException.class, () -> processor.updated(event));
+        verify(counterService, never()).track(anyString(), any(), any());
+    }
+
+    @Test
+    void deleteAppliedBeforeCountsTheUser()
+    {
+        var event = new ItemEvent("item-deleted", "item1", "user1", "task", new ItemContent(), 1000);
+
+        // the first attempt left the tombstone, and failed before moving the counters
+        when(repository.deleteReturningPrevious("item1", 1000)).thenReturn(TaskStatus.tombstone("item1", 1000));
+
+        processor.deleted(event);
+
+        verify(counterService).recount("user1");
+        verify(feedbackService, never())
+                .feedback(anyString(), anyString(), anyBoolean(), anyInt(), anyInt(), anyLong());
+    }
+
+    @Test
+    void cachedUpdateWritesAgainstTheCachedStateWithoutChangingIt()
+    {
+        var event = new ItemEvent("item-updated", "item1", "user1", "task",
+                new ItemContent(true, false, null), 2000);
+
+        var cached = new TaskStatus();
+        cached.setUid("item1");
+        cached.setUserUid("user1");
+        cached.setPriority(true);
+
+        when(stateCache.item("item1")).thenReturn(cached);
+        when(repository.updateIfUnchanged(eq(cached), any())).thenReturn(true);
+        when(counterService.track(eq("user1"), any(), any())).thenReturn(new UserFeedbackCounters("user1", 4, 2));
+
+        processor.updated(event);
+
+        verify(repository, never()).updateReturningPrevious(anyString(), any());
+        verify(counterService).track("user1", new Contribution(1, 0), new Contribution(1, 0));
+        verify(feedbackService).feedback("user1", "item-updated", false, 4, 2, 0L);
+
+        // the update is cached as a new status, the one others may be reading is left as it was
+        var captor = ArgumentCaptor.forClass(TaskStatus.class);
+        verify(stateCache).putItem(captor.capture());
+        assertEquals(2000, captor.getValue().getUpdatedAt());
+        assertEquals(0, cached.getUpdatedAt());
+    }
+
+    @Test
+    void staleCachedUpdateIsDroppedWithoutRoundTrip()
+    {
+        var event = new ItemEvent("item-updated", "item1", "user1", "task",
+                new ItemContent(false, true, null), 1000);
+
+        var cached = new TaskStatus();
+        cached.setUid("item1");
+        cached.setUpdatedAt(2000L);
+
+        when(stateCache.item("item1")).thenReturn(cached);
+
+        processor.updated(event);
+
+        verifyNoInteractions(repository, counterService);
+        verify(feedbackService, never())
+                .feedback(anyString(), anyString(), anyBoolean(), anyInt(), anyInt(), anyLong());
+        assertEquals(1.0, processor.metrics.stages("item-updated").stale().count());
+        assertEquals(2000, cached.getUpdatedAt());
+    }
+
+    @Test
+    void cachedUpdateOutrunByStoredItemCountsAsStale()
+    {
+        var event = new ItemEvent("item-updated", "item1", "user1", "task",
+                new ItemContent(true, false, null), 2000);
+
+        var cached = new TaskStatus();
+        cached.setUid("item1");
+        cached.setUpdatedAt(1000L);
+
+        var stored = new TaskStatus();
+        stored.setUid("item1");
+        stored.setUpdatedAt(3000L);
+
+        when(stateCache.item("item1")).thenReturn(cached);
+        when(repository.updateIfUnchanged(eq(cached), any())).thenReturn(false);
+        when(repository.updateReturningPrevious(eq("item1"), any())).thenReturn(stored);
+
+        processor.updated(event);
+
+        verify(counterService, never()).track(anyString(), any(), any());
+        verify(stateCache).putItem(stored);
+        assertEquals(1.0, processor.metrics.stages("item-updated").stale().count());
+        assertEquals(0.0, processor.metrics.stages("item-updated").skipped().count());
+    }
+
+    @Test
+    void createOlderThanStoredItemIsDropped()
+    {
+        var event = new ItemEvent("item-created", "item1", "user1", "task",
+                new ItemContent(true, false, null), 1000);
+
+        var stored = new TaskStatus();
+        stored.setUid("item1");
+        stored.setCompleted(true);
+        stored.setUpdatedAt(3000L);
+
+        when(repository.upsertReturningPrevious(any())).thenReturn(stored);
+
+        processor.created(event);
+
+        verify(counterService, never()).track(anyString(), any(), any());
+        verify(feedbackService, never())
+                .feedback(anyString(), anyString(), anyBoolean(), anyInt(), anyInt(), anyLong());
+        verify(stateCache).putItem(stored);
+    }
+}
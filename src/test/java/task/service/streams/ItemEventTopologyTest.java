@@ -0,0 +1,164 @@
+package task.service.streams;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.quarkus.kafka.client.serialization.ObjectMapperDeserializer;
+import io.quarkus.kafka.client.serialization.ObjectMapperSerializer;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.apache.kafka.streams.StreamsConfig;
+import org.apache.kafka.streams.TestInputTopic;
+import org.apache.kafka.streams.TestOutputTopic;
+import org.apache.kafka.streams.TopologyTestDriver;
+import org.apache.kafka.streams.state.KeyValueStore;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import task.service.metrics.PipelineMetrics;
+import task.service.models.TaskStatus;
+import task.service.models.UserFeedbackCounters;
+import task.service.models.messages.FeedbackEvent;
+import task.service.models.messages.ItemContent;
+import task.service.models.messages.ItemEvent;
+import task.service.services.FeedbackServices;
+
+import java.nio.file.Path;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.*;
+
+public class ItemEventTopologyTest
+{
+    @TempDir
+    Path stateDir;
+
+    private TopologyTestDriver driver;
+    private MongoStateSink sink;
+    private PipelineMetrics metrics;
+
+    private TestInputTopic<String, ItemEvent> created;
+    private TestInputTopic<String, ItemEvent> updated;
+    private TestInputTopic<String, ItemEvent> deleted;
+    private TestOutputTopic<String, FeedbackEvent> completedFeedback;
+    private TestOutputTopic<String, FeedbackEvent> priorityFeedback;
+
+    @BeforeEach
+    void setup()
+    {
+        sink = mock(MongoStateSink.class);
+        metrics = new PipelineMetrics(new SimpleMeterRegistry());
+
+        var topology = new ItemEventTopology();
+        topology.feedbackService = FeedbackServices.withBuiltInRules();
+        topology.sink = sink;
+        topology.metrics = metrics;
+
+        var config = new Properties();
+        config.put(StreamsConfig.APPLICATION_ID_CONFIG, "item-event-topology-test");
+        config.put(StreamsConfig.BOOTSTRAP_SERVERS_CONFIG, "dummy:9092");
+        config.put(StreamsConfig.STATE_DIR_CONFIG, stateDir.toString());
+        driver = new TopologyTestDriver(topology.buildTopology(), config);
+
+        created = input("item-created");
+        updated = input("item-updated");
+        deleted = input("item-deleted");
+        completedFeedback = output("feedback-completed");
+        priorityFeedback = output("feedback-priority");
+    }
+
+    @AfterEach
+    void tearDown()
+    {
+        driver.close();
+    }
+
+    @Test
+    void createAndCompleteFeedBackRunningCounts()
+    {
+        created.pipeInput("item1", event("item-created", "item1", new ItemContent(true, false, null), 1000));
+        updated.pipeInput("item1", event("item-updated", "item1", new ItemContent(true, true, null), 2000));
+
+        var completed = completedFeedback.readValuesToList();
+        assertEquals(2, completed.size());
+        assertEquals("I believe in you! Go do stuff!", completed.get(0).getFeedback());
+        assertEquals("Yes! You completed your task! Your total is 1", completed.get(1).getFeedback());
+        assertEquals("user1", completed.get(1).getUserUid());
+        assertEquals(2, priorityFeedback.getQueueSize());
+
+        var item = items().get("item1");
+        assertTrue(item.isCompleted());
+        assertEquals(2000, item.getUpdatedAt());
+        assertEquals(new UserFeedbackCounters("user1", 0, 1), counters().get("user1"));
+
+        verify(sink, times(2)).item(eq("item1"), any());
+        verify(sink, times(2)).counters(any());
+    }
+
+    @Test
+    void deleteMovesOnlyPriorityFeedback()
+    {
+        created.pipeInput("item1", event("item-created", "item1", new ItemContent(true, false, null), 1000));
+        completedFeedback.readValuesToList();
+        priorityFeedback.readValuesToList();
+
+        deleted.pipeInput("item1", event("item-deleted", "item1", new ItemContent(), 2000));
+
+        assertTrue(completedFeedback.isEmpty());
+        assertEquals("Priority is under under control", priorityFeedback.readValue().getFeedback());
+        assertNull(items().get("item1"));
+        assertEquals(new UserFeedbackCounters("user1", 0, 0), counters().get("user1"));
+        verify(sink).item(eq("item1"), isNull());
+    }
+
+    @Test
+    void unknownAndStaleEventsAreDropped()
+    {
+        updated.pipeInput("item2", event("item-updated", "item2", new ItemContent(true, true, null), 1000));
+        assertTrue(completedFeedback.isEmpty());
+        assertEquals(1.0, metrics.stages("item-updated").skipped().count());
+
+        created.pipeInput("item1", event("item-created", "item1", new ItemContent(false, false, null), 3000));
+        completedFeedback.readValuesToList();
+        priorityFeedback.readValuesToList();
+
+        updated.pipeInput("item1", event("item-updated", "item1", new ItemContent(true, true, null), 2000));
+
+        assertTrue(completedFeedback.isEmpty());
+        assertTrue(priorityFeedback.isEmpty());
+        assertEquals(1.0, metrics.stages("item-updated").stale().count());
+        assertEquals(3000, items().get("item1").getUpdatedAt());
+    }
+
+    private KeyValueStore<String, TaskStatus> items()
+    {
+        return driver.getKeyValueStore(ItemEventTopology.ITEMS_STORE);
+    }
+
+    private KeyValueStore<String, UserFeedbackCounters> counters()
+    {
+        return driver.getKeyValueStore(ItemEventTopology.COUNTERS_STORE);
+    }
+
+    private TestInputTopic<String, ItemEvent> input(final String topic)
+    {
+        return driver.createInputTopic(topic, new StringSerializer(), new ObjectMapperSerializer<>());
+    }
+
+    private TestOutputTopic<String, FeedbackEvent> output(final String topic)
+    {
+        return driver.createOutputTopic(topic, new StringDeserializer(),
+                new ObjectMapperDeserializer<>(FeedbackEvent.class));
+    }
+
+    private static ItemEvent event(final String type, final String itemUid, final ItemContent content,
+            final long time)
+    {
+        return new ItemEvent(type, itemUid, "user1", "task", content, time);
+    }
+}